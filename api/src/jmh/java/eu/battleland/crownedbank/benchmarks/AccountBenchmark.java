@@ -0,0 +1,93 @@
+package eu.battleland.crownedbank.benchmarks;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Throughput of transactions of one currency, while transaction of another currency of the same account
+ * waits for its remote.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AccountBenchmark {
+
+    private Currency coins;
+    private Account account;
+    private CountDownLatch release;
+    private CompletableFuture<Boolean> gemsWithdraw;
+
+    @Setup
+    public void setup() {
+        final var logger = Logger.getLogger("benchmark");
+        logger.setLevel(Level.WARNING);
+        new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        }.initialize();
+
+        this.coins = Currency.builder()
+                .identifier("coins")
+                .format("%.2f")
+                .build();
+        final var gems = Currency.builder()
+                .identifier("gems")
+                .format("%.2f")
+                .build();
+
+        // gems are handled by remote, which does not answer until released
+        this.release = new CountDownLatch(1);
+        this.account = Account.builder()
+                .identity(new Account.Identity(UUID.randomUUID(), "contention"))
+                .withdrawHandler((storage, amount, accountRef) -> {
+                    if (storage.getCurrency().equals(gems)) {
+                        try {
+                            this.release.await();
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                    return storage.withdraw(amount);
+                })
+                .depositHandler((storage, amount, accountRef) -> storage.deposit(amount))
+                .build();
+        this.account.deposit(gems, 1).join();
+        this.gemsWithdraw = this.account.withdraw(gems, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.release.countDown();
+        this.gemsWithdraw.join();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Boolean depositWhileContended() {
+        return this.account.deposit(this.coins, 1).join();
+    }
+}
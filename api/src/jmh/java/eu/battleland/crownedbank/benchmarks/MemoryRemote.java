@@ -0,0 +1,59 @@
+package eu.battleland.crownedbank.benchmarks;
+
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
+import eu.battleland.crownedbank.remote.Remote;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-memory remote, answering immediately.
+ */
+public class MemoryRemote implements Remote {
+
+    @Override
+    public Remote configure(@NonNull Profile profile) {
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> storeAccount(@NonNull Account account) {
+        return CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Account.Data> fetchAccount(@NonNull Account.Identity identity) {
+        return CompletableFuture.completedFuture(Account.Data.empty());
+    }
+
+    @Override
+    public CompletableFuture<List<Standing>> fetchWealthyAccounts(@NonNull Currency currency) {
+        return CompletableFuture.completedFuture(List.of());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> handleWithdraw(Account account, Currency.Storage currencyStorage, float amount) {
+        return CompletableFuture.completedFuture(currencyStorage.withdraw(amount));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> handleDeposit(Account account, Currency.Storage currencyStorage, float amount) {
+        return CompletableFuture.completedFuture(currencyStorage.deposit(amount));
+    }
+
+    @Override
+    public @NonNull String identifier() {
+        return "memory";
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public void terminate() {
+    }
+}
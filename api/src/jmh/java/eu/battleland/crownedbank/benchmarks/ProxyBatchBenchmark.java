@@ -0,0 +1,154 @@
+package eu.battleland.crownedbank.benchmarks;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.proxy.ProxyBatcher;
+import eu.battleland.crownedbank.proxy.ProxyCodec;
+import eu.battleland.crownedbank.proxy.ProxyConstants;
+import eu.battleland.crownedbank.proxy.ProxyOperation;
+import eu.battleland.crownedbank.proxy.ProxyRequestHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Latency of a tick of deposits relayed through proxy connected in process, with and without batching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProxyBatchBenchmark {
+
+    private static final int OPERATIONS = 30;
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    private Currency currency;
+    private ProxyCodec.CurrencyTable table;
+    private ProxyRequestHandler handler;
+    private ProxyBatcher batcher;
+    private Account.Identity identity;
+
+    private final Map<Long, CompletableFuture<Void>> responses = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        final var logger = Logger.getLogger("benchmark");
+        logger.setLevel(Level.WARNING);
+        final var api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        api.initialize();
+
+        this.currency = Currency.builder()
+                .identifier("batch_coins")
+                .format("%.2f")
+                .remote(new MemoryRemote())
+                .build();
+        api.currencyRepository().register(this.currency);
+
+        this.handler = new ProxyRequestHandler(api);
+        this.table = this.handler.table();
+        this.batcher = new ProxyBatcher(ProxyBatcher.MAX_PLUGIN_MESSAGE_BYTES, this::send);
+        this.identity = new Account.Identity(UUID.randomUUID(), "benchmark");
+    }
+
+    /**
+     * Tick of deposits, completing once all were answered.
+     */
+    @Benchmark
+    public void tick() throws Exception {
+        final var completions = new CompletableFuture<?>[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            final var response = new CompletableFuture<Void>();
+            completions[i] = response;
+
+            final var entry = deposit(response);
+            if (this.batched)
+                this.batcher.enqueue(entry, () -> response.completeExceptionally(new IllegalStateException()));
+            else
+                send(single(entry));
+        }
+        this.batcher.flush();
+        CompletableFuture.allOf(completions).get(30, TimeUnit.SECONDS);
+    }
+
+    private boolean send(final byte[] message) {
+        this.handler.handle(message).thenAccept(this::receive);
+        return true;
+    }
+
+    private void receive(final byte[] message) {
+        try {
+            final var in = new DataInputStream(new ByteArrayInputStream(message));
+            in.readUTF();
+            final var header = ProxyCodec.readHeader(in);
+            if (header.operation() != ProxyOperation.BATCH_RESPONSE) {
+                complete(header.requestId());
+                return;
+            }
+            for (final var entry : ProxyCodec.readBatch(in))
+                complete(ProxyCodec.readHeader(new DataInputStream(new ByteArrayInputStream(entry))).requestId());
+        } catch (IOException x) {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    private void complete(final long requestId) {
+        final var response = this.responses.remove(requestId);
+        if (response != null)
+            response.complete(null);
+    }
+
+    private byte[] deposit(final CompletableFuture<Void> response) throws IOException {
+        final var requestId = this.requestIds.incrementAndGet();
+        this.responses.put(requestId, response);
+
+        final var bytes = new ByteArrayOutputStream();
+        final var out = new DataOutputStream(bytes);
+        ProxyCodec.writeEntryHeader(out, ProxyOperation.DEPOSIT_REQUEST, requestId);
+        ProxyCodec.writeIdentity(out, this.identity);
+        ProxyCodec.writeCurrency(out, this.currency, this.table);
+        ProxyCodec.writeAmount(out, 1, this.table);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] single(final byte[] entry) throws IOException {
+        final var bytes = new ByteArrayOutputStream();
+        final var out = new DataOutputStream(bytes);
+        out.writeUTF(ProxyConstants.SUB_CHANNEL);
+        out.write(entry);
+        return bytes.toByteArray();
+    }
+}
@@ -5,8 +5,11 @@ import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import eu.battleland.crownedbank.helper.ExecutorProvider;
 import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.LogBook;
 import lombok.AccessLevel;
+import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -14,6 +17,8 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 /**
@@ -37,20 +42,36 @@ CrownedBank {
     private static CrownedBankAPI api;
 
     @Getter
-    @Setter(AccessLevel.PROTECTED)
+    @Setter
     private static Config config = new Config(
             5000,
             1,
             Integer.MAX_VALUE,
             2,
             20,
-            5 * 60 * 1000
+            5 * 60 * 1000,
+            5 * 1000,
+            10_000,
+            30 * 60 * 1000,
+            ExecutorProvider.Mode.AUTO,
+            16,
+            "127.0.0.1",
+            0,
+            "",
+            64,
+            4096,
+            8192,
+            LogBook.Overflow.DROP,
+            "",
+            64L * 1024 * 1024,
+            30L * 24 * 60 * 60 * 1000
     );
 
 
     /**
      * CrownedBank Configuration
      */
+    @Builder(toBuilder = true)
     public record Config(int remoteTimeoutMillis,
 
                          int transactionMinValue,
@@ -58,7 +79,28 @@ CrownedBank {
                          int valueFractionalDigits,
 
                          int wealthCheckAccountLimit,
-                         long wealthCheckEveryMillis) {
+                         long wealthCheckEveryMillis,
+                         long standingsCacheMillis,
+
+                         int accountCacheSize,
+                         long accountCacheIdleMillis,
+
+                         ExecutorProvider.Mode executorMode,
+                         int executorThreads,
+
+                         String endpointSocketHost,
+                         int endpointSocketPort,
+                         String endpointSocketToken,
+
+                         int endpointQueueDepth,
+                         int endpointMaxQueued,
+
+                         int logbookCapacity,
+                         LogBook.Overflow logbookOverflow,
+
+                         String journalDirectory,
+                         long journalSegmentBytes,
+                         long journalRetentionMillis) {
     }
 
 
@@ -66,6 +108,14 @@ CrownedBank {
     @Setter
     private static boolean identityNameMajor = true;
 
+    /**
+     * @return Executor of asynchronous tasks, provided by API. Common pool, if there is no API.
+     */
+    public static Executor executor() {
+        final var api = CrownedBank.api;
+        return api != null ? api.executor() : ForkJoinPool.commonPool();
+    }
+
 
     public static final Gson GSON = new GsonBuilder()
             .registerTypeAdapterFactory(new RecordTypeAdapterFactory())
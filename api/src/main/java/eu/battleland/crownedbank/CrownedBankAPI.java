@@ -1,10 +1,18 @@
 package eu.battleland.crownedbank;
 
 import eu.battleland.crownedbank.abstracted.Controllable;
+import eu.battleland.crownedbank.helper.ExecutorProvider;
+import eu.battleland.crownedbank.helper.ExpiringCache;
+import eu.battleland.crownedbank.helper.IdentityIndex;
+import eu.battleland.crownedbank.helper.Leaderboard;
+import eu.battleland.crownedbank.helper.TinyLfuPolicy;
 import eu.battleland.crownedbank.helper.TransactionHandler;
+import eu.battleland.crownedbank.helper.TransferHandler;
 import eu.battleland.crownedbank.i18n.TranslationRegistry;
 import eu.battleland.crownedbank.model.Account;
 import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.LogBook;
+import eu.battleland.crownedbank.model.Standing;
 import eu.battleland.crownedbank.remote.Remote;
 import eu.battleland.crownedbank.repo.CurrencyRepository;
 import eu.battleland.crownedbank.repo.RemoteFactoryRepository;
@@ -20,7 +28,12 @@ import org.jetbrains.annotations.Nullable;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
@@ -59,9 +72,28 @@ public interface CrownedBankAPI {
      * Retrieves wealthy accounts.
      *
      * @param currency Currency.
-     * @return Future list of dummy accounts. May be from cache, or remote.
+     * @return Future list of standings, wealthiest first. May be from cache, or remote.
      */
-    CompletableFuture<List<Account>> retrieveWealthyAccounts(@NonNull Currency currency);
+    CompletableFuture<List<Standing>> retrieveWealthyAccounts(@NonNull Currency currency);
+
+    /**
+     * Retrieves page of standings, seeking past cursor.
+     *
+     * @param currency Currency.
+     * @param after    Last standing of previous page. Null for first page.
+     * @param limit    Maximum count of standings.
+     * @return Future list of standings, in {@link Standing#ORDER}. May be from cache, or remote.
+     */
+    CompletableFuture<List<Standing>> retrieveStandings(@NonNull Currency currency, @Nullable Standing after, int limit);
+
+    /**
+     * Retrieves standing of account.
+     *
+     * @param currency Currency.
+     * @param identity Identity of account.
+     * @return Future of standing, or null if account has no balance of currency. May be from cache, or remote.
+     */
+    CompletableFuture<@Nullable Standing> retrieveStanding(@NonNull Currency currency, Account.@NonNull Identity identity);
 
     /**
      * @return Remote repository.
@@ -88,29 +120,111 @@ public interface CrownedBankAPI {
      */
     TranslationRegistry<?> translationRegistry();
 
+    /**
+     * Register listener of balance changes.
+     *
+     * @param listener Listener.
+     */
+    void registerBalanceListener(@NonNull BalanceListener listener);
 
+    /**
+     * Unregister listener of balance changes.
+     *
+     * @param listener Listener.
+     */
+    void unregisterBalanceListener(@NonNull BalanceListener listener);
+
+    /**
+     * Notify balance listeners, that balance of account changed.
+     *
+     * @param account Account.
+     * @param storage Changed currency storage of account.
+     */
+    void balanceChanged(@NonNull Account account, @NonNull Currency.Storage storage);
+
+    /**
+     * @return Executor of asynchronous tasks, such as blocking remote I/O.
+     * Configured by {@link CrownedBank.Config#executorMode()} and {@link CrownedBank.Config#executorThreads()}.
+     */
+    Executor executor();
+
+
+    /**
+     * Listener of balance changes. Called on thread which completed the change, must not block.
+     */
+    @FunctionalInterface
+    interface BalanceListener {
+
+        /**
+         * @param account Account.
+         * @param storage Changed currency storage of account.
+         */
+        void balanceChanged(@NonNull Account account, @NonNull Currency.Storage storage);
+    }
+
+
+    /**
+     * Account storage. Bounded by {@link CrownedBank.Config#accountCacheSize()} and
+     * {@link CrownedBank.Config#accountCacheIdleMillis()}, accounts are evicted by W-TinyLFU policy.
+     * Pinned accounts, such as those of online players, are never evicted.
+     * Dirty accounts are stored to their remotes before they are evicted.
+     * <br>
+     * Accounts are indexed by both UUID and name, see {@link IdentityIndex}.
+     */
     class AccountStorage {
 
         @Getter(AccessLevel.PROTECTED)
-        @Setter(AccessLevel.PROTECTED)
-        private Map<Account.Identity, Account> accounts
-                = new ConcurrentHashMap<>();
+        private final IdentityIndex<Account> accounts
+                = new IdentityIndex<>();
 
         @Getter(AccessLevel.PROTECTED)
-        @Setter(AccessLevel.PROTECTED)
-        private Map<Account.Identity, Object> identityLocks
-                = new ConcurrentHashMap<>();
+        private final IdentityIndex<Object> identityLocks
+                = new IdentityIndex<>();
+
+        private final IdentityIndex<Boolean> pinned
+                = new IdentityIndex<>();
+
+        private final ReentrantLock policyLock
+                = new ReentrantLock();
+        // keyed by identity key, accounts hash by reference and a replaced account must not be tracked twice
+        private TinyLfuPolicy<Object> policy;
+
+        private final List<Consumer<Account>> removalListeners
+                = new CopyOnWriteArrayList<>();
+
+        /**
+         * Evicted accounts, which couldn't be stored, and wait for retry out of the policy.
+         */
+        private final Set<Account> retrying
+                = ConcurrentHashMap.newKeySet();
+
+        private static final long MIN_RETRY_MILLIS = 500;
+        private static final long MAX_RETRY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+        /**
+         * Register listener of accounts removed from storage, such as evicted ones.
+         *
+         * @param listener Listener.
+         */
+        public void registerRemovalListener(@NonNull Consumer<Account> listener) {
+            this.removalListeners.add(listener);
+        }
+
+        /**
+         * Unregister listener of accounts removed from storage.
+         *
+         * @param listener Listener.
+         */
+        public void unregisterRemovalListener(@NonNull Consumer<Account> listener) {
+            this.removalListeners.remove(listener);
+        }
 
         /**
          * Retrieve account lock.
          * @param identity Account identity.
          */
         public @NonNull Object lock(@NotNull Account.Identity identity) {
-            return identityLocks.compute(identity, (id, lock) -> {
-                if(lock == null)
-                    lock = new Object();
-                return lock;
-            });
+            return this.identityLocks.computeIfAbsent(identity, (id) -> new Object());
         }
 
         /**
@@ -119,22 +233,281 @@ public interface CrownedBankAPI {
          * @param account Account
          */
         public void put(@NotNull Account account) {
-            this.accounts.put(account.getIdentity(), account);
+            final var previous = this.accounts.put(account.getIdentity(), account);
+            if (this.pinned.contains(account.getIdentity())) {
+                if (previous != null && previous != account)
+                    forget(previous);
+                return;
+            }
+
+            final var victims = new ArrayList<Object>();
+            this.policyLock.lock();
+            try {
+                final var now = System.currentTimeMillis();
+                final var policy = policy(victims);
+                if (previous != null && previous != account)
+                    policy.remove(IdentityIndex.key(previous.getIdentity()));
+                victims.addAll(policy.add(IdentityIndex.key(account.getIdentity()), now));
+                victims.addAll(policy.expire(now, CrownedBank.getConfig().accountCacheIdleMillis()));
+            } finally {
+                this.policyLock.unlock();
+            }
+            evict(victims);
         }
 
         /**
+         * Retrieve account. If account is found by UUID under another name, its identity is renamed.
+         *
          * @param identity Account identity
          * @return Account
          */
         public @Nullable Account get(@NotNull Account.Identity identity) {
+            final var account = this.accounts.get(identity);
+            if (account == null)
+                return null;
+
+            // identity was renamed
+            final var known = account.getIdentity();
+            if (identity.uuid() != null && identity.name() != null
+                    && identity.uuid().equals(known.uuid()) && !identity.name().equals(known.name()))
+                rename(account, identity);
+
+            // access is recorded only when uncontended
+            if (this.policyLock.tryLock()) {
+                try {
+                    if (this.policy != null)
+                        this.policy.record(IdentityIndex.key(account.getIdentity()), System.currentTimeMillis());
+                } finally {
+                    this.policyLock.unlock();
+                }
+            }
+            return account;
+        }
+
+        /**
+         * Retrieve account, without recording access to it.
+         *
+         * @param identity Account identity
+         * @return Account, or null if it is not stored.
+         */
+        public @Nullable Account peek(@NotNull Account.Identity identity) {
             return this.accounts.get(identity);
         }
 
+        /**
+         * Pin account, so that it is never evicted.
+         *
+         * @param identity Account identity.
+         */
+        public void pin(@NotNull Account.Identity identity) {
+            this.pinned.put(identity, Boolean.TRUE);
+
+            final var account = this.accounts.get(identity);
+            if (account != null)
+                forget(account);
+        }
+
+        /**
+         * Unpin account, so that it may be evicted again.
+         *
+         * @param identity Account identity.
+         */
+        public void unpin(@NotNull Account.Identity identity) {
+            this.pinned.remove(identity);
+
+            final var account = this.accounts.get(identity);
+            if (account != null)
+                put(account);
+        }
+
+        /**
+         * Evict accounts idle for longer than {@link CrownedBank.Config#accountCacheIdleMillis()}.
+         */
+        public void cleanUp() {
+            final var victims = new ArrayList<Object>();
+            this.policyLock.lock();
+            try {
+                victims.addAll(policy(victims)
+                        .expire(System.currentTimeMillis(), CrownedBank.getConfig().accountCacheIdleMillis()));
+            } finally {
+                this.policyLock.unlock();
+            }
+            evict(victims);
+        }
+
+        /**
+         * @return Count of stored accounts.
+         */
+        public int size() {
+            return this.accounts.size();
+        }
+
         /**
          * Invalidates storage.
          */
         public void invalidate() {
             this.accounts.clear();
+            this.identityLocks.clear();
+
+            this.policyLock.lock();
+            try {
+                if (this.policy != null)
+                    this.policy.clear();
+            } finally {
+                this.policyLock.unlock();
+            }
+        }
+
+        /**
+         * Retrieve policy, rebuild it when maximum size was reconfigured. Must be called with policy lock held.
+         *
+         * @param victims Keys of accounts evicted while rebuilding.
+         * @return Policy.
+         */
+        private TinyLfuPolicy<Object> policy(final List<Object> victims) {
+            final var maximumSize = CrownedBank.getConfig().accountCacheSize();
+            if (this.policy != null && this.policy.getMaximumSize() == Math.max(2, maximumSize))
+                return this.policy;
+
+            this.policy = new TinyLfuPolicy<>(maximumSize);
+            final var now = System.currentTimeMillis();
+            this.accounts.values().forEach(account -> {
+                if (!this.pinned.contains(account.getIdentity()))
+                    victims.addAll(this.policy.add(IdentityIndex.key(account.getIdentity()), now));
+            });
+            return this.policy;
+        }
+
+        /**
+         * Rename identity of account, and re-index it under new name.
+         *
+         * @param account  Account.
+         * @param identity New identity.
+         */
+        private void rename(final Account account, final Account.Identity identity) {
+            synchronized (lock(account.getIdentity())) {
+                final var previous = account.getIdentity();
+                account.setIdentity(identity);
+                account.setDirty(true);
+
+                this.accounts.put(identity, account);
+                final var lock = this.identityLocks.remove(previous);
+                if (lock != null)
+                    this.identityLocks.putIfAbsent(identity, lock);
+            }
+        }
+
+        /**
+         * Stop tracking account by policy.
+         *
+         * @param account Account.
+         */
+        private void forget(final Account account) {
+            this.policyLock.lock();
+            try {
+                if (this.policy != null)
+                    this.policy.remove(IdentityIndex.key(account.getIdentity()));
+            } finally {
+                this.policyLock.unlock();
+            }
+        }
+
+        /**
+         * Evict accounts by their keys.
+         *
+         * @param keys Identity keys of accounts.
+         */
+        private void evict(final List<Object> keys) {
+            for (final var key : keys) {
+                final var account = this.accounts.get(key instanceof UUID uuid
+                        ? new Account.Identity(uuid, null)
+                        : new Account.Identity(null, (String) key));
+                if (account != null)
+                    evict(account);
+            }
+        }
+
+        /**
+         * Evict account. Dirty account is stored to its remotes first, and kept if it was modified in the meantime.
+         * Account which couldn't be stored is kept out of the policy, and stored again with backoff.
+         *
+         * @param account Account.
+         */
+        private void evict(final Account account) {
+            if (!account.isDirty()) {
+                remove(account);
+                return;
+            }
+            if (!this.retrying.add(account))
+                return;
+            store(account, MIN_RETRY_MILLIS);
+        }
+
+        /**
+         * Store evicted account, and retry with doubled backoff if it couldn't be stored.
+         *
+         * @param account Account.
+         * @param backoff Backoff of next retry in milliseconds.
+         */
+        private void store(final Account account, final long backoff) {
+            account.setDirty(false);
+            flush(account).whenComplete((ignored, x) -> {
+                if (x != null) {
+                    account.setDirty(true);
+                    CrownedBank.getLogger().warning(String.format("Couldn't store evicted account '%s', "
+                            + "retrying in %d ms: %s", account.getIdentity(), backoff, x));
+
+                    // out of policy until stored, so that it is not evicted again right away
+                    forget(account);
+                    CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS, CrownedBank.executor())
+                            .execute(() -> {
+                                // replaced or invalidated in the meantime
+                                if (this.accounts.get(account.getIdentity()) != account) {
+                                    this.retrying.remove(account);
+                                    return;
+                                }
+                                store(account, Math.min(backoff * 2, MAX_RETRY_MILLIS));
+                            });
+                    return;
+                }
+
+                this.retrying.remove(account);
+                if (account.isDirty())
+                    put(account);
+                else
+                    remove(account);
+            });
+        }
+
+        private void remove(final Account account) {
+            final var identity = account.getIdentity();
+            if (!this.accounts.remove(identity, account))
+                return;
+            this.identityLocks.remove(identity);
+            this.removalListeners.forEach(listener -> listener.accept(account));
+        }
+
+        /**
+         * Store account to all remotes of its currencies.
+         *
+         * @param account Account.
+         * @return Future completing when account was stored.
+         */
+        private CompletableFuture<Void> flush(final Account account) {
+            final var remotes = Collections.newSetFromMap(new IdentityHashMap<Remote, Boolean>());
+            account.getData().storages().forEach(storage -> {
+                final var remote = storage.getCurrency().getRemote();
+                if (remote != null)
+                    remotes.add(remote);
+            });
+
+            try {
+                return CompletableFuture.allOf(remotes.stream()
+                        .map(remote -> remote.storeAccount(account))
+                        .toArray(CompletableFuture[]::new));
+            } catch (Exception x) {
+                return CompletableFuture.failedFuture(x);
+            }
         }
     }
 
@@ -155,18 +528,28 @@ public interface CrownedBankAPI {
         private Remote remote;
 
         @Getter(AccessLevel.PROTECTED)
-        @Setter(AccessLevel.PROTECTED)
-        private Map<Account.Identity, CompletableFuture<Account>> accountFutures
-                = new ConcurrentHashMap<>();
+        private final IdentityIndex<CompletableFuture<Account>> accountFutures
+                = new IdentityIndex<>();
 
+        /**
+         * Leaderboards of wealthiest accounts, by currency.
+         */
         @Getter(AccessLevel.PROTECTED)
-        @Setter(AccessLevel.PROTECTED)
-        private Map<Currency, List<Account>> wealthyAccounts
+        private final Map<Currency, Leaderboard> leaderboards
                 = new ConcurrentHashMap<>();
-        @Getter(AccessLevel.PROTECTED)
-        @Setter(AccessLevel.PROTECTED)
-        private volatile CompletableFuture<List<Account>> wealthyAccountsFuture
-                = null;
+
+        /**
+         * Maximum count of standings of one page.
+         */
+        private static final int MAX_STANDINGS_PAGE = 100;
+
+        /**
+         * Pages and standings beyond leaderboards, cached for {@link CrownedBank.Config#standingsCacheMillis()}.
+         */
+        private final ExpiringCache<StandingsQuery, List<Standing>> standingPages
+                = new ExpiringCache<>(1024);
+        private final ExpiringCache<StandingQuery, Standing> standings
+                = new ExpiringCache<>(4096);
 
         @Getter
         private final AccountStorage accountStorage
@@ -182,7 +565,12 @@ public interface CrownedBankAPI {
         private final RemoteFactoryRepository remoteFactoryRepository
                 = new RemoteFactoryRepository();
 
-        private long lastWealthCheck = 0;
+        private volatile RemoteGrouping remoteGrouping;
+
+        private volatile ConfiguredExecutor executor;
+
+        private final List<BalanceListener> balanceListeners
+                = new CopyOnWriteArrayList<>();
 
         protected abstract Logger provideLogger();
 
@@ -193,7 +581,68 @@ public interface CrownedBankAPI {
 
         @Override
         public void terminate() {
+            final var executor = this.executor;
+            if (executor != null) {
+                executor.service().shutdown();
+                try {
+                    // queued tasks may still log transactions
+                    if (!executor.service().awaitTermination(5, TimeUnit.SECONDS))
+                        CrownedBank.getLogger().warning("Executor did not complete its tasks in time.");
+                } catch (InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            LogBook.closeShared();
+        }
+
+        /**
+         * Executor is created on first use, and replaced when its configuration changes.
+         * Replaced executor completes its queued tasks.
+         */
+        @Override
+        public Executor executor() {
+            final var config = CrownedBank.getConfig();
+            var executor = this.executor;
+            if (executor != null && executor.matches(config))
+                return executor.service();
+
+            synchronized (this) {
+                executor = this.executor;
+                if (executor != null && executor.matches(config))
+                    return executor.service();
+                if (executor != null)
+                    executor.service().shutdown();
+
+                executor = new ConfiguredExecutor(config.executorMode(), config.executorThreads(),
+                        ExecutorProvider.create(config.executorMode(), config.executorThreads()));
+                this.executor = executor;
+                return executor.service();
+            }
+        }
+
+        @Override
+        public void registerBalanceListener(@NonNull BalanceListener listener) {
+            this.balanceListeners.add(listener);
+        }
 
+        @Override
+        public void unregisterBalanceListener(@NonNull BalanceListener listener) {
+            this.balanceListeners.remove(listener);
+        }
+
+        @Override
+        public void balanceChanged(@NonNull Account account, @NonNull Currency.Storage storage) {
+            final var leaderboard = this.leaderboards.get(storage.getCurrency());
+            if (leaderboard != null)
+                leaderboard.update(account.getIdentity(), storage.minorAmount());
+
+            for (final var listener : this.balanceListeners) {
+                try {
+                    listener.balanceChanged(account, storage);
+                } catch (Exception x) {
+                    CrownedBank.getLogger().severe(String.format("Balance listener threw exception: %s", x));
+                }
+            }
         }
 
         @Override
@@ -202,6 +651,7 @@ public interface CrownedBankAPI {
                     .identity(identity)
                     .depositHandler(TransactionHandler.remoteDepositRelay(this.remote))
                     .withdrawHandler(TransactionHandler.remoteWithdrawRelay(this.remote))
+                    .transferHandler(TransferHandler.remoteTransferRelay(this.remote))
                     .build();
         }
 
@@ -216,7 +666,7 @@ public interface CrownedBankAPI {
             {
                 final var cachedAccount = this.accountStorage.get(identity);
                 if (cachedAccount != null)
-                    return CompletableFuture.completedFuture(this.accountStorage.get(identity));
+                    return CompletableFuture.completedFuture(cachedAccount);
             }
 
             synchronized (accountStorage.lock(identity)) {
@@ -232,36 +682,43 @@ public interface CrownedBankAPI {
                             return CompletableFuture.completedFuture(null); // immediate return
                 }
 
+                // Check cache again, retrieval might have completed since.
+                // Account is cached before its future is forgotten, so checked after the future.
                 {
-                    // Fetch the account from remote
-                    final var future = CompletableFuture.supplyAsync(() -> {
-                        final var account = account(identity);
-                        currenciesByRemotes().forEach((remote, currencies) -> {
-                            try {
-                                final var data = remote.fetchAccount(identity)
-                                        .get(CrownedBank.getConfig().remoteTimeoutMillis(), TimeUnit.MILLISECONDS);
-                                if (data != null)
-                                    account.getData().join(data);
-
-                            } catch (Exception e) {
-                                CrownedBank.getLogger()
-                                        .severe(String.format("Couldn't retrieve account data for '%s' currencies '%s' from remote '%s': %s",
-                                                identity,
-                                                currencies,
-                                                remote.identifier(),
-                                                e
-                                        ));
-                            }
-                        });
-
-                        this.accountStorage.put(account);
-                        this.accountFutures.remove(identity);
-                        return account;
-                    });
+                    final var cachedAccount = this.accountStorage.get(identity);
+                    if (cachedAccount != null)
+                        return CompletableFuture.completedFuture(cachedAccount);
+                }
 
-                    // Store the account retrieval future
+                {
+                    // Store the account retrieval future, before fetches may complete
+                    final var future = new CompletableFuture<Account>();
                     this.accountFutures.put(identity, future);
 
+                    // Fetch the account from all remotes concurrently
+                    final var grouping = currenciesByRemotes();
+                    final var fetches = new ArrayList<CompletableFuture<Account.Data>>(grouping.size());
+                    grouping.forEach((remote, currencies) -> fetches.add(fetchAccountData(remote, currencies, identity)));
+
+                    CompletableFuture.allOf(fetches.toArray(CompletableFuture[]::new))
+                            .thenApply((ignored) -> {
+                                final var account = account(identity);
+                                fetches.forEach(fetch -> {
+                                    final var data = fetch.join();
+                                    if (data != null)
+                                        account.getData().join(data);
+                                });
+                                this.accountStorage.put(account);
+                                return account;
+                            })
+                            .whenComplete((account, x) -> {
+                                this.accountFutures.remove(identity, future);
+                                if (x != null)
+                                    future.completeExceptionally(x);
+                                else
+                                    future.complete(account);
+                            });
+
                     if(immediate)
                         return CompletableFuture.completedFuture(null); // immediate return
                     return future; // return account fetch future
@@ -269,56 +726,212 @@ public interface CrownedBankAPI {
             }
         }
 
+        /**
+         * Fetch account data from remote, bounded by {@link CrownedBank.Config#remoteTimeoutMillis()}.
+         *
+         * @param remote     Remote.
+         * @param currencies Currencies of remote.
+         * @param identity   Identity of account.
+         * @return Future of account data. Completes with null, if remote failed.
+         */
+        private CompletableFuture<Account.@Nullable Data> fetchAccountData(final Remote remote,
+                                                                          final List<Currency> currencies,
+                                                                          final Account.Identity identity) {
+            CompletableFuture<Account.Data> future;
+            try {
+                future = remote.fetchAccount(identity);
+            } catch (Exception x) {
+                future = CompletableFuture.failedFuture(x);
+            }
+
+            return future
+                    .orTimeout(CrownedBank.getConfig().remoteTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally((x) -> {
+                        CrownedBank.getLogger()
+                                .severe(String.format("Couldn't retrieve account data for '%s' currencies '%s' from remote '%s': %s",
+                                        identity,
+                                        currencies,
+                                        remote.identifier(),
+                                        x
+                                ));
+                        return null;
+                    });
+        }
+
+        /**
+         * Wealthy accounts are served from leaderboard of the currency, updated on every balance change.
+         * Remote is queried only to seed the leaderboard, and to reconcile it every
+         * {@link CrownedBank.Config#wealthCheckEveryMillis()}, or once it is incomplete.
+         */
         @Override
-        public CompletableFuture<List<Account>> retrieveWealthyAccounts(@NonNull Currency currency) {
-            final boolean triggerCheck = (System.currentTimeMillis() - this.lastWealthCheck) > CrownedBank.getConfig().wealthCheckEveryMillis()
-                    || !this.wealthyAccounts.containsKey(currency); // trigger check if outdated or not present
-            if (!triggerCheck)
-                return CompletableFuture.completedFuture(this.wealthyAccounts.get(currency));
+        public CompletableFuture<List<Standing>> retrieveWealthyAccounts(@NonNull Currency currency) {
+            final var config = CrownedBank.getConfig();
+            final var leaderboard = leaderboard(currency);
+            if (!leaderboard.stale(System.currentTimeMillis(), config.wealthCheckEveryMillis()))
+                return CompletableFuture.completedFuture(leaderboard.standings());
+
+            final var reconciliation = leaderboard.reconcile(() -> remoteOf(currency).fetchWealthyAccounts(currency)
+                    .orTimeout(config.remoteTimeoutMillis(), TimeUnit.MILLISECONDS)).exceptionally(x -> {
+                CrownedBank.getLogger().severe(String.format("Couldn't retrieve wealthy accounts of '%s': %s",
+                        currency.identifier(), x));
+                return leaderboard.standings();
+            });
 
-            synchronized (this) {
-                if (this.wealthyAccountsFuture != null)
-                    return this.wealthyAccountsFuture;
+            // seeded leaderboard is served, while it is reconciled
+            if (leaderboard.seeded())
+                return CompletableFuture.completedFuture(leaderboard.standings());
+            return reconciliation;
+        }
 
-                final var future = CompletableFuture.supplyAsync(() -> {
-                    try {
-                        final var result = currency.getRemote().fetchWealthyAccounts(currency).get();
+        /**
+         * Pages within fresh leaderboard are served from it, deeper pages are fetched from remote and cached.
+         */
+        @Override
+        public CompletableFuture<List<Standing>> retrieveStandings(@NonNull Currency currency,
+                                                                   @Nullable Standing after,
+                                                                   int limit) {
+            final var config = CrownedBank.getConfig();
+            final var pageLimit = Math.max(1, Math.min(limit, MAX_STANDINGS_PAGE));
+            final var leaderboard = leaderboard(currency);
+            if (!leaderboard.stale(System.currentTimeMillis(), config.wealthCheckEveryMillis())) {
+                final var page = leaderboard.page(after, pageLimit);
+                if (page != null)
+                    return CompletableFuture.completedFuture(page);
+            }
 
-                        this.wealthyAccounts.put(currency, result);
-                        this.wealthyAccountsFuture = null;
-                        this.lastWealthCheck = System.currentTimeMillis();
+            return this.standingPages.get(new StandingsQuery(currency, after, pageLimit), config.standingsCacheMillis(),
+                    () -> remoteOf(currency).fetchStandings(currency, after, pageLimit)
+                            .orTimeout(config.remoteTimeoutMillis(), TimeUnit.MILLISECONDS)
+            ).exceptionally(x -> {
+                CrownedBank.getLogger().severe(String.format("Couldn't retrieve standings of '%s' after '%s': %s",
+                        currency.identifier(), after, x));
+                return List.of();
+            });
+        }
 
-                        return result;
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        return null;
-                    }
-                });
-                this.wealthyAccountsFuture = future;
-                return future;
+        /**
+         * Standings of accounts on fresh leaderboard are served from it, others are fetched from remote and cached.
+         */
+        @Override
+        public CompletableFuture<@Nullable Standing> retrieveStanding(@NonNull Currency currency,
+                                                                      Account.@NonNull Identity identity) {
+            final var config = CrownedBank.getConfig();
+            final var leaderboard = leaderboard(currency);
+            if (!leaderboard.stale(System.currentTimeMillis(), config.wealthCheckEveryMillis())) {
+                final var standing = leaderboard.standing(identity);
+                if (standing != null)
+                    return CompletableFuture.completedFuture(standing);
             }
+
+            return this.standings.get(new StandingQuery(currency, identity), config.standingsCacheMillis(),
+                    () -> remoteOf(currency).fetchStanding(currency, identity)
+                            .orTimeout(config.remoteTimeoutMillis(), TimeUnit.MILLISECONDS)
+            ).exceptionally(x -> {
+                CrownedBank.getLogger().severe(String.format("Couldn't retrieve standing of '%s' in '%s': %s",
+                        identity, currency.identifier(), x));
+                return null;
+            });
+        }
+
+        /**
+         * @param currency Currency.
+         * @return Remote of currency, or the default remote.
+         * @throws IllegalStateException When there is no remote.
+         */
+        private Remote remoteOf(final Currency currency) {
+            final var remote = currency.getRemote() != null ? currency.getRemote() : this.remote;
+            if (remote == null)
+                throw new IllegalStateException("Currency has no remote");
+            return remote;
+        }
+
+        /**
+         * @param currency Currency.
+         * @return Leaderboard of currency, replaced when {@link CrownedBank.Config#wealthCheckAccountLimit()} changes.
+         */
+        private Leaderboard leaderboard(final Currency currency) {
+            final var capacity = Math.max(1, CrownedBank.getConfig().wealthCheckAccountLimit());
+            final var leaderboard = this.leaderboards.get(currency);
+            if (leaderboard != null && leaderboard.getCapacity() == capacity)
+                return leaderboard;
+            return this.leaderboards.compute(currency, (key, existing) ->
+                    existing != null && existing.getCapacity() == capacity
+                            ? existing
+                            : new Leaderboard(currency, capacity));
         }
 
+        /**
+         * Currencies grouped by their remote. Currencies without remote are grouped under the default remote.
+         * Grouping is cached, and rebuilt only when currency repository or the default remote changes.
+         *
+         * @return Unmodifiable map of remote to its currencies.
+         */
         public Map<Remote, List<Currency>> currenciesByRemotes() {
-            final var result = new HashMap<Remote, List<Currency>>();
+            final var revision = this.currencyRepository.revision();
+            final var grouping = this.remoteGrouping;
+            if (grouping != null && grouping.revision() == revision && grouping.remote() == this.remote)
+                return grouping.currencies();
 
+            final var result = new HashMap<Remote, List<Currency>>();
             this.currencyRepository().all().forEach((currency -> {
                 var remote = currency.getRemote();
                 if (remote == null)
                     remote = this.remote;
+                if (remote == null)
+                    return;
 
-                result.computeIfAbsent(remote, (r) -> {
-                    final var array = new ArrayList<Currency>();
-                    array.add(currency);
-                    return array;
-                });
-                result.computeIfPresent(remote, (r, array) -> {
-                    array.add(currency);
-                    return array;
-                });
+                result.computeIfAbsent(remote, (r) -> new ArrayList<>())
+                        .add(currency);
             }));
+            result.replaceAll((remote, currencies) -> List.copyOf(currencies));
+
+            final var currencies = Collections.unmodifiableMap(result);
+            this.remoteGrouping = new RemoteGrouping(revision, this.remote, currencies);
+            return currencies;
+        }
+
+        /**
+         * Query of standings page.
+         *
+         * @param currency Currency.
+         * @param after    Cursor, or null for first page.
+         * @param limit    Maximum count of standings.
+         */
+        private record StandingsQuery(Currency currency, Standing after, int limit) {
+        }
+
+        /**
+         * Query of account standing.
+         *
+         * @param currency Currency.
+         * @param identity Identity of account.
+         */
+        private record StandingQuery(Currency currency, Account.Identity identity) {
+        }
 
-            return result;
+        /**
+         * Cached grouping of currencies by remotes.
+         *
+         * @param revision   Revision of currency repository.
+         * @param remote     Default remote.
+         * @param currencies Currencies by remotes.
+         */
+        private record RemoteGrouping(long revision, Remote remote, Map<Remote, List<Currency>> currencies) {
+        }
+
+        /**
+         * Executor with configuration it was created with.
+         *
+         * @param mode    Execution mode.
+         * @param threads Maximum count of platform threads.
+         * @param service Executor.
+         */
+        private record ConfiguredExecutor(ExecutorProvider.Mode mode, int threads, ExecutorService service) {
+            boolean matches(final CrownedBank.Config config) {
+                return this.mode == config.executorMode()
+                        && this.threads == config.executorThreads()
+                        && !this.service.isShutdown();
+            }
         }
     }
 
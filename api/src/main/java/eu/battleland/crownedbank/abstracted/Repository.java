@@ -4,6 +4,7 @@ import com.google.common.collect.ImmutableSet;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Repository of identifiable entries.
@@ -14,6 +15,8 @@ public abstract class Repository<I, T extends Identifiable<I>> {
 
     private final Map<I, T> entries
             = new ConcurrentHashMap<>();
+    private final AtomicLong revision
+            = new AtomicLong();
 
     /**
      * Register entry.
@@ -22,6 +25,7 @@ public abstract class Repository<I, T extends Identifiable<I>> {
      */
     public void register(final T entry) {
         this.entries.put(entry.identifier(), entry);
+        this.revision.incrementAndGet();
     }
 
     /**
@@ -41,4 +45,11 @@ public abstract class Repository<I, T extends Identifiable<I>> {
         return ImmutableSet.<T>builderWithExpectedSize(this.entries.size()).addAll(entries.values()).build();
     }
 
+    /**
+     * @return Revision of repository, incremented on every change. Used to invalidate views derived from entries.
+     */
+    public long revision() {
+        return this.revision.get();
+    }
+
 }
@@ -4,7 +4,9 @@ import com.google.gson.JsonParser;
 import eu.battleland.crownedbank.CrownedBank;
 import eu.battleland.crownedbank.CrownedBankAPI;
 import eu.battleland.crownedbank.abstracted.Controllable;
+import eu.battleland.crownedbank.helper.ExecutorProvider;
 import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.LogBook;
 import eu.battleland.crownedbank.remote.Remote;
 import lombok.NonNull;
 import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
@@ -62,6 +64,76 @@ public abstract class ConfigBuilder
         try (final var stream = streamConfiguration()) {
             final var root = JsonParser.parseReader(stream).getAsJsonObject();
             {
+                {
+                    // configure settings, before remotes which depend on them
+                    final var settings = CrownedBank.getConfig().toBuilder();
+
+                    final var limit = root.getAsJsonPrimitive("wealth_check_account_limit");
+                    final var timer = root.getAsJsonPrimitive("wealth_check_every_minutes");
+                    if (timer != null)
+                        settings.wealthCheckEveryMillis(timer.getAsLong() * 60 * 1000); // to seconds, to milliseconds
+                    if (limit != null)
+                        settings.wealthCheckAccountLimit(limit.getAsInt());
+
+                    final var standingsCache = root.getAsJsonPrimitive("standings_cache_seconds");
+                    if (standingsCache != null)
+                        settings.standingsCacheMillis(standingsCache.getAsLong() * 1000);
+
+                    final var cacheSize = root.getAsJsonPrimitive("account_cache_size");
+                    final var cacheIdle = root.getAsJsonPrimitive("account_cache_idle_minutes");
+                    if (cacheSize != null)
+                        settings.accountCacheSize(cacheSize.getAsInt());
+                    if (cacheIdle != null)
+                        settings.accountCacheIdleMillis(cacheIdle.getAsLong() * 60 * 1000);
+
+                    final var executorMode = root.getAsJsonPrimitive("executor");
+                    final var executorThreads = root.getAsJsonPrimitive("executor_threads");
+                    if (executorMode != null)
+                        settings.executorMode(ExecutorProvider.Mode.parse(executorMode.getAsString()));
+                    if (executorThreads != null)
+                        settings.executorThreads(executorThreads.getAsInt());
+
+                    final var endpointQueueDepth = root.getAsJsonPrimitive("endpoint_queue_depth");
+                    final var endpointMaxQueued = root.getAsJsonPrimitive("endpoint_max_queued");
+                    if (endpointQueueDepth != null)
+                        settings.endpointQueueDepth(endpointQueueDepth.getAsInt());
+                    if (endpointMaxQueued != null)
+                        settings.endpointMaxQueued(endpointMaxQueued.getAsInt());
+
+                    final var logbookCapacity = root.getAsJsonPrimitive("logbook_capacity");
+                    final var logbookOverflow = root.getAsJsonPrimitive("logbook_overflow");
+                    if (logbookCapacity != null)
+                        settings.logbookCapacity(logbookCapacity.getAsInt());
+                    if (logbookOverflow != null)
+                        settings.logbookOverflow(LogBook.Overflow.parse(logbookOverflow.getAsString()));
+
+                    final var journal = root.getAsJsonObject("journal");
+                    if (journal != null) {
+                        if (journal.has("directory")) {
+                            // relative to configuration file, empty disables journal
+                            final var directory = journal.getAsJsonPrimitive("directory").getAsString();
+                            settings.journalDirectory(directory.isEmpty() ? ""
+                                    : configFile.getParentFile().toPath().resolve(directory).toString());
+                        }
+                        if (journal.has("segment_mb"))
+                            settings.journalSegmentBytes(journal.getAsJsonPrimitive("segment_mb").getAsLong() * 1024 * 1024);
+                        if (journal.has("retention_days"))
+                            settings.journalRetentionMillis(journal.getAsJsonPrimitive("retention_days").getAsLong() * 24 * 60 * 60 * 1000);
+                    }
+
+                    final var endpointSocket = root.getAsJsonObject("endpoint_socket");
+                    if (endpointSocket != null) {
+                        if (endpointSocket.has("host"))
+                            settings.endpointSocketHost(endpointSocket.getAsJsonPrimitive("host").getAsString());
+                        if (endpointSocket.has("port"))
+                            settings.endpointSocketPort(endpointSocket.getAsJsonPrimitive("port").getAsInt());
+                        if (endpointSocket.has("token"))
+                            settings.endpointSocketToken(endpointSocket.getAsJsonPrimitive("token").getAsString());
+                    }
+
+                    CrownedBank.setConfig(settings.build());
+                }
+
                 {
                     // terminate all existing remotes.
                     api.remoteRepository().all()
@@ -159,16 +231,6 @@ public abstract class ConfigBuilder
                             minorCurrency
                     );
                 }
-
-                {
-//                    final var limit = root.getAsJsonPrimitive("wealth_check_account_limit");
-//                    final var timer = root.getAsJsonPrimitive("wealth_check_every_minutes");
-//                    if(timer != null)
-//                        CrownedBank.setWealthyCheckMillis(timer.getAsLong() * 60 * 1000); // to seconds, to milliseconds
-//                    if(limit != null)
-//                        CrownedBank.setWealthyCheckAccountLimit(limit.getAsInt());
-                }
-
             }
         } catch (IOException e) {
             throw new Exception("Couldn't read configuration.", e);
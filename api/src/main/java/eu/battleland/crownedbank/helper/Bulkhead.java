@@ -0,0 +1,228 @@
+package eu.battleland.crownedbank.helper;
+
+import eu.battleland.crownedbank.CrownedBank;
+import lombok.Getter;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead isolating asynchronous tasks of one remote. At most {@link #getConcurrency()} tasks run at once
+ * on executor owned by the bulkhead, at most {@link #getQueueDepth()} tasks wait for their turn.
+ * Tasks submitted while the queue is full fail fast with {@link RejectedException}.
+ */
+public class Bulkhead
+        implements Executor {
+
+    @Getter
+    private final String identifier;
+    @Getter
+    private final int concurrency;
+    @Getter
+    private final int queueDepth;
+
+    private final ExecutorService executor;
+    private final ArrayDeque<Task> queue = new ArrayDeque<>();
+
+    private int active;
+    private long rejected;
+    private long completed;
+    private long waited;
+    private long totalWaitNanos;
+    private long maximumWaitNanos;
+
+    /**
+     * @param identifier  Identifier, usually of remote.
+     * @param concurrency Maximum count of concurrently running tasks.
+     * @param queueDepth  Maximum count of waiting tasks.
+     */
+    public Bulkhead(@NonNull String identifier, int concurrency, int queueDepth) {
+        this.identifier = identifier;
+        this.concurrency = Math.max(1, concurrency);
+        this.queueDepth = Math.max(0, queueDepth);
+
+        final var config = CrownedBank.getConfig();
+        this.executor = ExecutorProvider.create(config.executorMode(), this.concurrency);
+    }
+
+    /**
+     * Supply value asynchronously.
+     *
+     * @param supplier Supplier.
+     * @return Future of value. Completes exceptionally with {@link RejectedException}, if bulkhead is full.
+     */
+    public <T> @NonNull CompletableFuture<T> supply(@NonNull Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, this);
+        } catch (RejectedExecutionException x) {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    /**
+     * Run task asynchronously.
+     *
+     * @param runnable Task.
+     * @return Future. Completes exceptionally with {@link RejectedException}, if bulkhead is full.
+     */
+    public @NonNull CompletableFuture<Void> run(@NonNull Runnable runnable) {
+        try {
+            return CompletableFuture.runAsync(runnable, this);
+        } catch (RejectedExecutionException x) {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    /**
+     * @param command Task.
+     * @throws RejectedException When bulkhead is full.
+     */
+    @Override
+    public void execute(@NonNull Runnable command) {
+        synchronized (this) {
+            if (this.executor.isShutdown())
+                throw new RejectedExecutionException(String.format("Bulkhead '%s' is terminated", this.identifier));
+
+            if (this.active >= this.concurrency) {
+                if (this.queue.size() >= this.queueDepth) {
+                    this.rejected++;
+                    throw new RejectedException(this.identifier);
+                }
+                this.queue.add(new Task(command, System.nanoTime()));
+                return;
+            }
+            this.active++;
+        }
+
+        try {
+            dispatch(command);
+        } catch (RejectedExecutionException x) {
+            synchronized (this) {
+                this.active--;
+            }
+            throw x;
+        }
+    }
+
+    /**
+     * @return Snapshot of bulkhead statistics.
+     */
+    public synchronized @NonNull Stats stats() {
+        return new Stats(this.identifier, this.concurrency, this.queueDepth,
+                this.active, this.queue.size(), this.rejected, this.completed,
+                this.waited == 0 ? 0 : this.totalWaitNanos / this.waited / 1_000_000,
+                this.maximumWaitNanos / 1_000_000);
+    }
+
+    /**
+     * @param throwable Exception, possibly wrapped by {@link CompletionException}.
+     * @return Boolean true if exception is rejection of task by full bulkhead.
+     */
+    public static boolean isRejection(@Nullable Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null)
+            throwable = throwable.getCause();
+        return throwable instanceof RejectedException;
+    }
+
+    /**
+     * Terminate bulkhead. Running and queued tasks are completed.
+     */
+    public void terminate() {
+        this.executor.shutdown();
+    }
+
+    private void dispatch(final Runnable command) {
+        this.executor.execute(() -> {
+            try {
+                command.run();
+            } finally {
+                next();
+            }
+        });
+    }
+
+    /**
+     * Run next queued task in place of completed one. Once executor is terminated, queued tasks
+     * run in place, so that none of them is left behind.
+     */
+    private void next() {
+        while (true) {
+            final Task task;
+            synchronized (this) {
+                this.completed++;
+                task = this.queue.poll();
+                if (task == null) {
+                    this.active--;
+                    return;
+                }
+
+                final var wait = System.nanoTime() - task.enqueuedNanos();
+                this.waited++;
+                this.totalWaitNanos += wait;
+                this.maximumWaitNanos = Math.max(this.maximumWaitNanos, wait);
+            }
+
+            try {
+                dispatch(task.command());
+                return;
+            } catch (RejectedExecutionException x) {
+                try {
+                    task.command().run();
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Queued task.
+     *
+     * @param command       Task.
+     * @param enqueuedNanos Time the task was queued at.
+     */
+    private record Task(Runnable command, long enqueuedNanos) {
+    }
+
+    /**
+     * Bulkhead statistics.
+     *
+     * @param identifier        Identifier.
+     * @param concurrency       Maximum count of concurrently running tasks.
+     * @param queueDepth        Maximum count of waiting tasks.
+     * @param active            Count of running tasks.
+     * @param queued            Count of waiting tasks.
+     * @param rejected          Count of rejected tasks.
+     * @param completed         Count of completed tasks.
+     * @param averageWaitMillis Average time tasks waited in queue.
+     * @param maximumWaitMillis Maximum time a task waited in queue.
+     */
+    public record Stats(String identifier,
+                        int concurrency,
+                        int queueDepth,
+                        int active,
+                        int queued,
+                        long rejected,
+                        long completed,
+                        long averageWaitMillis,
+                        long maximumWaitMillis) {
+    }
+
+    /**
+     * Thrown when task is submitted to full bulkhead.
+     */
+    public static class RejectedException
+            extends RejectedExecutionException {
+        private static final long serialVersionUID = 1L;
+
+        public RejectedException(String identifier) {
+            super(String.format("Bulkhead '%s' is full", identifier));
+        }
+    }
+}
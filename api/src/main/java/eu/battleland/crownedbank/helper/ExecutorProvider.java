@@ -0,0 +1,108 @@
+package eu.battleland.crownedbank.helper;
+
+import eu.battleland.crownedbank.CrownedBank;
+import lombok.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides executors for asynchronous tasks, most of which block on remote I/O.
+ * On Java 21 and newer, each task may run in its own virtual thread, so that blocked tasks cost no carrier threads.
+ * Otherwise, tasks run in bounded pool of platform threads, separate from the common pool shared with other plugins.
+ */
+public final class ExecutorProvider {
+
+    private ExecutorProvider() {
+    }
+
+    /**
+     * Execution mode.
+     */
+    public enum Mode {
+        /**
+         * Virtual threads, when supported by runtime. Platform threads otherwise.
+         */
+        AUTO,
+        /**
+         * Virtual thread per task. Requires Java 21.
+         */
+        VIRTUAL,
+        /**
+         * Bounded pool of platform threads.
+         */
+        PLATFORM;
+
+        /**
+         * @param name Name of mode, case-insensitive.
+         * @return Mode.
+         */
+        public static Mode parse(@NonNull String name) {
+            return Mode.valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Create executor.
+     *
+     * @param mode    Execution mode.
+     * @param threads Maximum count of platform threads, used when virtual threads are not used.
+     * @return Executor.
+     */
+    public static @NonNull ExecutorService create(@NonNull Mode mode, int threads) {
+        if (mode != Mode.PLATFORM) {
+            final var virtual = virtualThreadPerTask();
+            if (virtual != null)
+                return virtual;
+            if (mode == Mode.VIRTUAL)
+                CrownedBank.getLogger().warning("Virtual threads are not supported by runtime, using platform threads.");
+        }
+        return platformPool(threads);
+    }
+
+    /**
+     * @return Boolean true if virtual threads are supported by runtime.
+     */
+    public static boolean virtualThreadsSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * @return Virtual thread per task executor, or null if not supported.
+     */
+    private static ExecutorService virtualThreadPerTask() {
+        if (!virtualThreadsSupported())
+            return null;
+        try {
+            // compiled against Java 17
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException x) {
+            return null;
+        }
+    }
+
+    /**
+     * @param threads Maximum count of threads.
+     * @return Pool of daemon platform threads, which time out when idle.
+     */
+    private static ExecutorService platformPool(int threads) {
+        final var counter = new AtomicInteger();
+        final var pool = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads),
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    final var thread = new Thread(runnable, "CrownedBank Worker #" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,98 @@
+package eu.battleland.crownedbank.helper;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache of futures, which expire after a short time. Concurrent lookups of one key share one future,
+ * futures which complete exceptionally are not kept. Once the cache is full, expired futures are swept,
+ * and if it is still full, futures are returned without being cached.
+ */
+public class ExpiringCache<K, V> {
+
+    @Getter
+    private final int maximumSize;
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param maximumSize Maximum count of cached futures.
+     */
+    public ExpiringCache(int maximumSize) {
+        this.maximumSize = Math.max(1, maximumSize);
+    }
+
+    /**
+     * Get future of key, or load it.
+     *
+     * @param key       Key.
+     * @param ttlMillis Time, for which loaded future is kept. Not cached, if zero or less.
+     * @param loader    Loader of future.
+     * @return Future.
+     */
+    public @NonNull CompletableFuture<V> get(@NonNull K key, long ttlMillis,
+                                             @NonNull Supplier<CompletableFuture<V>> loader) {
+        if (ttlMillis <= 0)
+            return load(loader);
+
+        final var now = System.currentTimeMillis();
+        final var cached = this.entries.get(key);
+        if (cached != null && cached.expiresAt() > now)
+            return cached.future();
+
+        if (this.entries.size() >= this.maximumSize) {
+            this.entries.values().removeIf(entry -> entry.expiresAt() <= now);
+            if (this.entries.size() >= this.maximumSize)
+                return load(loader);
+        }
+
+        final var loaded = new Entry<V>(new CompletableFuture<>(), now + ttlMillis);
+        final var existing = this.entries.merge(key, loaded,
+                (current, created) -> current.expiresAt() > now ? current : created);
+        if (existing != loaded)
+            return existing.future();
+
+        load(loader).whenComplete((value, x) -> {
+            if (x != null) {
+                this.entries.remove(key, loaded);
+                loaded.future().completeExceptionally(x);
+            } else {
+                loaded.future().complete(value);
+            }
+        });
+        return loaded.future();
+    }
+
+    private static <V> CompletableFuture<V> load(final Supplier<CompletableFuture<V>> loader) {
+        try {
+            return loader.get();
+        } catch (Exception x) {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    /**
+     * Remove all cached futures.
+     */
+    public void clear() {
+        this.entries.clear();
+    }
+
+    /**
+     * @return Count of cached futures, including expired ones.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @param future    Future.
+     * @param expiresAt Time, at which future expires, in milliseconds.
+     */
+    private record Entry<V>(CompletableFuture<V> future, long expiresAt) {
+    }
+}
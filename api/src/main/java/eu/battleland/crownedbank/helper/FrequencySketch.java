@@ -0,0 +1,90 @@
+package eu.battleland.crownedbank.helper;
+
+/**
+ * Count-min sketch estimating access frequency of keys, with 4-bit saturating counters.
+ * Counters are periodically halved, so that the sketch forgets old popularity.
+ * <br>
+ * Not thread-safe.
+ *
+ * @param <K> Type of key.
+ */
+public class FrequencySketch<K> {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {
+            0x97cb3127, 0xb5ad4ece, 0x7c159e03, 0x1b873593
+    };
+
+    private final byte[] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param maximumSize Expected maximum count of tracked keys.
+     */
+    public FrequencySketch(int maximumSize) {
+        int width = 16;
+        while (width < maximumSize)
+            width <<= 1;
+
+        this.table = new byte[width * DEPTH];
+        this.mask = width - 1;
+        this.sampleSize = Math.max(10 * maximumSize, 16);
+    }
+
+    /**
+     * @param key Key.
+     * @return Estimated frequency of key, in range 0 to 15.
+     */
+    public int frequency(K key) {
+        final var hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++)
+            frequency = Math.min(frequency, this.table[index(hash, row)]);
+        return frequency;
+    }
+
+    /**
+     * Increment frequency of key.
+     *
+     * @param key Key.
+     */
+    public void increment(K key) {
+        final var hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            final var index = index(hash, row);
+            if (this.table[index] < MAX_COUNT) {
+                this.table[index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++this.additions >= this.sampleSize)
+            reset();
+    }
+
+    /**
+     * Halve all counters.
+     */
+    private void reset() {
+        for (int i = 0; i < this.table.length; i++)
+            this.table[i] = (byte) (this.table[i] >>> 1);
+        this.additions >>>= 1;
+    }
+
+    private int index(int hash, int row) {
+        final var h = (hash ^ SEEDS[row]) * SEEDS[row];
+        return row * (this.mask + 1) + ((h ^ (h >>> 16)) & this.mask);
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        hash *= 0xac4c1b51;
+        return hash ^ (hash >>> 15);
+    }
+}
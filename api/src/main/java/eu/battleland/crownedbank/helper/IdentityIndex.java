@@ -0,0 +1,260 @@
+package eu.battleland.crownedbank.helper;
+
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.model.Account;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Index of values by account identity. Values are kept in two primary-key maps, one by UUID (two longs,
+ * cheap to hash and compare) and one by normalized name, so that lookup by either key is constant-time and
+ * does not go through identity equality.
+ * <br>
+ * Lookup prefers UUID. Name is used when UUID is unknown on either side, or when index is name-major.
+ * Index is name-major if {@link CrownedBank#isIdentityNameMajor()} was set when it was created.
+ * When value is put under a UUID that is already indexed under another name, the old name is unmapped,
+ * so that a renamed identity does not duplicate its entry.
+ * <br>
+ * Reads are lock-free, writes are serialized.
+ *
+ * @param <V> Type of value.
+ */
+public class IdentityIndex<V> {
+
+    private final Map<UUID, Entry<V>> byUuid
+            = new ConcurrentHashMap<>();
+    private final Map<String, Entry<V>> byName
+            = new ConcurrentHashMap<>();
+    private final Set<Entry<V>> entries
+            = ConcurrentHashMap.newKeySet();
+
+    private final boolean nameMajor;
+
+    public IdentityIndex() {
+        this(CrownedBank.isIdentityNameMajor());
+    }
+
+    /**
+     * @param nameMajor Whether identities are looked up by name, even if their UUIDs differ.
+     */
+    public IdentityIndex(boolean nameMajor) {
+        this.nameMajor = nameMajor;
+    }
+
+    /**
+     * @param identity Identity.
+     * @return Value, or null if not indexed.
+     */
+    public @Nullable V get(@NonNull Account.Identity identity) {
+        final var entry = entry(identity);
+        return entry != null ? entry.value() : null;
+    }
+
+    /**
+     * @param identity Identity.
+     * @return Identity under which the value was put, or null if not indexed.
+     */
+    public @Nullable Account.Identity identity(@NonNull Account.Identity identity) {
+        final var entry = entry(identity);
+        return entry != null ? entry.identity() : null;
+    }
+
+    /**
+     * @param identity Identity.
+     * @return Boolean true if identity is indexed.
+     */
+    public boolean contains(@NonNull Account.Identity identity) {
+        return entry(identity) != null;
+    }
+
+    /**
+     * Put value, replacing value indexed under either key of identity.
+     *
+     * @param identity Identity.
+     * @param value    Value.
+     * @return Previous value, or null.
+     */
+    public synchronized @Nullable V put(@NonNull Account.Identity identity, @NonNull V value) {
+        final var previous = entry(identity);
+        if (previous != null)
+            unmap(previous);
+        map(new Entry<>(identity, value));
+        return previous != null ? previous.value() : null;
+    }
+
+    /**
+     * Put value, if no value is indexed under identity.
+     *
+     * @param identity Identity.
+     * @param value    Value.
+     * @return Existing value, or null if value was put.
+     */
+    public synchronized @Nullable V putIfAbsent(@NonNull Account.Identity identity, @NonNull V value) {
+        final var existing = entry(identity);
+        if (existing != null)
+            return existing.value();
+        map(new Entry<>(identity, value));
+        return null;
+    }
+
+    /**
+     * @param identity Identity.
+     * @param function Function computing value, when no value is indexed under identity.
+     * @return Existing or computed value.
+     */
+    public @NonNull V computeIfAbsent(@NonNull Account.Identity identity,
+                                      @NonNull Function<Account.Identity, V> function) {
+        final var existing = entry(identity);
+        if (existing != null)
+            return existing.value();
+
+        synchronized (this) {
+            final var entry = entry(identity);
+            if (entry != null)
+                return entry.value();
+            final var value = function.apply(identity);
+            map(new Entry<>(identity, value));
+            return value;
+        }
+    }
+
+    /**
+     * @param identity Identity.
+     * @return Removed value, or null.
+     */
+    public synchronized @Nullable V remove(@NonNull Account.Identity identity) {
+        final var entry = entry(identity);
+        if (entry == null)
+            return null;
+        unmap(entry);
+        return entry.value();
+    }
+
+    /**
+     * @param identity Identity.
+     * @param value    Value.
+     * @return Boolean true if value was indexed under identity and was removed.
+     */
+    public synchronized boolean remove(@NonNull Account.Identity identity, @NonNull V value) {
+        final var entry = entry(identity);
+        if (entry == null || entry.value() != value)
+            return false;
+        unmap(entry);
+        return true;
+    }
+
+    /**
+     * @return Snapshot of indexed values.
+     */
+    public @NonNull List<V> values() {
+        final var result = new ArrayList<V>(this.entries.size());
+        for (final var entry : this.entries)
+            result.add(entry.value());
+        return result;
+    }
+
+    /**
+     * @return Count of indexed values.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return Boolean true if no value is indexed.
+     */
+    public boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * Clear index.
+     */
+    public synchronized void clear() {
+        this.byUuid.clear();
+        this.byName.clear();
+        this.entries.clear();
+    }
+
+    /**
+     * @param name Name.
+     * @return Normalized name.
+     */
+    public static String normalize(@NonNull String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param identity Identity.
+     * @return Stable key of identity, its UUID, or its normalized name if UUID is unknown.
+     */
+    public static @NonNull Object key(@NonNull Account.Identity identity) {
+        if (identity.uuid() != null)
+            return identity.uuid();
+        return normalize(identity.name());
+    }
+
+    private @Nullable Entry<V> entry(final Account.Identity identity) {
+        if (identity.uuid() != null) {
+            final var entry = this.byUuid.get(identity.uuid());
+            if (entry != null)
+                return entry;
+        }
+        if (identity.name() != null) {
+            final var entry = this.byName.get(normalize(identity.name()));
+            if (entry != null && (entry.identity().uuid() == null
+                    || identity.uuid() == null
+                    || this.nameMajor))
+                return entry;
+        }
+        return null;
+    }
+
+    private void map(final Entry<V> entry) {
+        final var identity = entry.identity();
+        this.entries.add(entry);
+        if (identity.uuid() != null)
+            this.byUuid.put(identity.uuid(), entry);
+        if (identity.name() != null) {
+            // name may have changed hands, the entry previously holding it stays reachable by its uuid
+            final var displaced = this.byName.put(normalize(identity.name()), entry);
+            if (displaced != null && (displaced.identity().uuid() == null
+                    || this.byUuid.get(displaced.identity().uuid()) != displaced))
+                this.entries.remove(displaced);
+        }
+    }
+
+    private void unmap(final Entry<V> entry) {
+        final var identity = entry.identity();
+        this.entries.remove(entry);
+        if (identity.uuid() != null)
+            this.byUuid.remove(identity.uuid(), entry);
+        if (identity.name() != null)
+            this.byName.remove(normalize(identity.name()), entry);
+    }
+
+    /**
+     * Entry compared by reference.
+     */
+    private static final class Entry<V> {
+        private final Account.Identity identity;
+        private final V value;
+
+        private Entry(Account.Identity identity, V value) {
+            this.identity = identity;
+            this.value = value;
+        }
+
+        private Account.Identity identity() {
+            return this.identity;
+        }
+
+        private V value() {
+            return this.value;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package eu.battleland.crownedbank.helper;
+
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
+import lombok.Getter;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Wealthiest accounts of one currency. Seeded from remote, then updated on every balance change,
+ * so that remote is queried only to reconcile it. Reads are lock-free snapshots, updates copy at most its capacity.
+ * <br>
+ * Account which drops out of full leaderboard could be overtaken by account it does not know of.
+ * Leaderboard is then incomplete, until it is reconciled.
+ */
+public class Leaderboard {
+
+    /**
+     * Order of entries, as of {@link Standing#ORDER}.
+     */
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingLong(Entry::amount).reversed()
+            .thenComparing(entry -> Standing.tiebreaker(entry.identity()), Comparator.reverseOrder());
+
+    @Getter
+    private final Currency currency;
+    @Getter
+    private final int capacity;
+    /**
+     * Converts amounts to and from minor units.
+     */
+    private final Currency.Storage scale;
+
+    private volatile Snapshot snapshot
+            = new Snapshot(List.of(), List.of());
+    private volatile long reconciledAt = 0;
+    private volatile boolean incomplete = false;
+
+    /**
+     * Reconciliation in progress and balance changes made during it, guarded by the leaderboard.
+     */
+    private CompletableFuture<List<Standing>> reconciliation;
+    private volatile Map<Account.Identity, Long> pending;
+
+    /**
+     * @param currency Currency.
+     * @param capacity Maximum count of accounts.
+     */
+    public Leaderboard(@NonNull Currency currency, int capacity) {
+        this.currency = currency;
+        this.capacity = Math.max(1, capacity);
+        this.scale = currency.newStorage();
+    }
+
+    /**
+     * @return Snapshot of standings, wealthiest first.
+     */
+    public @NonNull List<Standing> standings() {
+        return this.snapshot.standings();
+    }
+
+    /**
+     * Page of standings, if leaderboard holds all of it.
+     *
+     * @param after Standing, after which page starts. Null for first page.
+     * @param limit Maximum count of standings.
+     * @return Standings of page, or null if cursor is not on leaderboard, or page reaches beyond full leaderboard.
+     */
+    public @Nullable List<Standing> page(@Nullable Standing after, int limit) {
+        final var standings = standings();
+        int from = 0;
+        if (after != null) {
+            from = -1;
+            for (int i = 0; i < standings.size(); i++) {
+                if (standings.get(i).equals(after)) {
+                    from = i + 1;
+                    break;
+                }
+            }
+            if (from < 0)
+                return null;
+        }
+
+        final var to = from + limit;
+        if (to > standings.size() && standings.size() >= this.capacity)
+            return null;
+        return standings.subList(from, Math.min(to, standings.size()));
+    }
+
+    /**
+     * @param identity Identity of account.
+     * @return Standing of account, or null if account is not on leaderboard.
+     */
+    public @Nullable Standing standing(Account.@NonNull Identity identity) {
+        for (final var standing : standings()) {
+            if (standing.identity().equals(identity))
+                return standing;
+        }
+        return null;
+    }
+
+    /**
+     * @return Boolean true if leaderboard was seeded from remote.
+     */
+    public boolean seeded() {
+        return this.reconciledAt != 0;
+    }
+
+    /**
+     * @param now           Current time in milliseconds.
+     * @param everyMillis   Interval of reconciliation.
+     * @return Boolean true if leaderboard should be reconciled with remote.
+     */
+    public boolean stale(long now, long everyMillis) {
+        return this.reconciledAt == 0
+                || this.incomplete
+                || now - this.reconciledAt > everyMillis;
+    }
+
+    /**
+     * Update amount of account.
+     *
+     * @param identity Identity of account.
+     * @param amount   Amount in minor units.
+     */
+    public void update(Account.@NonNull Identity identity, long amount) {
+        // neither on full leaderboard, nor above its last account
+        final var entries = this.snapshot.entries();
+        if (this.pending == null
+                && entries.size() >= this.capacity
+                && ORDER.compare(new Entry(identity, amount), entries.get(entries.size() - 1)) >= 0
+                && indexOf(entries, identity) < 0)
+            return;
+
+        synchronized (this) {
+            if (this.pending != null)
+                this.pending.put(identity, amount);
+            apply(identity, amount);
+        }
+    }
+
+    /**
+     * Reconcile leaderboard with remote. Only one reconciliation runs at a time.
+     *
+     * @param fetch Fetch of wealthiest accounts from remote.
+     * @return Future of standings, once reconciled. Completes exceptionally, if fetch failed.
+     */
+    public synchronized @NonNull CompletableFuture<List<Standing>> reconcile(@NonNull Supplier<CompletableFuture<List<Standing>>> fetch) {
+        if (this.reconciliation != null)
+            return this.reconciliation;
+        this.pending = new HashMap<>();
+
+        CompletableFuture<List<Standing>> fetched;
+        try {
+            fetched = fetch.get();
+        } catch (Exception x) {
+            fetched = CompletableFuture.failedFuture(x);
+        }
+
+        final var future = fetched;
+        final var reconciliation = future.handle((standings, x) -> {
+            synchronized (this) {
+                this.reconciliation = null;
+                final var pending = this.pending;
+                this.pending = null;
+                if (x != null)
+                    return null;
+                seed(standings, pending);
+                return standings();
+            }
+        }).thenCompose(standings -> standings != null
+                ? CompletableFuture.completedFuture(standings)
+                : future);
+        // completed in place, nothing is in progress
+        if (!reconciliation.isDone())
+            this.reconciliation = reconciliation;
+        return reconciliation;
+    }
+
+    /**
+     * Replace entries by standings fetched from remote, and apply changes made since fetch started.
+     */
+    private void seed(final List<Standing> standings, final Map<Account.Identity, Long> pending) {
+        final var entries = new ArrayList<Entry>(standings.size());
+        for (final var standing : standings) {
+            if (indexOf(entries, standing.identity()) < 0)
+                entries.add(new Entry(standing.identity(), this.scale.toMinor(standing.amount())));
+        }
+        entries.sort(ORDER);
+        while (entries.size() > this.capacity)
+            entries.remove(entries.size() - 1);
+
+        this.incomplete = false;
+        publish(entries);
+        if (pending != null)
+            pending.forEach(this::apply);
+        this.reconciledAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Apply amount of account. Must be called with leaderboard locked.
+     */
+    private void apply(final Account.Identity identity, final long amount) {
+        final var current = this.snapshot.entries();
+        final var full = current.size() >= this.capacity;
+        // accounts not on full leaderboard are ordered after its last account
+        final var floor = full ? current.get(current.size() - 1) : null;
+        final var entry = new Entry(identity, amount);
+
+        final var entries = new ArrayList<>(current);
+        final var index = indexOf(entries, identity);
+        if (index >= 0)
+            entries.remove(index);
+        else if (full && ORDER.compare(entry, floor) >= 0)
+            return;
+
+        int position = entries.size();
+        while (position > 0 && ORDER.compare(entries.get(position - 1), entry) > 0)
+            position--;
+        entries.add(position, entry);
+        if (entries.size() > this.capacity)
+            entries.remove(entries.size() - 1);
+
+        // dropped below account it does not know of
+        if (index >= 0 && full && ORDER.compare(entry, floor) > 0)
+            this.incomplete = true;
+        publish(entries);
+    }
+
+    private void publish(final List<Entry> entries) {
+        final var standings = new Standing[entries.size()];
+        for (int i = 0; i < standings.length; i++) {
+            final var entry = entries.get(i);
+            standings[i] = new Standing(entry.identity(), this.scale.fromMinor(entry.amount()), i + 1);
+        }
+        this.snapshot = new Snapshot(List.copyOf(entries), List.of(standings));
+    }
+
+    private static int indexOf(final List<Entry> entries, final Account.Identity identity) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).identity().equals(identity))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @param identity Identity of account.
+     * @param amount   Amount in minor units.
+     */
+    private record Entry(Account.Identity identity, long amount) {
+    }
+
+    /**
+     * @param entries   Entries, wealthiest first.
+     * @param standings Standings of entries.
+     */
+    private record Snapshot(List<Entry> entries, List<Standing> standings) {
+    }
+}
@@ -0,0 +1,158 @@
+package eu.battleland.crownedbank.helper;
+
+import lombok.Getter;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Executor preserving order of tasks of the same key, while tasks of different keys run in parallel.
+ * Tasks are asynchronous, next task of a key starts once future of previous one completes, so no thread waits
+ * on them in between. At most {@link #getLaneDepth()} tasks wait per key, and {@link #getMaxQueued()} in total.
+ */
+public class OrderedExecutor {
+
+    private final Executor executor;
+    @Getter
+    private final int laneDepth;
+    @Getter
+    private final int maxQueued;
+
+    private final Map<Object, Lane> lanes = new HashMap<>();
+    private int queued;
+    private long rejected;
+    private long completed;
+
+    /**
+     * @param executor  Executor running the tasks.
+     * @param laneDepth Maximum count of waiting tasks of one key.
+     * @param maxQueued Maximum count of waiting tasks of all keys.
+     */
+    public OrderedExecutor(@NonNull Executor executor, int laneDepth, int maxQueued) {
+        this.executor = executor;
+        this.laneDepth = Math.max(1, laneDepth);
+        this.maxQueued = Math.max(1, maxQueued);
+    }
+
+    /**
+     * Submit task.
+     *
+     * @param key  Key, tasks of which run in order of submission. Null for unordered task.
+     * @param task Asynchronous task.
+     * @return Future of task result. Completes exceptionally with {@link RejectedExecutionException}, if queue is full.
+     */
+    public <T> @NonNull CompletableFuture<T> submit(@Nullable Object key,
+                                                    @NonNull Supplier<CompletableFuture<T>> task) {
+        final var result = new CompletableFuture<T>();
+        final Lane lane;
+        synchronized (this) {
+            if (this.queued >= this.maxQueued) {
+                this.rejected++;
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Queue is full"));
+            }
+
+            lane = key == null
+                    ? new Lane(null)
+                    : this.lanes.computeIfAbsent(key, Lane::new);
+            if (lane.tasks.size() >= this.laneDepth) {
+                this.rejected++;
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        String.format("Queue of '%s' is full", key)));
+            }
+
+            lane.tasks.add(() -> {
+                CompletableFuture<T> future;
+                try {
+                    future = task.get();
+                } catch (Throwable x) {
+                    future = CompletableFuture.failedFuture(x);
+                }
+                return future.whenComplete((value, x) -> {
+                    if (x != null)
+                        result.completeExceptionally(x);
+                    else
+                        result.complete(value);
+                });
+            });
+            this.queued++;
+
+            if (lane.running)
+                return result;
+            lane.running = true;
+        }
+
+        dispatch(lane);
+        return result;
+    }
+
+    /**
+     * @return Snapshot of executor statistics.
+     */
+    public synchronized @NonNull Stats stats() {
+        return new Stats(this.lanes.size(), this.queued, this.rejected, this.completed);
+    }
+
+    private void dispatch(final Lane lane) {
+        try {
+            this.executor.execute(() -> run(lane));
+        } catch (RejectedExecutionException x) {
+            // executor was shut down, run in place
+            run(lane);
+        }
+    }
+
+    private void run(final Lane lane) {
+        final Supplier<CompletableFuture<?>> task;
+        synchronized (this) {
+            task = lane.tasks.poll();
+            this.queued--;
+        }
+
+        task.get().whenComplete((value, x) -> {
+            synchronized (this) {
+                this.completed++;
+                if (lane.tasks.isEmpty()) {
+                    lane.running = false;
+                    if (lane.key != null)
+                        this.lanes.remove(lane.key);
+                    return;
+                }
+            }
+            dispatch(lane);
+        });
+    }
+
+    /**
+     * Tasks of one key.
+     */
+    private static final class Lane {
+        private final Object key;
+        private final ArrayDeque<Supplier<CompletableFuture<?>>> tasks = new ArrayDeque<>();
+        private boolean running;
+
+        private Lane(final Object key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Executor statistics.
+     *
+     * @param lanes     Count of keys with running or waiting tasks.
+     * @param queued    Count of waiting tasks.
+     * @param rejected  Count of rejected tasks.
+     * @param completed Count of completed tasks.
+     */
+    public record Stats(int lanes,
+                        int queued,
+                        long rejected,
+                        long completed) {
+    }
+}
@@ -0,0 +1,82 @@
+package eu.battleland.crownedbank.helper;
+
+import eu.battleland.crownedbank.CrownedBank;
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Log of frequent events. Records are structured as {@code event key=value ...}, and at most one record
+ * of each event is logged per interval, with count of records suppressed since.
+ */
+public class SampledLog {
+
+    private final long intervalNanos;
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * @param intervalMillis Interval, in which at most one record of each event is logged.
+     */
+    public SampledLog(long intervalMillis) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+    }
+
+    /**
+     * Log record of event, if no record of event was logged in current interval.
+     *
+     * @param level  Level.
+     * @param event  Event.
+     * @param fields Fields, alternating keys and values.
+     */
+    public void log(@NonNull Level level, @NonNull String event, @NonNull Object... fields) {
+        final var logger = CrownedBank.getLogger();
+        if (!logger.isLoggable(level))
+            return;
+
+        final var now = System.nanoTime();
+        final var window = this.windows.computeIfAbsent(event, (key) -> new Window());
+        final int suppressed;
+        synchronized (window) {
+            if (window.logged && now - window.startNanos < this.intervalNanos) {
+                window.suppressed++;
+                return;
+            }
+            suppressed = window.suppressed;
+            window.logged = true;
+            window.startNanos = now;
+            window.suppressed = 0;
+        }
+        logger.log(level, format(event, suppressed, fields));
+    }
+
+    /**
+     * Log record of event at {@link Level#FINE}, formatted only when such records are logged.
+     *
+     * @param event  Event.
+     * @param fields Supplier of fields, alternating keys and values.
+     */
+    public static void trace(@NonNull String event, @NonNull Supplier<Object[]> fields) {
+        final var logger = CrownedBank.getLogger();
+        if (logger.isLoggable(Level.FINE))
+            logger.fine(format(event, 0, fields.get()));
+    }
+
+    private static String format(final String event, final int suppressed, final Object[] fields) {
+        final var builder = new StringBuilder(event);
+        for (int i = 0; i + 1 < fields.length; i += 2)
+            builder.append(' ').append(fields[i]).append('=').append(fields[i + 1]);
+        if (suppressed > 0)
+            builder.append(" suppressed=").append(suppressed);
+        return builder.toString();
+    }
+
+    private static final class Window {
+        private boolean logged;
+        private long startNanos;
+        private int suppressed;
+    }
+}
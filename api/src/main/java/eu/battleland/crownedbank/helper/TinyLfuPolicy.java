@@ -0,0 +1,167 @@
+package eu.battleland.crownedbank.helper;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * W-TinyLFU admission and eviction policy. New keys enter a small LRU window, keys leaving the window
+ * compete with the least recently used key of the main segmented LRU, and the one with lower estimated
+ * frequency is evicted. Keys accessed again in the main space are promoted to its protected segment.
+ * <br>
+ * Policy only tracks keys, it does not hold values. Not thread-safe.
+ *
+ * @param <K> Type of key.
+ */
+public class TinyLfuPolicy<K> {
+
+    @Getter
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+
+    private final FrequencySketch<K> sketch;
+
+    // key -> last access time, ordered from least recently used
+    private final LinkedHashMap<K, Long> window = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Long> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<K, Long> protect = new LinkedHashMap<>();
+
+    /**
+     * @param maximumSize Maximum count of tracked keys.
+     */
+    public TinyLfuPolicy(int maximumSize) {
+        this.maximumSize = Math.max(2, maximumSize);
+        this.windowMaximum = Math.max(1, this.maximumSize / 100);
+        this.protectedMaximum = (int) ((this.maximumSize - this.windowMaximum) * 0.8);
+        this.sketch = new FrequencySketch<>(this.maximumSize);
+    }
+
+    /**
+     * @return Count of tracked keys.
+     */
+    public int size() {
+        return this.window.size() + this.probation.size() + this.protect.size();
+    }
+
+    /**
+     * @param key Key.
+     * @return Boolean true if key is tracked.
+     */
+    public boolean contains(K key) {
+        return this.window.containsKey(key)
+                || this.probation.containsKey(key)
+                || this.protect.containsKey(key);
+    }
+
+    /**
+     * Record access of tracked key.
+     *
+     * @param key Key.
+     * @param now Current time in milliseconds.
+     */
+    public void record(K key, long now) {
+        this.sketch.increment(key);
+
+        if (this.window.remove(key) != null) {
+            this.window.put(key, now);
+        } else if (this.probation.remove(key) != null) {
+            // promote to protected segment
+            this.protect.put(key, now);
+            if (this.protect.size() > this.protectedMaximum) {
+                final var demoted = this.protect.keySet().iterator().next();
+                this.probation.put(demoted, this.protect.remove(demoted));
+            }
+        } else if (this.protect.remove(key) != null) {
+            this.protect.put(key, now);
+        }
+    }
+
+    /**
+     * Add key to policy.
+     *
+     * @param key Key.
+     * @param now Current time in milliseconds.
+     * @return Keys that were evicted to make room.
+     */
+    public List<K> add(K key, long now) {
+        if (contains(key)) {
+            record(key, now);
+            return List.of();
+        }
+        this.sketch.increment(key);
+        this.window.put(key, now);
+
+        final var evicted = new ArrayList<K>(1);
+        while (this.window.size() > this.windowMaximum) {
+            // move window's victim to main space
+            final var candidate = this.window.keySet().iterator().next();
+            this.probation.put(candidate, this.window.remove(candidate));
+
+            if (this.probation.size() + this.protect.size() <= this.maximumSize - this.windowMaximum)
+                continue;
+
+            // candidate competes with main space's victim
+            final var victim = this.probation.size() > 1
+                    ? this.probation.keySet().iterator().next()
+                    : this.protect.keySet().iterator().next();
+            if (this.sketch.frequency(candidate) > this.sketch.frequency(victim)) {
+                remove(victim);
+                evicted.add(victim);
+            } else {
+                remove(candidate);
+                evicted.add(candidate);
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Stop tracking key.
+     *
+     * @param key Key.
+     */
+    public void remove(K key) {
+        if (this.window.remove(key) == null && this.probation.remove(key) == null)
+            this.protect.remove(key);
+    }
+
+    /**
+     * Remove keys idle for longer than specified time.
+     *
+     * @param now        Current time in milliseconds.
+     * @param idleMillis Maximum idle time in milliseconds.
+     * @return Expired keys.
+     */
+    public List<K> expire(long now, long idleMillis) {
+        final var expired = new ArrayList<K>();
+        expire(this.window, now, idleMillis, expired);
+        expire(this.probation, now, idleMillis, expired);
+        expire(this.protect, now, idleMillis, expired);
+        return expired;
+    }
+
+    /**
+     * Stop tracking all keys.
+     */
+    public void clear() {
+        this.window.clear();
+        this.probation.clear();
+        this.protect.clear();
+    }
+
+    private static <K> void expire(LinkedHashMap<K, Long> queue, long now, long idleMillis, List<K> expired) {
+        final Iterator<Map.Entry<K, Long>> iterator = queue.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final var entry = iterator.next();
+            if (now - entry.getValue() <= idleMillis)
+                break;
+            expired.add(entry.getKey());
+            iterator.remove();
+        }
+    }
+}
@@ -9,7 +9,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -30,6 +31,22 @@ public interface TransactionHandler {
                    @NotNull Float amount,
                    @NotNull Account account);
 
+    /**
+     * Handle transaction asynchronously. By default, {@link #handle(Currency.Storage, Float, Account)} is called
+     * on {@link CrownedBank#executor()}, as it may block. Handlers relaying to remote override this,
+     * so that no thread blocks on remote I/O.
+     *
+     * @param currency Currency.
+     * @param amount   Amount.
+     * @param account  Account.
+     * @return Stage completing with transaction's response.
+     */
+    default @NonNull CompletionStage<Boolean> handleAsync(@NotNull Currency.Storage currency,
+                                                          @NotNull Float amount,
+                                                          @NotNull Account account) {
+        return CompletableFuture.supplyAsync(() -> handle(currency, amount, account), CrownedBank.executor());
+    }
+
     /**
      * Relays withdraw transactions directly to remote.
      *
@@ -59,39 +76,97 @@ public interface TransactionHandler {
         public RemoteTransactionRelay(Remote remote) {
             this.remote = remote;
         }
-    }
-
-    /**
-     * Withdraw transaction handler relaying directly to remote.
-     */
-    class RemoteWithdrawTransactionRelay
-            extends RemoteTransactionRelay {
-
-        public RemoteWithdrawTransactionRelay(Remote remote) {
-            super(remote);
-        }
 
+        /**
+         * Blocks until {@link #handleAsync(Currency.Storage, Float, Account)} completes.
+         */
         @Override
         public boolean handle(@NotNull Currency.Storage currency,
                               @NotNull Float amount,
                               @NotNull Account account) {
+            return handleAsync(currency, amount, account)
+                    .toCompletableFuture()
+                    .join();
+        }
+
+        /**
+         * Relay transaction to remote of currency, or to default remote.
+         * Bounded by {@link CrownedBank.Config#remoteTimeoutMillis()}, completes with false on failure.
+         * Completes exceptionally with {@link Bulkhead.RejectedException}, if remote rejected the task.
+         */
+        @Override
+        public @NonNull CompletionStage<Boolean> handleAsync(@NotNull Currency.Storage currency,
+                                                             @NotNull Float amount,
+                                                             @NotNull Account account) {
             var remote = currency.getCurrency().getRemote();
             if (remote == null)
                 remote = this.remote;
             if (remote == null) {
                 CrownedBank.getLogger()
-                        .severe("Remote withdraw transaction handler (relay), does not have any remote to relay to.");
-                return false;
+                        .severe(String.format("Remote %s transaction handler (relay), does not have any remote to relay to.", kind()));
+                return CompletableFuture.completedFuture(false);
             }
 
+            CompletableFuture<Boolean> future;
             try {
-                return remote.handleWithdraw(account, currency, amount)
-                        .get(CrownedBank.getConfig().remoteTimeoutMillis(), TimeUnit.MILLISECONDS);
+                future = relay(remote, currency, amount, account);
             } catch (Exception x) {
-                CrownedBank.getLogger().severe("Handling remote withdrawal threw an exception.");
-                x.printStackTrace();
-                return false;
+                future = CompletableFuture.failedFuture(x);
             }
+
+            return future
+                    .orTimeout(CrownedBank.getConfig().remoteTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally((x) -> {
+                        if (Bulkhead.isRejection(x)) {
+                            CrownedBank.getLogger().warning(String.format("Remote %s was rejected: %s", kind(), x));
+                            throw x instanceof CompletionException c ? c : new CompletionException(x);
+                        }
+                        CrownedBank.getLogger().severe(String.format("Handling remote %s threw an exception: %s", kind(), x));
+                        return false;
+                    });
+        }
+
+        /**
+         * @return Kind of transaction, for logging.
+         */
+        protected abstract String kind();
+
+        /**
+         * Relay transaction to remote.
+         *
+         * @param remote   Remote.
+         * @param currency Currency.
+         * @param amount   Amount.
+         * @param account  Account.
+         * @return Future of transaction's response.
+         */
+        protected abstract CompletableFuture<Boolean> relay(@NotNull Remote remote,
+                                                            @NotNull Currency.Storage currency,
+                                                            float amount,
+                                                            @NotNull Account account);
+    }
+
+    /**
+     * Withdraw transaction handler relaying directly to remote.
+     */
+    class RemoteWithdrawTransactionRelay
+            extends RemoteTransactionRelay {
+
+        public RemoteWithdrawTransactionRelay(Remote remote) {
+            super(remote);
+        }
+
+        @Override
+        protected String kind() {
+            return "withdraw";
+        }
+
+        @Override
+        protected CompletableFuture<Boolean> relay(@NotNull Remote remote,
+                                                   @NotNull Currency.Storage currency,
+                                                   float amount,
+                                                   @NotNull Account account) {
+            return remote.handleWithdraw(account, currency, amount);
         }
     }
 
@@ -107,26 +182,16 @@ public interface TransactionHandler {
 
 
         @Override
-        public boolean handle(@NotNull Currency.Storage currency,
-                              @NotNull Float amount,
-                              @NotNull Account account) {
-            var remote = currency.getCurrency().getRemote();
-            if (remote == null)
-                remote = this.remote;
-            if (remote == null) {
-                CrownedBank.getLogger()
-                        .severe("Remote deposit transaction handler (relay), does not have any remote to relay to.");
-                return false;
-            }
-
-            try {
-                return remote.handleDeposit(account, currency, amount).get();
-            } catch (Exception x) {
-                CrownedBank.getLogger().severe("Handling remote deposit threw an exception.");
-                x.printStackTrace();
+        protected String kind() {
+            return "deposit";
+        }
 
-                return false;
-            }
+        @Override
+        protected CompletableFuture<Boolean> relay(@NotNull Remote remote,
+                                                   @NotNull Currency.Storage currency,
+                                                   float amount,
+                                                   @NotNull Account account) {
+            return remote.handleDeposit(account, currency, amount);
         }
     }
 }
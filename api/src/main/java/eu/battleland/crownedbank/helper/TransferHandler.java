@@ -0,0 +1,133 @@
+package eu.battleland.crownedbank.helper;
+
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.remote.Remote;
+import lombok.NonNull;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer handler. It serves as a handling layer between local and remote, for transfers between two accounts.
+ */
+@FunctionalInterface
+public interface TransferHandler {
+
+    /**
+     * Handle transfer.
+     *
+     * @param senderCurrency   Currency storage of sender.
+     * @param receiverCurrency Currency storage of receiver.
+     * @param amount           Amount.
+     * @param sender           Sender account.
+     * @param receiver         Receiver account.
+     * @return response   Transfer's response.
+     */
+    boolean handle(@NotNull Currency.Storage senderCurrency,
+                   @NotNull Currency.Storage receiverCurrency,
+                   @NotNull Float amount,
+                   @NotNull Account sender,
+                   @NotNull Account receiver);
+
+    /**
+     * Handle transfer asynchronously. By default, {@link #handle(Currency.Storage, Currency.Storage, Float, Account, Account)}
+     * is called on {@link CrownedBank#executor()}, as it may block. Handlers relaying to remote override this,
+     * so that no thread blocks on remote I/O.
+     *
+     * @param senderCurrency   Currency storage of sender.
+     * @param receiverCurrency Currency storage of receiver.
+     * @param amount           Amount.
+     * @param sender           Sender account.
+     * @param receiver         Receiver account.
+     * @return Stage completing with transfer's response.
+     */
+    default @NonNull CompletionStage<Boolean> handleAsync(@NotNull Currency.Storage senderCurrency,
+                                                          @NotNull Currency.Storage receiverCurrency,
+                                                          @NotNull Float amount,
+                                                          @NotNull Account sender,
+                                                          @NotNull Account receiver) {
+        return CompletableFuture.supplyAsync(() -> handle(senderCurrency, receiverCurrency, amount, sender, receiver),
+                CrownedBank.executor());
+    }
+
+    /**
+     * Relays transfers directly to remote.
+     *
+     * @param remote Default remote.
+     * @return Relay
+     */
+    static @NonNull TransferHandler.RemoteTransferRelay remoteTransferRelay(@Nullable Remote remote) {
+        return new RemoteTransferRelay(remote);
+    }
+
+    /**
+     * Transfer handler relaying directly to remote.
+     */
+    class RemoteTransferRelay
+            implements TransferHandler {
+        protected final Remote remote;
+
+        public RemoteTransferRelay(Remote remote) {
+            this.remote = remote;
+        }
+
+        /**
+         * Blocks until {@link #handleAsync(Currency.Storage, Currency.Storage, Float, Account, Account)} completes.
+         */
+        @Override
+        public boolean handle(@NotNull Currency.Storage senderCurrency,
+                              @NotNull Currency.Storage receiverCurrency,
+                              @NotNull Float amount,
+                              @NotNull Account sender,
+                              @NotNull Account receiver) {
+            return handleAsync(senderCurrency, receiverCurrency, amount, sender, receiver)
+                    .toCompletableFuture()
+                    .join();
+        }
+
+        /**
+         * Relay transfer to remote of currency, or to default remote.
+         * Bounded by {@link CrownedBank.Config#remoteTimeoutMillis()}, completes with false on failure.
+         * Completes exceptionally with {@link Bulkhead.RejectedException}, if remote rejected the task.
+         */
+        @Override
+        public @NonNull CompletionStage<Boolean> handleAsync(@NotNull Currency.Storage senderCurrency,
+                                                             @NotNull Currency.Storage receiverCurrency,
+                                                             @NotNull Float amount,
+                                                             @NotNull Account sender,
+                                                             @NotNull Account receiver) {
+            var remote = senderCurrency.getCurrency().getRemote();
+            if (remote == null)
+                remote = this.remote;
+            if (remote == null) {
+                CrownedBank.getLogger()
+                        .severe("Remote transfer handler (relay), does not have any remote to relay to.");
+                return CompletableFuture.completedFuture(false);
+            }
+
+            CompletableFuture<Boolean> future;
+            try {
+                future = remote.handleTransfer(sender, senderCurrency, receiver, receiverCurrency, amount);
+            } catch (Exception x) {
+                future = CompletableFuture.failedFuture(x);
+            }
+
+            return future
+                    .orTimeout(CrownedBank.getConfig().remoteTimeoutMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally((x) -> {
+                        if (Bulkhead.isRejection(x)) {
+                            CrownedBank.getLogger().warning(String.format("Remote transfer was rejected: %s", x));
+                            throw x instanceof CompletionException c ? c : new CompletionException(x);
+                        }
+                        CrownedBank.getLogger().severe(String.format("Handling remote transfer threw an exception: %s", x));
+                        return false;
+                    });
+        }
+    }
+}
@@ -2,26 +2,32 @@ package eu.battleland.crownedbank.model;
 
 import com.google.gson.JsonObject;
 import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.helper.Bulkhead;
 import eu.battleland.crownedbank.helper.TransactionHandler;
+import eu.battleland.crownedbank.helper.TransferHandler;
 import eu.battleland.crownedbank.remote.Remote;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.UUID;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.function.BiConsumer;
 import java.util.function.Predicate;
 
 @Builder
 public class Account {
 
+    /**
+     * Identity of account. Replaced when identity is renamed.
+     */
     @Getter
-    private Account.Identity identity;
+    @Setter
+    private volatile Account.Identity identity;
 
     @Getter
     @Builder.Default
@@ -33,6 +39,17 @@ public class Account {
     @Builder.Default
     private transient TransactionHandler depositHandler = null;
 
+    @Builder.Default
+    private transient TransferHandler transferHandler = null;
+
+    /**
+     * Whether account was modified since it was last flushed by account storage.
+     */
+    @Getter
+    @Setter
+    @Builder.Default
+    private transient volatile boolean dirty = false;
+
 
     /**
      * Withdraw currency from sender(calling object) and deposits it to receiver.
@@ -40,29 +57,43 @@ public class Account {
      * @param receiver Receiver.
      * @param currency Currency.
      * @param amount   Amount of currency.
-     * @return Boolean true if successful.
+     * @return Boolean true if successful. Completes exceptionally with {@link Bulkhead.RejectedException},
+     * if remote rejected the payment before any currency was withdrawn.
      */
     public CompletableFuture<Boolean> pay(final Account receiver,
                                           final Currency currency,
                                           final float amount) {
-        return CompletableFuture.supplyAsync(() -> {
-            final var withdrawResult = LogBook.RecordResult.byBoolean(
-                    this.transaction(withdrawHandler, currency, amount, null, null)
-            );
-
-            boolean result = false;
-            var depositResult = LogBook.RecordResult.NOT_EXECUTED;
-            if (withdrawResult.equals(LogBook.RecordResult.SUCCESS)) {
-                depositResult = LogBook.RecordResult.byBoolean(
-                        receiver.transaction(receiver.depositHandler, currency, amount, null, null)
-                );
-
-                if (depositResult.equals(LogBook.RecordResult.SUCCESS))
-                    result = true;
+        // transfer in single round trip, if possible
+        if (this.transferHandler != null) {
+            return this.transfer(receiver, currency, amount).whenComplete((result, x) -> {
+                final var transferResult = x != null
+                        ? LogBook.RecordResult.ERROR
+                        : LogBook.RecordResult.byBoolean(result);
+                LogBook.logPayment(this, receiver, currency, amount, transferResult,
+                        transferResult.equals(LogBook.RecordResult.SUCCESS)
+                                ? LogBook.RecordResult.SUCCESS
+                                : LogBook.RecordResult.NOT_EXECUTED);
+            });
+        }
+
+        return this.transaction(withdrawHandler, currency, amount, null, null).whenComplete((withdrawn, x) -> {
+            if (x != null)
+                LogBook.logPayment(this, receiver, currency, amount, LogBook.RecordResult.ERROR, LogBook.RecordResult.NOT_EXECUTED);
+        }).thenCompose((withdrawn) -> {
+            final var withdrawResult = LogBook.RecordResult.byBoolean(withdrawn);
+            if (!withdrawResult.equals(LogBook.RecordResult.SUCCESS)) {
+                LogBook.logPayment(this, receiver, currency, amount, withdrawResult, LogBook.RecordResult.NOT_EXECUTED);
+                return CompletableFuture.completedFuture(false);
             }
 
-            LogBook.logPayment(this, receiver, currency, amount, withdrawResult, depositResult);
-            return result;
+            // currency was already withdrawn, rejected deposit is reported as failed payment
+            return receiver.transaction(receiver.depositHandler, currency, amount, null, null).handle((deposited, x) -> {
+                final var depositResult = x != null
+                        ? LogBook.RecordResult.ERROR
+                        : LogBook.RecordResult.byBoolean(deposited);
+                LogBook.logPayment(this, receiver, currency, amount, withdrawResult, depositResult);
+                return depositResult.equals(LogBook.RecordResult.SUCCESS);
+            });
         });
     }
 
@@ -72,24 +103,20 @@ public class Account {
      * @param currency Currency
      * @param amount   Amount
      * @return Completable Future which completes with boolean true if withdraw was completed successfully. Completes with null, on unhandled exceptions.
+     * Completes exceptionally with {@link Bulkhead.RejectedException}, if remote rejected the withdraw.
      */
     public CompletableFuture<@Nullable Boolean> withdraw(final Currency currency,
                                                          float amount) {
-        return CompletableFuture.supplyAsync(() -> {
-            final var result = this.transaction(this.withdrawHandler, currency, amount, () -> {
-                CrownedBank.getLogger().info(String.format(
-                        "Successfully withdrawn '%.2f' %s from account '%s'.", amount, currency.identifier(), identity
-                ));
-            }, () -> {
-                CrownedBank.getLogger().info(String.format(
-                        "Failed to withdraw '%.2f' %s from account '%s'.", amount, currency.identifier(), identity
-                ));
-            });
-
-            LogBook.logWithdraw(this, currency, amount, LogBook.RecordResult.byBoolean(result));
-
-            return result;
-        });
+        return this.transaction(this.withdrawHandler, currency, amount, () -> {
+            CrownedBank.getLogger().info(String.format(
+                    "Successfully withdrawn '%.2f' %s from account '%s'.", amount, currency.identifier(), identity
+            ));
+        }, () -> {
+            CrownedBank.getLogger().info(String.format(
+                    "Failed to withdraw '%.2f' %s from account '%s'.", amount, currency.identifier(), identity
+            ));
+        }).whenComplete((result, x) -> LogBook.logWithdraw(this, currency, amount,
+                x != null ? LogBook.RecordResult.ERROR : LogBook.RecordResult.byBoolean(result)));
     }
 
     /**
@@ -98,18 +125,14 @@ public class Account {
      * @param currency Currency
      * @param amount   Amount
      * @return Completable Future which completes with boolean true if deposit was completed successfully.
+     * Completes exceptionally with {@link Bulkhead.RejectedException}, if remote rejected the deposit.
      */
 
     public CompletableFuture<@Nullable Boolean> deposit(final Currency currency,
                                                         float amount) {
-        return CompletableFuture.supplyAsync(() -> {
-            final var result = this.transaction(this.depositHandler,
-                    currency, amount, null, null);
-
-            LogBook.logDeposit(this, currency, amount, LogBook.RecordResult.byBoolean(result));
-
-            return result;
-        });
+        return this.transaction(this.depositHandler, currency, amount, null, null).whenComplete((result, x) ->
+                LogBook.logDeposit(this, currency, amount,
+                        x != null ? LogBook.RecordResult.ERROR : LogBook.RecordResult.byBoolean(result)));
     }
 
     /**
@@ -117,18 +140,75 @@ public class Account {
      * @return Currency amount.
      */
     public float status(final Currency currency) {
-        final var storage = this.data.currencies.get(currency);
+        final var storage = this.data.storage(currency);
         if (storage != null)
             return storage.amount();
         return 0;
     }
 
     /**
-     * Account Data
-     *
-     * @param currencies
+     * Account Data. Currency storages are kept in a dense array indexed by {@link Currency#index()}.
+     * The array is copy-on-write, storages are added rarely, while lookups are a plain array read.
      */
-    public record Data(Map<Currency, Currency.Storage> currencies) {
+    public static final class Data {
+
+        private static final Currency.Storage[] EMPTY = new Currency.Storage[0];
+
+        private volatile Currency.Storage[] storages;
+
+        private Data(final Currency.Storage[] storages) {
+            this.storages = storages;
+        }
+
+        /**
+         * @param currency Currency.
+         * @return Storage of currency, or null if account has no storage of currency.
+         */
+        public @Nullable Currency.Storage storage(final @NonNull Currency currency) {
+            final var index = currency.index();
+            final var storages = this.storages;
+            return index < storages.length ? storages[index] : null;
+        }
+
+        /**
+         * @param currency Currency.
+         * @return Storage of currency. Created, if account has no storage of currency.
+         */
+        public @NonNull Currency.Storage storageOrCreate(final @NonNull Currency currency) {
+            final var storage = storage(currency);
+            if (storage != null)
+                return storage;
+
+            synchronized (this) {
+                final var existing = storage(currency);
+                if (existing != null)
+                    return existing;
+                final var created = currency.newStorage();
+                this.storages = with(this.storages, created);
+                return created;
+            }
+        }
+
+        /**
+         * Put storage, replacing existing storage of the same currency.
+         *
+         * @param storage Storage.
+         */
+        public synchronized void put(final @NonNull Currency.Storage storage) {
+            this.storages = with(this.storages, storage);
+        }
+
+        /**
+         * @return Snapshot of all storages.
+         */
+        public @NonNull List<Currency.Storage> storages() {
+            final var result = new ArrayList<Currency.Storage>();
+            for (final var storage : this.storages) {
+                if (storage != null)
+                    result.add(storage);
+            }
+            return result;
+        }
 
         /**
          * Iterate through all currencies and call handler on them and their values.
@@ -136,9 +216,10 @@ public class Account {
          * @param handler Handler.
          */
         public void iterateCurrencies(final BiConsumer<Currency, Float> handler) {
-            this.currencies.forEach((currency, storage) -> {
-                handler.accept(currency, storage.amount());
-            });
+            for (final var storage : this.storages) {
+                if (storage != null)
+                    handler.accept(storage.getCurrency(), storage.amount());
+            }
         }
 
         /**
@@ -164,7 +245,7 @@ public class Account {
                     final var amount = entry.getValue()
                             .getAsJsonPrimitive()
                             .getAsFloat();
-                    data.currencies.put(currency, currency.newStorage().change(amount));
+                    data.put(currency.newStorage().change(amount));
                 });
             }
             return data;
@@ -190,7 +271,12 @@ public class Account {
          * @param data Other data, which will be destroyed after joining this data.
          */
         public synchronized void join(@NonNull Account.Data data) {
-            this.currencies.putAll(data.currencies);
+            var storages = this.storages;
+            for (final var storage : data.storages) {
+                if (storage != null)
+                    storages = with(storages, storage);
+            }
+            this.storages = storages;
             data.destroy();
         }
 
@@ -198,14 +284,27 @@ public class Account {
          * Destroy all data.
          */
         public synchronized void destroy() {
-            this.currencies.clear();
+            this.storages = EMPTY;
         }
 
         /**
          * @return Empty Data
          */
         public static Data empty() {
-            return new Account.Data(new HashMap<>());
+            return new Account.Data(EMPTY);
+        }
+
+        /**
+         * @param storages Storages.
+         * @param storage  Storage.
+         * @return Copy of storages, with storage at its currency index.
+         */
+        private static Currency.Storage[] with(final Currency.Storage[] storages,
+                                               final Currency.Storage storage) {
+            final var index = storage.getCurrency().index();
+            final var copy = Arrays.copyOf(storages, Math.max(storages.length, index + 1));
+            copy[index] = storage;
+            return copy;
         }
     }
 
@@ -225,10 +324,12 @@ public class Account {
         }
 
         /**
-         * Equals operator
+         * Equals operator. Identities are compared by uuid, or by name if neither knows its uuid.
+         * Lookup of identity by name only, or by name if {@link CrownedBank#isIdentityNameMajor()} is set,
+         * goes through {@link eu.battleland.crownedbank.helper.IdentityIndex}.
          *
          * @param o Other object.
-         * @return Boolean true if identity matches by uuid. If {@link CrownedBank#isIdentityNameMajor()} is set to true, returns boolean true if identity matches by name.
+         * @return Boolean true if identity matches.
          */
         @Override
         public boolean equals(Object o) {
@@ -237,63 +338,148 @@ public class Account {
 
             Identity identity = (Identity) o;
 
-            if (CrownedBank.isIdentityNameMajor())
-                return Objects.equals(name, identity.name);
-            else
+            if (uuid != null || identity.uuid != null)
                 return Objects.equals(uuid, identity.uuid);
+            return Objects.equals(name, identity.name);
         }
 
         /**
-         * @return Returns hash code of uuid. If {@link CrownedBank#isIdentityNameMajor()} is set to true, returns hash code of name instead.
+         * @return Returns hash code of uuid, or of name if uuid is unknown.
          */
         @Override
         public int hashCode() {
-            return CrownedBank.isIdentityNameMajor() ? name.hashCode() : uuid.hashCode();
+            return uuid != null ? uuid.hashCode() : Objects.hashCode(name);
         }
     }
 
 
+    /**
+     * @param currency Currency.
+     * @return Boolean true if transactions of currency are persisted by its remote, see {@link Remote#persistsTransactions()}.
+     */
+    private static boolean persisted(final Currency currency) {
+        final var remote = currency.getRemote();
+        return remote != null && remote.persistsTransactions();
+    }
+
+    /**
+     * Private implementation of transfer handling.
+     */
+    private CompletableFuture<Boolean> transfer(final Account receiver,
+                                                final Currency currency,
+                                                float amount) {
+        // round if decimal points are now allowed
+        if (!currency.isAllowDecimal())
+            amount = Math.round(amount);
+
+        final var senderStorage = this.data.storageOrCreate(currency);
+        final var receiverStorage = receiver.data.storageOrCreate(currency);
+
+        CompletionStage<Boolean> stage;
+        try {
+            stage = this.transferHandler.handleAsync(senderStorage, receiverStorage, amount, this, receiver);
+        } catch (final Exception x) {
+            stage = CompletableFuture.failedFuture(x);
+        }
+
+        return stage.toCompletableFuture().handle((result, x) -> {
+            if (Bulkhead.isRejection(x)) {
+                CrownedBank.getLogger().warning(String.format("Transfer from account '%s' was rejected: %s", identity, x));
+                throw x instanceof CompletionException c ? c : new CompletionException(x);
+            }
+            if (x != null) {
+                CrownedBank.getLogger().severe("Transfer handler threw exception");
+                x.printStackTrace();
+                return false;
+            }
+            if (Boolean.TRUE.equals(result)) {
+                if (!persisted(currency)) {
+                    this.dirty = true;
+                    receiver.dirty = true;
+                }
+                notifyBalanceChange(this, senderStorage);
+                notifyBalanceChange(receiver, receiverStorage);
+                return true;
+            }
+            return false;
+        });
+    }
+
     /**
      * Private implementation of transaction handling.
+     * No account-wide lock is held, transactions of one currency are isolated by its {@link Currency.Storage},
+     * which is updated atomically. Handlers relaying to remote therefore do not hold any lock during remote I/O.
+     * Handler is called through {@link TransactionHandler#handleAsync(Currency.Storage, Float, Account)},
+     * so that no thread blocks on remote I/O.
      */
-    private synchronized Boolean transaction(final TransactionHandler handler,
-                                             final Currency currency,
-                                             float amount,
-                                             Runnable onSuccess,
-                                             Runnable onFailure) {
+    private CompletableFuture<Boolean> transaction(final TransactionHandler handler,
+                                                   final Currency currency,
+                                                   float amount,
+                                                   Runnable onSuccess,
+                                                   Runnable onFailure) {
 
         // round if decimal points are now allowed
         if(!currency.isAllowDecimal())
             amount = Math.round(amount);
 
-        boolean result;
+        final var storage = this.data.storageOrCreate(currency);
+        CompletionStage<Boolean> stage;
         try {
             // call transaction handler
-            result = handler.handle(this.data.currencies.computeIfAbsent(currency, (t) -> currency.newStorage()), amount, this);
+            stage = handler.handleAsync(storage, amount, this);
         } catch (final Exception x) {
-            CrownedBank.getLogger().severe("Transaction handler threw exception");
-            x.printStackTrace();
-
-            result = false;
+            stage = CompletableFuture.failedFuture(x);
         }
 
-        try {
-            // transaction accepted
-            if (result && onSuccess != null) {
-                onSuccess.run();
-                return true;
-            } else if (onFailure != null) {
-                // transaction not accepted
-                onFailure.run();
-                return false;
-            } else
+        return stage.toCompletableFuture().handle((handled, x) -> {
+            // rejected transaction was not executed, it is neither accepted nor declined
+            if (Bulkhead.isRejection(x)) {
+                CrownedBank.getLogger().warning(String.format("Transaction of account '%s' was rejected: %s", identity, x));
+                throw x instanceof CompletionException c ? c : new CompletionException(x);
+            }
+
+            boolean result;
+            if (x != null) {
+                CrownedBank.getLogger().severe("Transaction handler threw exception");
+                x.printStackTrace();
+
+                result = false;
+            } else {
+                result = Boolean.TRUE.equals(handled);
+                if (result) {
+                    if (!persisted(currency))
+                        this.dirty = true;
+                    notifyBalanceChange(this, storage);
+                }
+            }
+
+            try {
+                // transaction accepted
+                if (result && onSuccess != null) {
+                    onSuccess.run();
+                    return true;
+                } else if (onFailure != null) {
+                    // transaction not accepted
+                    onFailure.run();
+                    return false;
+                } else
+                    return result;
+
+            } catch (Exception callbackException) {
+                CrownedBank.getLogger().severe("Transaction callbacks threw exception");
+                callbackException.printStackTrace();
                 return result;
+            }
+        });
+    }
 
-        } catch (Exception x) {
-            CrownedBank.getLogger().severe("Transaction callbacks threw exception");
-            x.printStackTrace();
-            return result;
-        }
+    /**
+     * Notify balance listeners of API, if there is any API.
+     */
+    private static void notifyBalanceChange(final Account account, final Currency.Storage storage) {
+        final var api = CrownedBank.getApi();
+        if (api != null)
+            api.balanceChanged(account, storage);
     }
 
 }
@@ -1,5 +1,6 @@
 package eu.battleland.crownedbank.model;
 
+import eu.battleland.crownedbank.CrownedBank;
 import eu.battleland.crownedbank.abstracted.Identifiable;
 import eu.battleland.crownedbank.remote.Remote;
 import lombok.Builder;
@@ -8,7 +9,11 @@ import lombok.NonNull;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents currency.
@@ -47,11 +52,38 @@ public class Currency
     @Getter
     private Remote remote;
 
+    private final transient AtomicInteger index
+            = new AtomicInteger(-1);
+
     @Override
     public @NonNull String identifier() {
         return this.identifier;
     }
 
+    /**
+     * @return Dense index of currency, assigned by {@link eu.battleland.crownedbank.repo.CurrencyRepository}
+     * registering it. Currency which was not registered is indexed by repository of the API.
+     */
+    public int index() {
+        final var index = this.index.get();
+        if (index >= 0)
+            return index;
+        this.index.compareAndSet(-1, CrownedBank.getApi()
+                .currencyRepository()
+                .index(this));
+        return this.index.get();
+    }
+
+    /**
+     * Assign dense index of currency. Called by {@link eu.battleland.crownedbank.repo.CurrencyRepository}
+     * registering it.
+     *
+     * @param index Index.
+     */
+    public void assignIndex(int index) {
+        this.index.set(index);
+    }
+
     /**
      * @return Storage.
      */
@@ -112,13 +144,39 @@ public class Currency
     }
 
     /**
-     * Storage of currency.
+     * Storage of currency. Amount is kept as fixed-point minor units,
+     * with {@link CrownedBank.Config#valueFractionalDigits()} digits, and is updated lock-free.
+     * Float methods are a compatibility view over the minor units.
      */
     public static class Storage {
 
+        private static final VarHandle VALUE;
+
+        static {
+            try {
+                VALUE = MethodHandles.lookup()
+                        .findVarHandle(Storage.class, "value", long.class);
+            } catch (ReflectiveOperationException x) {
+                throw new ExceptionInInitializerError(x);
+            }
+        }
+
+        /**
+         * Versions of snapshots. Seeded by wall clock, so that versions keep increasing across restarts.
+         */
+        private static final AtomicLong VERSIONS
+                = new AtomicLong(System.currentTimeMillis() * 1000);
+
         @Getter
         private final Currency currency;
-        private volatile float value = 0;
+        @Getter
+        private final long scale;
+        private volatile long value = 0;
+        /**
+         * Version of amount, as replicated by {@link #replicate(long, long)}.
+         */
+        @Getter
+        private long version = 0;
 
         /**
          * New Instance of currency storage.
@@ -127,13 +185,25 @@ public class Currency
          */
         public Storage(final Currency currency) {
             this.currency = currency;
+
+            long scale = 1;
+            for (int i = 0; i < CrownedBank.getConfig().valueFractionalDigits(); i++)
+                scale *= 10;
+            this.scale = scale;
         }
 
         /**
          * @return Amount of the currency.
          */
-        public synchronized float amount() {
-            return value;
+        public float amount() {
+            return fromMinor(this.value);
+        }
+
+        /**
+         * @return Amount of the currency in minor units.
+         */
+        public long minorAmount() {
+            return this.value;
         }
 
         /**
@@ -141,8 +211,17 @@ public class Currency
          *
          * @param val Value.
          */
-        public synchronized Storage change(float val) {
-            value = val;
+        public Storage change(float val) {
+            return changeMinor(toMinor(val));
+        }
+
+        /**
+         * Change amount of currency.
+         *
+         * @param val Value in minor units.
+         */
+        public Storage changeMinor(long val) {
+            this.value = val;
             return this;
         }
 
@@ -152,24 +231,94 @@ public class Currency
          * @param val Value.
          * @return Boolean true if deposit was made.
          */
-        public synchronized boolean deposit(float val) {
-            value += val;
-            return true;
+        public boolean deposit(float val) {
+            return depositMinor(toMinor(val));
         }
 
         /**
          * Deposit an amount of currency.
          *
+         * @param val Value in minor units.
+         * @return Boolean true if deposit was made.
+         */
+        public boolean depositMinor(long val) {
+            VALUE.getAndAdd(this, val);
+            return true;
+        }
+
+        /**
+         * Withdraw an amount of currency.
+         *
          * @param val Value.
          * @return Boolean true if withdraw was made.
          */
-        public synchronized boolean withdraw(float val) {
-            final var modified = (this.value - val);
-            if (modified >= 0) {
-                value -= val;
-                return true;
-            }
-            return false;
+        public boolean withdraw(float val) {
+            return withdrawMinor(toMinor(val));
+        }
+
+        /**
+         * Withdraw an amount of currency.
+         *
+         * @param val Value in minor units.
+         * @return Boolean true if withdraw was made.
+         */
+        public boolean withdrawMinor(long val) {
+            long current;
+            do {
+                current = this.value;
+                if (current - val < 0)
+                    return false;
+            } while (!VALUE.compareAndSet(this, current, current - val));
+            return true;
+        }
+
+        /**
+         * Take snapshot of amount. Snapshot taken later has greater version, and its amount is not older.
+         *
+         * @return Snapshot of amount in minor units.
+         */
+        public synchronized @NonNull Snapshot snapshot() {
+            return new Snapshot(this.value, VERSIONS.incrementAndGet());
+        }
+
+        /**
+         * Replicate amount from snapshot, unless amount of the same or greater version was replicated already.
+         *
+         * @param val     Value in minor units.
+         * @param version Version of value.
+         * @return Boolean true if amount was replicated.
+         */
+        public synchronized boolean replicate(long val, long version) {
+            if (version <= this.version)
+                return false;
+            this.version = version;
+            this.value = val;
+            return true;
+        }
+
+        /**
+         * @param val Value.
+         * @return Value in minor units.
+         */
+        public long toMinor(float val) {
+            return Math.round((double) val * this.scale);
+        }
+
+        /**
+         * @param val Value in minor units.
+         * @return Value.
+         */
+        public float fromMinor(long val) {
+            return (float) ((double) val / this.scale);
+        }
+
+        /**
+         * Snapshot of amount.
+         *
+         * @param amount  Amount in minor units.
+         * @param version Version of snapshot.
+         */
+        public record Snapshot(long amount, long version) {
         }
     }
 }
@@ -0,0 +1,318 @@
+package eu.battleland.crownedbank.model;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only journal of {@link LogBook.Record records}, written through memory-mapped segment files.
+ * Records have a fixed width of {@link #RECORD_SIZE} bytes, so that they are written without intermediate
+ * buffers, and scanned without parsing text. Once a segment is full, journal rotates to next segment,
+ * and deletes segments older than retention.
+ * <br>
+ * Layout of record:
+ * <pre>
+ *   0  kind         byte, ordinal + 1, zero marks free space
+ *   1  flags        byte, sender uuid, receiver, receiver uuid
+ *   2  result       byte, ordinal
+ *   3  receiver     byte, ordinal of receiver result
+ *   4  amount       float
+ *   8  timestamp    long, milliseconds
+ *  16  sender uuid  two longs
+ *  32  receiver     two longs, uuid
+ *  48  currency     16 bytes, UTF-8, zero padded
+ *  64  sender name  32 bytes, UTF-8, zero padded
+ *  96  receiver     32 bytes, UTF-8, zero padded, name
+ * </pre>
+ * Kind is written last, so that a record is either complete, or not visible to scans.
+ * Journal is not thread-safe, log book appends from a single thread.
+ */
+public class Journal implements AutoCloseable {
+
+    public static final int RECORD_SIZE = 128;
+    public static final int MAGIC = 0x43424A31;
+    public static final short VERSION = 1;
+
+    private static final String SUFFIX = ".journal";
+
+    private static final byte SENDER_UUID = 1;
+    private static final byte RECEIVER = 1 << 1;
+    private static final byte RECEIVER_UUID = 1 << 2;
+
+    private static final int CURRENCY_OFFSET = 48;
+    private static final int CURRENCY_SIZE = 16;
+    private static final int SENDER_NAME_OFFSET = 64;
+    private static final int RECEIVER_NAME_OFFSET = 96;
+    private static final int NAME_SIZE = 32;
+
+    @Getter
+    private final Path directory;
+    @Getter
+    private final int segmentBytes;
+    @Getter
+    private final long retentionMillis;
+
+    private long segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean closed;
+
+    /**
+     * @param directory       Directory of segment files, created if missing.
+     * @param segmentBytes    Size of segment file, rounded down to multiple of record size.
+     * @param retentionMillis Time, after which full segments are deleted. Kept forever, if zero or less.
+     * @throws IOException When segment can't be opened.
+     */
+    public Journal(@NonNull Path directory, long segmentBytes, long retentionMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = (int) (Math.max(2, Math.min(segmentBytes, Integer.MAX_VALUE) / RECORD_SIZE) * RECORD_SIZE);
+        this.retentionMillis = retentionMillis;
+
+        Files.createDirectories(directory);
+        final var segments = segments(directory);
+        if (segments.isEmpty()) {
+            open(0);
+            return;
+        }
+
+        // continue last segment after its last record
+        final var last = segments.get(segments.size() - 1);
+        open(index(last));
+        if (!validHeader(this.buffer)) {
+            rotate();
+            return;
+        }
+        int position = RECORD_SIZE;
+        while (position < this.buffer.capacity() && this.buffer.get(position) != 0)
+            position += RECORD_SIZE;
+        this.buffer.position(position);
+    }
+
+    /**
+     * Append record, rotating to next segment if current one is full.
+     *
+     * @param record Record.
+     * @throws IOException When next segment can't be opened.
+     */
+    public void append(LogBook.@NonNull Record record) throws IOException {
+        if (this.closed)
+            throw new IllegalStateException("Journal is closed");
+        if (this.buffer.remaining() < RECORD_SIZE)
+            rotate();
+
+        final var buffer = this.buffer;
+        final var base = buffer.position();
+        final var account = record.account();
+        final var receiver = record.receiver();
+
+        byte flags = 0;
+        if (account.uuid() != null) {
+            flags |= SENDER_UUID;
+            buffer.putLong(base + 16, account.uuid().getMostSignificantBits());
+            buffer.putLong(base + 24, account.uuid().getLeastSignificantBits());
+        }
+        if (receiver != null) {
+            flags |= RECEIVER;
+            if (receiver.uuid() != null) {
+                flags |= RECEIVER_UUID;
+                buffer.putLong(base + 32, receiver.uuid().getMostSignificantBits());
+                buffer.putLong(base + 40, receiver.uuid().getLeastSignificantBits());
+            }
+            putString(buffer, base + RECEIVER_NAME_OFFSET, NAME_SIZE, receiver.name());
+        }
+        buffer.put(base + 1, flags);
+        buffer.put(base + 2, (byte) record.result().ordinal());
+        buffer.put(base + 3, (byte) record.receiverResult().ordinal());
+        buffer.putFloat(base + 4, record.amount());
+        buffer.putLong(base + 8, record.timestamp());
+        putString(buffer, base + CURRENCY_OFFSET, CURRENCY_SIZE, record.currency());
+        putString(buffer, base + SENDER_NAME_OFFSET, NAME_SIZE, account.name());
+        // commit record
+        buffer.put(base, (byte) (record.kind().ordinal() + 1));
+        buffer.position(base + RECORD_SIZE);
+    }
+
+    /**
+     * Force written records to storage device.
+     */
+    public void force() {
+        if (!this.closed)
+            this.buffer.force();
+    }
+
+    /**
+     * Force written records, and close current segment.
+     *
+     * @throws IOException When segment can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+        this.closed = true;
+        this.buffer.force();
+        this.channel.close();
+    }
+
+    private void rotate() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+        open(this.segment + 1);
+        if (this.retentionMillis > 0)
+            retain(System.currentTimeMillis() - this.retentionMillis);
+    }
+
+    private void open(final long segment) throws IOException {
+        final var file = this.directory.resolve(String.format("%020d%s", segment, SUFFIX));
+        final var created = !Files.exists(file);
+        this.segment = segment;
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentBytes);
+        if (created) {
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putShort(4, VERSION);
+            this.buffer.putShort(6, (short) RECORD_SIZE);
+            this.buffer.putLong(8, System.currentTimeMillis());
+        }
+        this.buffer.position(RECORD_SIZE);
+    }
+
+    /**
+     * Delete segments, which were followed by a segment created before threshold.
+     */
+    private void retain(final long threshold) throws IOException {
+        final var segments = segments(this.directory);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            final var next = segments.get(i + 1);
+            if (index(next) > this.segment || created(next) >= threshold)
+                break;
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * @param directory Directory of journal.
+     * @return Segment files, oldest first.
+     * @throws IOException When directory can't be listed.
+     */
+    public static @NonNull List<Path> segments(@NonNull Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return List.of();
+        try (final var files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Scan records of journal, oldest first. Segments are mapped read-only, and may be scanned
+     * while journal is written.
+     *
+     * @param directory Directory of journal.
+     * @param consumer  Consumer of records.
+     * @return Count of scanned records.
+     * @throws IOException When segment can't be read.
+     */
+    public static long scan(@NonNull Path directory, @NonNull Consumer<LogBook.Record> consumer) throws IOException {
+        long count = 0;
+        for (final var file : segments(directory)) {
+            try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (!validHeader(buffer))
+                    continue;
+                for (int base = RECORD_SIZE; base + RECORD_SIZE <= buffer.capacity(); base += RECORD_SIZE) {
+                    final var kind = buffer.get(base);
+                    if (kind == 0)
+                        break;
+                    consumer.accept(read(buffer, base, kind));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static LogBook.Record read(final ByteBuffer buffer, final int base, final byte kind) {
+        final var flags = buffer.get(base + 1);
+        final var account = new Account.Identity((flags & SENDER_UUID) != 0
+                ? new UUID(buffer.getLong(base + 16), buffer.getLong(base + 24))
+                : null, getString(buffer, base + SENDER_NAME_OFFSET, NAME_SIZE));
+        final var receiver = (flags & RECEIVER) != 0
+                ? new Account.Identity((flags & RECEIVER_UUID) != 0
+                ? new UUID(buffer.getLong(base + 32), buffer.getLong(base + 40))
+                : null, getString(buffer, base + RECEIVER_NAME_OFFSET, NAME_SIZE))
+                : null;
+        return new LogBook.Record(LogBook.Kind.VALUES[kind - 1],
+                buffer.getLong(base + 8),
+                account,
+                receiver,
+                Objects.requireNonNullElse(getString(buffer, base + CURRENCY_OFFSET, CURRENCY_SIZE), ""),
+                buffer.getFloat(base + 4),
+                LogBook.RecordResult.VALUES[buffer.get(base + 2)],
+                LogBook.RecordResult.VALUES[buffer.get(base + 3)]);
+    }
+
+    private static boolean validHeader(final ByteBuffer buffer) {
+        return buffer.capacity() >= RECORD_SIZE
+                && buffer.getInt(0) == MAGIC
+                && buffer.getShort(4) == VERSION
+                && buffer.getShort(6) == RECORD_SIZE;
+    }
+
+    private static long index(final Path file) {
+        final var name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static long created(final Path file) throws IOException {
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final var header = ByteBuffer.allocate(16);
+            channel.read(header, 0);
+            return header.getLong(8);
+        }
+    }
+
+    /**
+     * Write string zero padded, truncated to size on character boundary.
+     */
+    private static void putString(final ByteBuffer buffer, final int offset, final int size, final String value) {
+        int length = 0;
+        if (value != null) {
+            final var bytes = value.getBytes(StandardCharsets.UTF_8);
+            length = Math.min(bytes.length, size);
+            // do not split multi-byte character
+            while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80)
+                length--;
+            buffer.put(offset, bytes, 0, length);
+        }
+        for (int i = length; i < size; i++)
+            buffer.put(offset + i, (byte) 0);
+    }
+
+    private static String getString(final ByteBuffer buffer, final int offset, final int size) {
+        int length = 0;
+        while (length < size && buffer.get(offset + length) != 0)
+            length++;
+        if (length == 0)
+            return null;
+        final var bytes = new byte[length];
+        buffer.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
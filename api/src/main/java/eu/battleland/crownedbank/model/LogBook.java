@@ -1,17 +1,58 @@
 package eu.battleland.crownedbank.model;
 
 import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.helper.SampledLog;
+import lombok.Getter;
+import lombok.NonNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
+/**
+ * Log of transactions. Records are published to a bounded ring buffer without locking, and formatted and logged
+ * by a single consumer thread, so that transactions do not contend on logging. Records are kept as primitive
+ * columns, preallocated for {@link #getCapacity()} records, instead of references to accounts.
+ * <br>
+ * Once the ring buffer is full, records are handled by its {@link Overflow} policy.
+ * Consumed records are appended to {@link Journal}, if log book has one.
+ */
 public class LogBook {
 
-    private static final List<Withdraw> withdrawRecords = new ArrayList<>();
-    private static final List<Deposit> depositRecords = new ArrayList<>();
-    private static final List<Payment> paymentRecords = new ArrayList<>();
+    private static final byte SENDER_UUID = 1;
+    private static final byte RECEIVER_UUID = 1 << 1;
+
+    /**
+     * Longest time a producer waits for space, before its record is dropped.
+     */
+    private static final long BLOCK_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static final SampledLog LOG
+            = new SampledLog(TimeUnit.SECONDS.toMillis(10));
+
+    private static volatile LogBook shared;
+
+    /**
+     * Kind of record.
+     */
+    public enum Kind {
+        WITHDRAW,
+        DEPOSIT,
+        PAYMENT;
+
+        static final Kind[] VALUES = values();
+    }
 
     public enum RecordResult {
         SUCCESS,
@@ -19,12 +60,150 @@ public class LogBook {
         ERROR,
         NOT_EXECUTED;
 
+        static final RecordResult[] VALUES = values();
+
         public static RecordResult byBoolean(@Nullable Boolean b){
             if(b == null) return ERROR;
             return b ? SUCCESS : FAILURE;
         }
     }
 
+    /**
+     * Policy of full ring buffer.
+     */
+    public enum Overflow {
+        /**
+         * Record is dropped.
+         */
+        DROP,
+        /**
+         * Producer waits for space, at most a second, then its record is dropped.
+         */
+        BLOCK;
+
+        /**
+         * @param name Name of policy, case-insensitive.
+         * @return Policy.
+         */
+        public static Overflow parse(@NonNull String name) {
+            return Overflow.valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    @Getter
+    private final int capacity;
+    @Getter
+    private final Overflow overflow;
+    private final Consumer<String> sink;
+    private final @Nullable Journal journal;
+    private final int mask;
+
+    /**
+     * Sequence of every slot. Slot is free for producer of sequence equal to it, and published to consumer
+     * once it is one greater.
+     */
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    // columns of records
+    private final byte[] kinds;
+    private final byte[] flags;
+    private final long[] senderMost;
+    private final long[] senderLeast;
+    private final String[] senderNames;
+    private final long[] receiverMost;
+    private final long[] receiverLeast;
+    private final String[] receiverNames;
+    private final String[] currencies;
+    private final float[] amounts;
+    private final byte[] results;
+    private final byte[] receiverResults;
+    private final long[] timestamps;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final AtomicLong consumed = new AtomicLong();
+
+    private final Thread consumer;
+    private volatile boolean idle;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity Count of records buffered, rounded up to power of two.
+     * @param overflow Policy of full buffer.
+     * @param sink     Sink of formatted records, called by consumer thread.
+     */
+    public LogBook(int capacity, @NonNull Overflow overflow, @NonNull Consumer<String> sink) {
+        this(capacity, overflow, sink, null);
+    }
+
+    /**
+     * @param capacity Count of records buffered, rounded up to power of two.
+     * @param overflow Policy of full buffer.
+     * @param sink     Sink of formatted records, called by consumer thread.
+     * @param journal  Journal of records, closed with log book. Null for none.
+     */
+    public LogBook(int capacity, @NonNull Overflow overflow, @NonNull Consumer<String> sink,
+                   @Nullable Journal journal) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.overflow = overflow;
+        this.sink = sink;
+        this.journal = journal;
+        this.mask = this.capacity - 1;
+
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++)
+            this.sequences.set(i, i);
+
+        this.kinds = new byte[this.capacity];
+        this.flags = new byte[this.capacity];
+        this.senderMost = new long[this.capacity];
+        this.senderLeast = new long[this.capacity];
+        this.senderNames = new String[this.capacity];
+        this.receiverMost = new long[this.capacity];
+        this.receiverLeast = new long[this.capacity];
+        this.receiverNames = new String[this.capacity];
+        this.currencies = new String[this.capacity];
+        this.amounts = new float[this.capacity];
+        this.results = new byte[this.capacity];
+        this.receiverResults = new byte[this.capacity];
+        this.timestamps = new long[this.capacity];
+
+        this.consumer = new Thread(this::consume, "CrownedBank LogBook");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * @return Log book shared by {@link #logWithdraw}, {@link #logDeposit} and {@link #logPayment},
+     * created on first use from configuration.
+     */
+    public static @NonNull LogBook shared() {
+        var logBook = shared;
+        if (logBook != null)
+            return logBook;
+        synchronized (LogBook.class) {
+            if (shared == null) {
+                final var config = CrownedBank.getConfig();
+                Journal journal = null;
+                if (!config.journalDirectory().isEmpty()) {
+                    try {
+                        journal = new Journal(Path.of(config.journalDirectory()),
+                                config.journalSegmentBytes(), config.journalRetentionMillis());
+                    } catch (IOException x) {
+                        CrownedBank.getLogger().severe(String.format("Couldn't open journal '%s': %s",
+                                config.journalDirectory(), x));
+                    }
+                }
+                shared = new LogBook(config.logbookCapacity(), config.logbookOverflow(),
+                        message -> CrownedBank.getLogger().info(message), journal);
+            }
+            return shared;
+        }
+    }
+
     /**
      * Log withdrawal from account.
      * @param account  Account.
@@ -32,13 +211,11 @@ public class LogBook {
      * @param amount   Amount of currency.
      * @param result   Result of withdrawal.
      */
-    public static synchronized void logWithdraw(final Account account,
-                                         final Currency currency,
-                                         final float amount,
-                                         @Nullable RecordResult result) {
-        final var record = new Withdraw(account, currency, amount, result, Instant.now().getEpochSecond());
-        CrownedBank.getLogger().info(record.toString());
-        withdrawRecords.add(record);
+    public static void logWithdraw(final Account account,
+                                   final Currency currency,
+                                   final float amount,
+                                   @Nullable RecordResult result) {
+        shared().withdraw(account.getIdentity(), currency, amount, result);
     }
 
     /**
@@ -48,13 +225,11 @@ public class LogBook {
      * @param amount   Amount of currency.
      * @param result   Result of deposit.
      */
-    public static synchronized void logDeposit(final Account account,
-                                        final Currency currency,
-                                        final float amount,
-                                        final RecordResult result) {
-        final var record = new Deposit(account, currency, amount, result, Instant.now().getEpochSecond());
-        CrownedBank.getLogger().info(record.toString());
-        depositRecords.add(record);
+    public static void logDeposit(final Account account,
+                                  final Currency currency,
+                                  final float amount,
+                                  final RecordResult result) {
+        shared().deposit(account.getIdentity(), currency, amount, result);
     }
 
     /**
@@ -66,82 +241,298 @@ public class LogBook {
      * @param withdrawResult Sender's account withdrawal result.
      * @param depositResult  Receiver's account deposit result.
      */
-    public static synchronized void logPayment(final Account sender,
-                                        final Account receiver,
-                                        final Currency currency,
-                                        final float amount,
-                                        final RecordResult withdrawResult,
-                                        final RecordResult depositResult) {
-        final var record = new Payment(sender, receiver, currency, amount, withdrawResult, depositResult, Instant.now().getEpochSecond());
-        CrownedBank.getLogger().info(record.toString());
-        paymentRecords.add(record);
+    public static void logPayment(final Account sender,
+                                  final Account receiver,
+                                  final Currency currency,
+                                  final float amount,
+                                  final RecordResult withdrawResult,
+                                  final RecordResult depositResult) {
+        shared().payment(sender.getIdentity(), receiver.getIdentity(), currency, amount,
+                withdrawResult, depositResult);
     }
 
+    /**
+     * Record withdrawal from account.
+     *
+     * @return Boolean true if record was published, false if it was dropped.
+     */
+    public boolean withdraw(final Account.@NonNull Identity identity,
+                            final @NonNull Currency currency,
+                            final float amount,
+                            final @Nullable RecordResult result) {
+        return publish(Kind.WITHDRAW, identity, null, currency, amount, result, null);
+    }
 
     /**
-     * Withdraw Log
+     * Record deposit to account.
      *
-     * @param account   Account
-     * @param currency  Currency
-     * @param amount    Amount of currency
-     * @param result    Result of withdraw.
-     * @param timestamp Timestamp of withdraw.
-     */
-    record Withdraw(Account account,
-                    Currency currency,
-                    float amount,
-                    RecordResult result,
-                    long timestamp) {
-        @Override
-        public String toString() {
-            return String.format("Withdraw from '%s' of currency '%s' with value '%.2f' was a %s.",
-                    account.getIdentity(), currency.identifier(), amount, result);
+     * @return Boolean true if record was published, false if it was dropped.
+     */
+    public boolean deposit(final Account.@NonNull Identity identity,
+                           final @NonNull Currency currency,
+                           final float amount,
+                           final @Nullable RecordResult result) {
+        return publish(Kind.DEPOSIT, identity, null, currency, amount, result, null);
+    }
+
+    /**
+     * Record payment.
+     *
+     * @return Boolean true if record was published, false if it was dropped.
+     */
+    public boolean payment(final Account.@NonNull Identity sender,
+                           final Account.@NonNull Identity receiver,
+                           final @NonNull Currency currency,
+                           final float amount,
+                           final @Nullable RecordResult withdrawResult,
+                           final @Nullable RecordResult depositResult) {
+        return publish(Kind.PAYMENT, sender, receiver, currency, amount, withdrawResult, depositResult);
+    }
+
+    private boolean publish(final Kind kind,
+                           final Account.@NonNull Identity sender,
+                           final Account.@Nullable Identity receiver,
+                           final @NonNull Currency currency,
+                           final float amount,
+                           final @Nullable RecordResult result,
+                           final @Nullable RecordResult receiverResult) {
+        if (this.closed) {
+            this.dropped.increment();
+            return false;
+        }
+
+        // claim slot
+        long sequence;
+        long waitingSince = 0;
+        while (true) {
+            sequence = this.tail.get();
+            final var available = this.sequences.get((int) sequence & this.mask);
+            if (available == sequence) {
+                if (this.tail.compareAndSet(sequence, sequence + 1))
+                    break;
+            } else if (available < sequence) {
+                // full
+                if (this.overflow == Overflow.DROP) {
+                    this.dropped.increment();
+                    return false;
+                }
+                final var now = System.nanoTime();
+                if (waitingSince == 0) {
+                    waitingSince = now;
+                    this.blocked.increment();
+                } else if (now - waitingSince > BLOCK_TIMEOUT_NANOS) {
+                    this.dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(this.consumer);
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
         }
+
+        // write columns, and publish slot
+        final var index = (int) sequence & this.mask;
+        this.kinds[index] = (byte) kind.ordinal();
+        byte flags = 0;
+        if (sender.uuid() != null) {
+            flags |= SENDER_UUID;
+            this.senderMost[index] = sender.uuid().getMostSignificantBits();
+            this.senderLeast[index] = sender.uuid().getLeastSignificantBits();
+        }
+        this.senderNames[index] = sender.name();
+        if (receiver != null) {
+            if (receiver.uuid() != null) {
+                flags |= RECEIVER_UUID;
+                this.receiverMost[index] = receiver.uuid().getMostSignificantBits();
+                this.receiverLeast[index] = receiver.uuid().getLeastSignificantBits();
+            }
+            this.receiverNames[index] = receiver.name();
+        }
+        this.flags[index] = flags;
+        this.currencies[index] = currency.identifier();
+        this.amounts[index] = amount;
+        this.results[index] = (byte) (result != null ? result : RecordResult.ERROR).ordinal();
+        this.receiverResults[index] = (byte) (receiverResult != null ? receiverResult : RecordResult.NOT_EXECUTED).ordinal();
+        this.timestamps[index] = System.currentTimeMillis();
+        this.sequences.set(index, sequence + 1);
+
+        this.published.increment();
+        if (this.idle)
+            LockSupport.unpark(this.consumer);
+        return true;
     }
 
     /**
-     * Deposit Log
+     * Drain published records on caller thread, while the consumer thread waits.
+     */
+    public void flush() {
+        drain();
+    }
+
+    /**
+     * Drain published records, and stop the consumer thread. Records published afterwards are dropped.
+     */
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.consumer);
+        try {
+            this.consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+
+        if (this.journal != null) {
+            synchronized (this) {
+                try {
+                    this.journal.close();
+                } catch (IOException x) {
+                    CrownedBank.getLogger().severe(String.format("Couldn't close journal: %s", x));
+                }
+            }
+        }
+    }
+
+    /**
+     * Close shared log book and its journal, if it was created. Next use creates it again from configuration.
+     */
+    public static void closeShared() {
+        final LogBook logBook;
+        synchronized (LogBook.class) {
+            logBook = shared;
+            shared = null;
+        }
+        if (logBook != null)
+            logBook.close();
+    }
+
+    /**
+     * @return Snapshot of log book statistics.
+     */
+    public @NonNull Stats stats() {
+        return new Stats(this.published.sum(), this.consumed.get(), this.dropped.sum(), this.blocked.sum());
+    }
+
+    private void consume() {
+        while (!this.closed) {
+            if (drain() > 0)
+                continue;
+            this.idle = true;
+            // recheck, publisher might have missed idle flag
+            if (!slotPublished())
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            this.idle = false;
+        }
+    }
+
+    private synchronized boolean slotPublished() {
+        final var head = this.head;
+        return this.sequences.get((int) head & this.mask) == head + 1;
+    }
+
+    /**
+     * Drain published records. Only one thread drains at a time.
      *
-     * @param account   Account
-     * @param currency  Currency
-     * @param amount    Amount of currency
-     * @param result    Result of deposit.
-     * @param timestamp Timestamp of deposit.
-     */
-    record Deposit(Account account,
-                   Currency currency,
-                   float amount,
-                   RecordResult result,
-                   long timestamp) {
-        @Override
-        public String toString() {
-            return String.format("Deposit to '%s' of currency '%s' with value '%.2f' was a %s.",
-                    account.getIdentity(), currency.identifier(), amount, result);
+     * @return Count of drained records.
+     */
+    private synchronized int drain() {
+        int drained = 0;
+        while (true) {
+            final var head = this.head;
+            final var index = (int) head & this.mask;
+            if (this.sequences.get(index) != head + 1)
+                break;
+
+            final var record = record(index);
+            this.senderNames[index] = null;
+            this.receiverNames[index] = null;
+            this.currencies[index] = null;
+            this.head = head + 1;
+            this.sequences.set(index, head + this.capacity);
+            drained++;
+
+            try {
+                this.sink.accept(record.toString());
+            } catch (Exception x) {
+                // sink must not stop the consumer
+            }
+            if (this.journal != null) {
+                try {
+                    this.journal.append(record);
+                } catch (Exception x) {
+                    LOG.log(Level.SEVERE, "journal_append_failed", "error", x);
+                }
+            }
         }
+        if (drained > 0)
+            this.consumed.addAndGet(drained);
+        return drained;
+    }
+
+    private Record record(final int index) {
+        final var flags = this.flags[index];
+        final var kind = Kind.VALUES[this.kinds[index]];
+        return new Record(kind,
+                this.timestamps[index],
+                new Account.Identity((flags & SENDER_UUID) != 0
+                        ? new UUID(this.senderMost[index], this.senderLeast[index])
+                        : null, this.senderNames[index]),
+                kind == Kind.PAYMENT
+                        ? new Account.Identity((flags & RECEIVER_UUID) != 0
+                        ? new UUID(this.receiverMost[index], this.receiverLeast[index])
+                        : null, this.receiverNames[index])
+                        : null,
+                this.currencies[index],
+                this.amounts[index],
+                RecordResult.VALUES[this.results[index]],
+                RecordResult.VALUES[this.receiverResults[index]]);
     }
 
     /**
-     * @param sender         Sender of payment
-     * @param receiver       Receiver of payment
-     * @param currency       Currency
-     * @param amount         Amount of currency
-     * @param withdrawResult Withdraw result
-     * @param depositResult  Deposit result
-     * @param timestamp      Timestamp of payment.
+     * Record of transaction.
+     *
+     * @param kind           Kind of record.
+     * @param timestamp      Timestamp, in milliseconds.
+     * @param account        Account, or sender of payment.
+     * @param receiver       Receiver of payment, or null.
+     * @param currency       Identifier of currency.
+     * @param amount         Amount of currency.
+     * @param result         Result of transaction, or of withdrawal from sender.
+     * @param receiverResult Result of deposit to receiver.
      */
-    record Payment(Account sender,
-                   Account receiver,
-                   Currency currency,
-                   float amount,
-                   RecordResult withdrawResult,
-                   RecordResult depositResult,
-                   long timestamp) {
+    public record Record(@NonNull Kind kind,
+                         long timestamp,
+                         Account.@NonNull Identity account,
+                         Account.@Nullable Identity receiver,
+                         @NonNull String currency,
+                         float amount,
+                         @NonNull RecordResult result,
+                         @NonNull RecordResult receiverResult) {
         @Override
         public String toString() {
-            return String.format("Payment from '%s' to '%s' of currency '%s' with value '%.2f'" +
-                            " was a %s from senders side, and %s from receivers side.",
-                    sender.getIdentity(), receiver.getIdentity(), currency.identifier(), amount,
-                    withdrawResult, depositResult);
+            return switch (this.kind) {
+                case WITHDRAW -> String.format("Withdraw from '%s' of currency '%s' with value '%.2f' was a %s.",
+                        this.account, this.currency, this.amount, this.result);
+                case DEPOSIT -> String.format("Deposit to '%s' of currency '%s' with value '%.2f' was a %s.",
+                        this.account, this.currency, this.amount, this.result);
+                case PAYMENT -> String.format("Payment from '%s' to '%s' of currency '%s' with value '%.2f'" +
+                                " was a %s from senders side, and %s from receivers side.",
+                        this.account, this.receiver, this.currency, this.amount,
+                        this.result, this.receiverResult);
+            };
         }
     }
+
+    /**
+     * Log book statistics.
+     *
+     * @param published Count of published records.
+     * @param consumed  Count of logged records.
+     * @param dropped   Count of records dropped by full buffer, or closed log book.
+     * @param blocked   Count of producers, which waited for space.
+     */
+    public record Stats(long published,
+                        long consumed,
+                        long dropped,
+                        long blocked) {
+    }
 }
@@ -0,0 +1,68 @@
+package eu.battleland.crownedbank.model;
+
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Standing of account on leaderboard of a currency. Carries only what leaderboards show,
+ * instead of whole account.
+ *
+ * @param identity Identity of account.
+ * @param amount   Amount of currency.
+ * @param rank     Rank on leaderboard, starting at 1.
+ */
+public record Standing(Account.Identity identity,
+                       float amount,
+                       int rank) {
+
+    /**
+     * Order of leaderboards. Wealthiest first, ties ordered by {@link #tiebreaker(Account.Identity)} descending,
+     * so that every standing has a distinct position, which pages seek past.
+     */
+    public static final Comparator<Standing> ORDER = Comparator
+            .comparing(Standing::amount, Comparator.reverseOrder())
+            .thenComparing(standing -> tiebreaker(standing.identity()), Comparator.reverseOrder());
+
+    /**
+     * @param cursor Standing, after which page starts. Null for first page.
+     * @return Boolean true if this standing is ordered after cursor.
+     */
+    public boolean isAfter(@Nullable Standing cursor) {
+        return cursor == null || ORDER.compare(this, cursor) > 0;
+    }
+
+    /**
+     * @param identity Identity of account.
+     * @return Key ordering accounts of equal amount. Uuid as stored by remotes, or name if uuid is not known.
+     */
+    public static @NonNull String tiebreaker(Account.@NonNull Identity identity) {
+        if (identity.uuid() != null)
+            return identity.uuid().toString();
+        return identity.name() != null ? identity.name() : "";
+    }
+
+    /**
+     * Page through ordered standings.
+     *
+     * @param standings Standings, in {@link #ORDER}.
+     * @param after     Standing, after which page starts. Null for first page.
+     * @param limit     Maximum count of standings.
+     * @return Standings of page.
+     */
+    public static @NonNull List<Standing> page(@NonNull List<Standing> standings,
+                                               @Nullable Standing after,
+                                               int limit) {
+        final var page = new ArrayList<Standing>(Math.min(limit, standings.size()));
+        for (final var standing : standings) {
+            if (page.size() >= limit)
+                break;
+            if (standing.isAfter(after))
+                page.add(standing);
+        }
+        return page;
+    }
+}
@@ -0,0 +1,149 @@
+package eu.battleland.crownedbank.proxy;
+
+import lombok.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Batches outbound proxy messages. Messages enqueued during one tick are held until {@link #flush()}
+ * is called at the end of the tick, and are then sent together in one {@link ProxyOperation#BATCH_REQUEST},
+ * split so that no message exceeds its maximum length.
+ */
+public class ProxyBatcher {
+
+    /**
+     * Maximum length of plugin message sent by server.
+     */
+    public static final int MAX_PLUGIN_MESSAGE_BYTES = Short.MAX_VALUE;
+
+    /**
+     * Length of batch message, apart from its entries.
+     */
+    private static final int BATCH_OVERHEAD_BYTES
+            = 2 + ProxyConstants.SUB_CHANNEL.getBytes(StandardCharsets.UTF_8).length + 3 + 5;
+
+    private final int maxMessageBytes;
+    private final Predicate<byte[]> sender;
+
+    private List<Entry> pending = new ArrayList<>();
+
+    private long sentMessages;
+    private long sentEntries;
+
+    /**
+     * @param maxMessageBytes Maximum length of sent message.
+     * @param sender          Sender of messages, returning false if message couldn't be sent.
+     */
+    public ProxyBatcher(int maxMessageBytes, @NonNull Predicate<byte[]> sender) {
+        this.maxMessageBytes = maxMessageBytes;
+        this.sender = sender;
+    }
+
+    /**
+     * Enqueue message until next flush.
+     *
+     * @param entry   Message without its sub-channel, starting with {@link ProxyCodec#writeEntryHeader}.
+     * @param failure Called, if message couldn't be sent.
+     */
+    public void enqueue(final byte @NonNull [] entry, @NonNull Runnable failure) {
+        synchronized (this) {
+            this.pending.add(new Entry(entry, failure));
+        }
+    }
+
+    /**
+     * Send all enqueued messages.
+     *
+     * @return Count of sent messages.
+     */
+    public int flush() {
+        final List<Entry> entries;
+        synchronized (this) {
+            if (this.pending.isEmpty())
+                return 0;
+            entries = this.pending;
+            this.pending = new ArrayList<>();
+        }
+
+        int messages = 0;
+        int from = 0;
+        while (from < entries.size()) {
+            // fill batch up to maximum length, and maximum count of entries
+            int to = from;
+            int length = BATCH_OVERHEAD_BYTES;
+            while (to < entries.size() && to - from < ProxyCodec.MAX_ENTRIES) {
+                final var entryLength = entries.get(to).message().length + 5;
+                if (to > from && length + entryLength > this.maxMessageBytes)
+                    break;
+                length += entryLength;
+                to++;
+            }
+
+            final var chunk = entries.subList(from, to);
+            if (!this.sender.test(encode(chunk)))
+                chunk.forEach(entry -> entry.failure().run());
+            messages++;
+            from = to;
+        }
+
+        synchronized (this) {
+            this.sentMessages += messages;
+            this.sentEntries += entries.size();
+        }
+        return messages;
+    }
+
+    /**
+     * @return Snapshot of batcher statistics.
+     */
+    public synchronized @NonNull Stats stats() {
+        return new Stats(this.sentMessages, this.sentEntries, this.pending.size());
+    }
+
+    /**
+     * Encode entries as one message. Single entry is sent as it is.
+     */
+    private static byte[] encode(final List<Entry> entries) {
+        final var bytes = new ByteArrayOutputStream();
+        final var out = new DataOutputStream(bytes);
+        try {
+            if (entries.size() == 1) {
+                out.writeUTF(ProxyConstants.SUB_CHANNEL);
+                out.write(entries.get(0).message());
+            } else {
+                ProxyCodec.writeBatch(out, ProxyOperation.BATCH_REQUEST,
+                        entries.stream().map(Entry::message).toList());
+            }
+        } catch (IOException x) {
+            throw new IllegalStateException(x);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Enqueued message.
+     *
+     * @param message Message without its sub-channel.
+     * @param failure Called, if message couldn't be sent.
+     */
+    private record Entry(byte[] message, Runnable failure) {
+    }
+
+    /**
+     * Batcher statistics.
+     *
+     * @param sentMessages Count of sent messages.
+     * @param sentEntries  Count of sent entries, carried by sent messages.
+     * @param pending      Count of entries waiting for flush.
+     */
+    public record Stats(long sentMessages,
+                        long sentEntries,
+                        int pending) {
+    }
+}
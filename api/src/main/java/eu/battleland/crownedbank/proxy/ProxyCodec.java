@@ -0,0 +1,604 @@
+package eu.battleland.crownedbank.proxy;
+
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
+import eu.battleland.crownedbank.repo.CurrencyRepository;
+import lombok.Getter;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Binary codec of proxy messages.
+ * <br>
+ * Every message starts with sub-channel, {@link #VERSION}, operation and varint request identifier.
+ * Identity is written as flags, 16-byte UUID and length-prefixed name. Currencies are written as varint
+ * identifiers, negotiated at handshake by {@link CurrencyTable}. Amounts are written as varint fixed-point minor units.
+ * Balances are amounts followed by version of their {@link Currency.Storage.Snapshot}.
+ * Standings are count-prefixed identity, amount and rank, single standing is prefixed by its presence.
+ */
+public final class ProxyCodec {
+
+    /**
+     * Version of wire format.
+     */
+    public static final int VERSION = 4;
+
+    /**
+     * Minor units of unknown amount.
+     */
+    private static final long UNKNOWN_AMOUNT = Long.MIN_VALUE;
+
+    /**
+     * Maximum count of entries of one batch or standings message.
+     */
+    public static final int MAX_ENTRIES = 1024;
+
+    private static final int IDENTITY_UUID = 1;
+    private static final int IDENTITY_NAME = 1 << 1;
+
+    private ProxyCodec() {
+    }
+
+    /**
+     * Write message header.
+     *
+     * @param out       Output.
+     * @param operation Operation.
+     * @param requestId Request identifier.
+     */
+    public static void writeHeader(@NonNull DataOutput out,
+                                   @NonNull ProxyOperation operation,
+                                   long requestId) throws IOException {
+        out.writeUTF(ProxyConstants.SUB_CHANNEL);
+        writeEntryHeader(out, operation, requestId);
+    }
+
+    /**
+     * Write header of message without its sub-channel, as carried in batch.
+     *
+     * @param out       Output.
+     * @param operation Operation.
+     * @param requestId Request identifier.
+     */
+    public static void writeEntryHeader(@NonNull DataOutput out,
+                                        @NonNull ProxyOperation operation,
+                                        long requestId) throws IOException {
+        out.writeByte(VERSION);
+        out.writeByte(operation.ordinal());
+        writeVarLong(out, requestId);
+    }
+
+    /**
+     * Write batch of messages without their sub-channels.
+     *
+     * @param out       Output.
+     * @param operation {@link ProxyOperation#BATCH_REQUEST} or {@link ProxyOperation#BATCH_RESPONSE}.
+     * @param entries   Messages.
+     */
+    public static void writeBatch(@NonNull DataOutput out,
+                                  @NonNull ProxyOperation operation,
+                                  @NonNull List<byte[]> entries) throws IOException {
+        writeHeader(out, operation, 0);
+        writeVarInt(out, entries.size());
+        for (final var entry : entries) {
+            writeVarInt(out, entry.length);
+            out.write(entry);
+        }
+    }
+
+    /**
+     * Read batch of messages, after its header. Entries are bounded by bytes left in input, if input
+     * is a stream, otherwise together by {@link ProxySocketServer#MAX_FRAME_LENGTH}.
+     *
+     * @param in Input.
+     * @return Messages without their sub-channels.
+     */
+    public static @NonNull List<byte[]> readBatch(@NonNull DataInput in) throws IOException {
+        final var count = readVarInt(in);
+        if (count < 0 || count > MAX_ENTRIES)
+            throw new IOException("Invalid batch size " + count);
+
+        long remaining = in instanceof InputStream stream
+                ? stream.available()
+                : ProxySocketServer.MAX_FRAME_LENGTH;
+        final var entries = new ArrayList<byte[]>(count);
+        for (int i = 0; i < count; i++) {
+            final var length = readVarInt(in);
+            if (length < 0 || length > remaining)
+                throw new IOException("Invalid batch entry length " + length);
+            remaining -= length;
+
+            final var entry = new byte[length];
+            in.readFully(entry);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Read message header, after its sub-channel. Batch entries start with header right away.
+     *
+     * @param in Input.
+     * @return Header.
+     * @throws IOException When message is malformed, or its version is not supported.
+     */
+    public static @NonNull Header readHeader(@NonNull DataInput in) throws IOException {
+        final var version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported proxy protocol version %d, expected %d", version, VERSION));
+
+        final var ordinal = in.readUnsignedByte();
+        final var operations = ProxyOperation.values();
+        if (ordinal >= operations.length)
+            throw new IOException("Unknown proxy operation " + ordinal);
+        return new Header(operations[ordinal], readVarLong(in));
+    }
+
+    /**
+     * Message header.
+     *
+     * @param operation Operation.
+     * @param requestId Request identifier.
+     */
+    public record Header(ProxyOperation operation, long requestId) {
+    }
+
+    /**
+     * Write authentication, which opens socket connection.
+     *
+     * @param out   Output.
+     * @param token Shared token.
+     */
+    public static void writeAuthentication(@NonNull DataOutput out, @NonNull String token) throws IOException {
+        out.writeUTF(ProxyConstants.AUTH_CHANNEL);
+        out.writeByte(VERSION);
+        writeString(out, token);
+    }
+
+    /**
+     * Read authentication.
+     *
+     * @param in Input.
+     * @return Presented token.
+     * @throws IOException When message is not authentication, or its version is not supported.
+     */
+    public static @NonNull String readAuthentication(@NonNull DataInput in) throws IOException {
+        if (!ProxyConstants.AUTH_CHANNEL.equals(in.readUTF()))
+            throw new IOException("Expected authentication");
+        final var version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException(String.format("Unsupported proxy protocol version %d, expected %d", version, VERSION));
+        return readString(in);
+    }
+
+    /**
+     * @return Acknowledgement of successful authentication.
+     */
+    public static byte @NonNull [] acknowledgement() {
+        final var bytes = new ByteArrayOutputStream();
+        try {
+            new DataOutputStream(bytes).writeUTF(ProxyConstants.AUTH_CHANNEL);
+        } catch (IOException x) {
+            throw new IllegalStateException(x);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void writeVarInt(@NonNull DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(@NonNull DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final var b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("VarInt is too long");
+    }
+
+    /**
+     * Write zig-zag encoded varint, so that small negative values stay short.
+     */
+    public static void writeVarLong(@NonNull DataOutput out, long value) throws IOException {
+        var zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    public static long readVarLong(@NonNull DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            final var b = in.readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        throw new IOException("VarLong is too long");
+    }
+
+    /**
+     * Write length-prefixed UTF-8 string.
+     */
+    public static void writeString(@NonNull DataOutput out, @NonNull String value) throws IOException {
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static @NonNull String readString(@NonNull DataInput in) throws IOException {
+        final var length = readVarInt(in);
+        if (length < 0 || length > Short.MAX_VALUE)
+            throw new IOException("Invalid string length " + length);
+        final var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeIdentity(@NonNull DataOutput out, @NonNull Account.Identity identity) throws IOException {
+        final var uuid = identity.uuid();
+        final var name = identity.name();
+        out.writeByte((uuid != null ? IDENTITY_UUID : 0) | (name != null ? IDENTITY_NAME : 0));
+        if (uuid != null) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+        }
+        if (name != null)
+            writeString(out, name);
+    }
+
+    public static @NonNull Account.Identity readIdentity(@NonNull DataInput in) throws IOException {
+        final var flags = in.readUnsignedByte();
+        final var uuid = (flags & IDENTITY_UUID) != 0
+                ? new UUID(in.readLong(), in.readLong())
+                : null;
+        final var name = (flags & IDENTITY_NAME) != 0
+                ? readString(in)
+                : null;
+        return new Account.Identity(uuid, name);
+    }
+
+    /**
+     * Write amount as fixed-point minor units.
+     *
+     * @param out    Output.
+     * @param amount Amount, or NaN if unknown.
+     * @param table  Currency table, providing scale.
+     */
+    public static void writeAmount(@NonNull DataOutput out, float amount, @NonNull CurrencyTable table) throws IOException {
+        writeVarLong(out, Float.isNaN(amount)
+                ? UNKNOWN_AMOUNT
+                : Math.round((double) amount * table.getScale()));
+    }
+
+    /**
+     * @return Amount, or NaN if unknown.
+     */
+    public static float readAmount(@NonNull DataInput in, @NonNull CurrencyTable table) throws IOException {
+        final var minor = readVarLong(in);
+        if (minor == UNKNOWN_AMOUNT)
+            return Float.NaN;
+        return (float) ((double) minor / table.getScale());
+    }
+
+    /**
+     * Write balance of storage, as its snapshot.
+     *
+     * @param out     Output.
+     * @param storage Storage, or null if balance is unknown.
+     * @param table   Currency table, providing scale.
+     */
+    public static void writeBalance(@NonNull DataOutput out,
+                                    Currency.@Nullable Storage storage,
+                                    @NonNull CurrencyTable table) throws IOException {
+        if (storage == null) {
+            writeAmount(out, Float.NaN, table);
+            writeVarLong(out, 0);
+            return;
+        }
+        final var snapshot = storage.snapshot();
+        writeAmount(out, storage.fromMinor(snapshot.amount()), table);
+        writeVarLong(out, snapshot.version());
+    }
+
+    /**
+     * @param in    Input.
+     * @param table Currency table, providing scale.
+     * @return Balance.
+     */
+    public static @NonNull Balance readBalance(@NonNull DataInput in, @NonNull CurrencyTable table) throws IOException {
+        return new Balance(readAmount(in, table), readVarLong(in));
+    }
+
+    /**
+     * Balance of currency storage.
+     *
+     * @param amount  Amount, or NaN if unknown.
+     * @param version Version of amount.
+     */
+    public record Balance(float amount, long version) {
+
+        /**
+         * Maximum lead of version over the last version seen, or over wall clock which seeds versions.
+         * An hour of versions issued at clock rate.
+         */
+        public static final long MAX_VERSION_LEAD = TimeUnit.HOURS.toMillis(1) * 1000;
+
+        /**
+         * Balance with version implausibly far ahead would pin storage, and every following update would
+         * be dropped as stale.
+         *
+         * @param storage Storage.
+         * @return Boolean true if version is not implausibly far ahead of storage.
+         */
+        public boolean plausible(final Currency.@NonNull Storage storage) {
+            final var base = Math.max(storage.getVersion(), System.currentTimeMillis() * 1000);
+            return this.version - base <= MAX_VERSION_LEAD;
+        }
+
+        /**
+         * Replicate balance to storage, unless it is unknown, implausible, or storage has newer balance.
+         *
+         * @param storage Storage.
+         * @return Boolean true if balance was replicated.
+         */
+        public boolean replicate(final Currency.@NonNull Storage storage) {
+            if (Float.isNaN(this.amount) || !plausible(storage))
+                return false;
+            return storage.replicate(storage.toMinor(this.amount), this.version);
+        }
+    }
+
+    /**
+     * Write standings, at most {@link #MAX_ENTRIES} of them.
+     *
+     * @param out       Output.
+     * @param standings Standings.
+     * @param table     Currency table, providing scale.
+     */
+    public static void writeStandings(@NonNull DataOutput out,
+                                      @NonNull List<Standing> standings,
+                                      @NonNull CurrencyTable table) throws IOException {
+        final var count = Math.min(standings.size(), MAX_ENTRIES);
+        writeVarInt(out, count);
+        for (int i = 0; i < count; i++)
+            writeStandingFields(out, standings.get(i), table);
+    }
+
+    /**
+     * @param in    Input.
+     * @param table Currency table, providing scale.
+     * @return Standings.
+     */
+    public static @NonNull List<Standing> readStandings(@NonNull DataInput in, @NonNull CurrencyTable table) throws IOException {
+        final var count = readVarInt(in);
+        if (count < 0 || count > MAX_ENTRIES)
+            throw new IOException("Invalid standings count " + count);
+
+        final var standings = new ArrayList<Standing>(count);
+        for (int i = 0; i < count; i++)
+            standings.add(readStandingFields(in, table));
+        return standings;
+    }
+
+    /**
+     * Write standing, or its absence.
+     *
+     * @param out      Output.
+     * @param standing Standing, or null.
+     * @param table    Currency table, providing scale.
+     */
+    public static void writeStanding(@NonNull DataOutput out,
+                                     @Nullable Standing standing,
+                                     @NonNull CurrencyTable table) throws IOException {
+        out.writeBoolean(standing != null);
+        if (standing != null)
+            writeStandingFields(out, standing, table);
+    }
+
+    /**
+     * @param in    Input.
+     * @param table Currency table, providing scale.
+     * @return Standing, or null.
+     */
+    public static @Nullable Standing readStanding(@NonNull DataInput in, @NonNull CurrencyTable table) throws IOException {
+        return in.readBoolean() ? readStandingFields(in, table) : null;
+    }
+
+    private static void writeStandingFields(final DataOutput out,
+                                            final Standing standing,
+                                            final CurrencyTable table) throws IOException {
+        writeIdentity(out, standing.identity());
+        writeAmount(out, standing.amount(), table);
+        writeVarInt(out, standing.rank());
+    }
+
+    private static Standing readStandingFields(final DataInput in, final CurrencyTable table) throws IOException {
+        return new Standing(readIdentity(in), readAmount(in, table), readVarInt(in));
+    }
+
+    /**
+     * Write currency identifier.
+     *
+     * @throws IOException When currency is not in table.
+     */
+    public static void writeCurrency(@NonNull DataOutput out, @NonNull Currency currency, @NonNull CurrencyTable table) throws IOException {
+        final var id = table.id(currency);
+        if (id < 0)
+            throw new IOException(String.format("Currency '%s' was not negotiated", currency.identifier()));
+        writeVarInt(out, id);
+    }
+
+    /**
+     * @return Currency, or null if it is not known locally.
+     */
+    public static @Nullable Currency readCurrency(@NonNull DataInput in, @NonNull CurrencyTable table) throws IOException {
+        return table.currency(readVarInt(in));
+    }
+
+    /**
+     * Write account data, or its absence.
+     *
+     * @param out   Output.
+     * @param data  Account data, or null.
+     * @param table Currency table. Currencies not in table are skipped.
+     */
+    public static void writeData(@NonNull DataOutput out, @Nullable Account.Data data, @NonNull CurrencyTable table) throws IOException {
+        if (data == null) {
+            out.writeBoolean(false);
+            return;
+        }
+        out.writeBoolean(true);
+
+        final var storages = data.storages();
+        storages.removeIf(storage -> table.id(storage.getCurrency()) < 0);
+        writeVarInt(out, storages.size());
+        for (final var storage : storages) {
+            writeCurrency(out, storage.getCurrency(), table);
+            writeBalance(out, storage, table);
+        }
+    }
+
+    /**
+     * Read account data.
+     *
+     * @param in     Input.
+     * @param table  Currency table.
+     * @param filter Filter of accepted currencies.
+     * @return Account data, or null.
+     */
+    public static Account.@Nullable Data readData(@NonNull DataInput in,
+                                                  @NonNull CurrencyTable table,
+                                                  @NonNull Predicate<Currency> filter) throws IOException {
+        if (!in.readBoolean())
+            return null;
+
+        final var data = Account.Data.empty();
+        final var count = readVarInt(in);
+        for (int i = 0; i < count; i++) {
+            final var currency = readCurrency(in, table);
+            final var balance = readBalance(in, table);
+            if (currency != null && filter.test(currency)) {
+                final var storage = currency.newStorage();
+                balance.replicate(storage);
+                data.put(storage);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Currency table negotiated at handshake. Proxy assigns currencies their {@link Currency#index()},
+     * servers map them to their local currencies by identifier.
+     */
+    public static final class CurrencyTable {
+
+        @Getter
+        private final int fractionalDigits;
+        @Getter
+        private final long scale;
+
+        private final Map<Integer, Currency> currencies = new HashMap<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        private CurrencyTable(int fractionalDigits) {
+            this.fractionalDigits = fractionalDigits;
+            long scale = 1;
+            for (int i = 0; i < fractionalDigits; i++)
+                scale *= 10;
+            this.scale = scale;
+        }
+
+        /**
+         * Create table of all currencies in repository.
+         *
+         * @param repository       Currency repository.
+         * @param fractionalDigits Count of fractional digits of amounts.
+         * @return Table.
+         */
+        public static @NonNull CurrencyTable of(@NonNull CurrencyRepository repository, int fractionalDigits) {
+            final var table = new CurrencyTable(fractionalDigits);
+            repository.all().forEach(currency -> {
+                table.currencies.put(currency.index(), currency);
+                table.ids.put(currency.identifier(), currency.index());
+            });
+            return table;
+        }
+
+        /**
+         * Write table, as sent in handshake response.
+         */
+        public void write(@NonNull DataOutput out) throws IOException {
+            writeVarInt(out, this.fractionalDigits);
+            writeVarInt(out, this.ids.size());
+            for (final var entry : this.ids.entrySet()) {
+                writeVarInt(out, entry.getValue());
+                writeString(out, entry.getKey());
+            }
+        }
+
+        /**
+         * Read table, mapping identifiers to currencies in local repository.
+         *
+         * @param in         Input.
+         * @param repository Local currency repository.
+         * @return Table.
+         */
+        public static @NonNull CurrencyTable read(@NonNull DataInput in, @NonNull CurrencyRepository repository) throws IOException {
+            final var table = new CurrencyTable(readVarInt(in));
+            final var count = readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                final var id = readVarInt(in);
+                final var identifier = readString(in);
+                table.ids.put(identifier, id);
+
+                final var currency = repository.retrieve(identifier);
+                if (currency != null)
+                    table.currencies.put(id, currency);
+            }
+            return table;
+        }
+
+        /**
+         * @param currency Currency.
+         * @return Identifier of currency, or -1 if not in table.
+         */
+        public int id(@NonNull Currency currency) {
+            final var id = this.ids.get(currency.identifier());
+            return id != null ? id : -1;
+        }
+
+        /**
+         * @param id Identifier.
+         * @return Currency, or null if not known locally.
+         */
+        public @Nullable Currency currency(int id) {
+            return this.currencies.get(id);
+        }
+    }
+}
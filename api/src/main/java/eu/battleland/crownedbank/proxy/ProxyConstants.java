@@ -2,7 +2,12 @@ package eu.battleland.crownedbank.proxy;
 
 public class ProxyConstants {
 
-    public static String CHANNEL     = "BungeeCord";
+    /**
+     * Plugin message channel between servers and proxy. Dedicated channel, since proxies may consume
+     * the BungeeCord channel themselves, as Velocity does by default.
+     */
+    public static String CHANNEL     = "crownedbank:main";
     public static String SUB_CHANNEL = "crownedbank:main";
+    public static String AUTH_CHANNEL = "crownedbank:auth";
 
 }
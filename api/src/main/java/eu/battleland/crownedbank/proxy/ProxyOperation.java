@@ -1,7 +1,10 @@
 package eu.battleland.crownedbank.proxy;
 
 /**
- * Operation
+ * Operation. Every message carries its operation, followed by request identifier,
+ * which the endpoint echoes in its response, so that any number of requests may be in flight.
+ * Messages are encoded by {@link ProxyCodec}, currency identifiers are negotiated by {@link #HANDSHAKE_REQUEST}.
+ * Notices and pushes carry request identifier 0.
  */
 public enum ProxyOperation {
     FETCH_REQUEST,
@@ -10,9 +13,58 @@ public enum ProxyOperation {
     FETCH_WEALTHY_REQUEST,
     FETCH_WEALTHY_RESPONSE,
 
+    FETCH_STANDINGS_REQUEST,
+    FETCH_STANDINGS_RESPONSE,
+
+    FETCH_STANDING_REQUEST,
+    FETCH_STANDING_RESPONSE,
+
     WITHDRAW_REQUEST,
     WITHDRAW_RESPONSE,
 
     DEPOSIT_REQUEST,
-    DEPOSIT_RESPONSE;
+    DEPOSIT_RESPONSE,
+
+    TRANSFER_REQUEST,
+    TRANSFER_RESPONSE,
+
+    HANDSHAKE_REQUEST,
+    HANDSHAKE_RESPONSE,
+
+    BATCH_REQUEST,
+    BATCH_RESPONSE,
+
+    /**
+     * Response to any request, which endpoint is too busy to handle.
+     */
+    BUSY_RESPONSE,
+
+    /**
+     * Pushed by endpoint to servers which cached account, when balance of account changed. Not answered.
+     */
+    BALANCE_UPDATE,
+
+    /**
+     * Sent by server to endpoint, when it no longer caches account. Not answered.
+     */
+    RELEASE_NOTICE;
+
+    /**
+     * @return Response operation of request operation.
+     * @throws IllegalStateException When operation is not a request.
+     */
+    public ProxyOperation response() {
+        return switch (this) {
+            case FETCH_REQUEST -> FETCH_RESPONSE;
+            case FETCH_WEALTHY_REQUEST -> FETCH_WEALTHY_RESPONSE;
+            case FETCH_STANDINGS_REQUEST -> FETCH_STANDINGS_RESPONSE;
+            case FETCH_STANDING_REQUEST -> FETCH_STANDING_RESPONSE;
+            case WITHDRAW_REQUEST -> WITHDRAW_RESPONSE;
+            case DEPOSIT_REQUEST -> DEPOSIT_RESPONSE;
+            case TRANSFER_REQUEST -> TRANSFER_RESPONSE;
+            case HANDSHAKE_REQUEST -> HANDSHAKE_RESPONSE;
+            case BATCH_REQUEST -> BATCH_RESPONSE;
+            default -> throw new IllegalStateException(this + " is not a request");
+        };
+    }
 }
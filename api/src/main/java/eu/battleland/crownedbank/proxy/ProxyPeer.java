@@ -0,0 +1,19 @@
+package eu.battleland.crownedbank.proxy;
+
+import lombok.NonNull;
+
+/**
+ * Server connected to proxy endpoint, through any transport. Endpoint pushes messages to it, unprompted.
+ * Peer must be identified by equality, so that the same server is the same peer across its messages.
+ */
+@FunctionalInterface
+public interface ProxyPeer {
+
+    /**
+     * Push message to server.
+     *
+     * @param message Message, starting with sub-channel.
+     * @return Boolean true if message was sent.
+     */
+    boolean push(byte @NonNull [] message);
+}
@@ -0,0 +1,131 @@
+package eu.battleland.crownedbank.proxy;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.helper.IdentityIndex;
+import eu.battleland.crownedbank.helper.SampledLog;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import lombok.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Replicates balances from proxy endpoint to servers. Server subscribes to account by requesting it,
+ * and unsubscribes by {@link ProxyOperation#RELEASE_NOTICE}, once it no longer caches it.
+ * When balance of account changes, its subscribers are pushed {@link ProxyOperation#BALANCE_UPDATE}
+ * with versioned balance, which they apply in place, unless they hold newer one.
+ */
+public class ProxyReplicator
+        implements CrownedBankAPI.BalanceListener {
+
+    private final Supplier<ProxyCodec.CurrencyTable> table;
+
+    private final IdentityIndex<Set<ProxyPeer>> subscribers
+            = new IdentityIndex<>();
+    /**
+     * Subscriptions by peer, guarded by the replicator.
+     */
+    private final Map<ProxyPeer, Set<Account.Identity>> subscriptions
+            = new HashMap<>();
+    private final SampledLog log
+            = new SampledLog(TimeUnit.SECONDS.toMillis(10));
+
+    /**
+     * @param table Supplier of currency table, which balances are encoded by.
+     */
+    public ProxyReplicator(@NonNull Supplier<ProxyCodec.CurrencyTable> table) {
+        this.table = table;
+    }
+
+    /**
+     * Subscribe peer to balance changes of account.
+     *
+     * @param peer     Peer.
+     * @param identity Identity of account.
+     */
+    public synchronized void subscribe(@NonNull ProxyPeer peer, Account.@NonNull Identity identity) {
+        this.subscribers.computeIfAbsent(identity, (id) -> ConcurrentHashMap.newKeySet())
+                .add(peer);
+        this.subscriptions.computeIfAbsent(peer, (key) -> new HashSet<>())
+                .add(identity);
+    }
+
+    /**
+     * Unsubscribe peer from balance changes of account.
+     *
+     * @param peer     Peer.
+     * @param identity Identity of account.
+     */
+    public synchronized void unsubscribe(@NonNull ProxyPeer peer, Account.@NonNull Identity identity) {
+        final var identities = this.subscriptions.get(peer);
+        if (identities != null && identities.remove(identity) && identities.isEmpty())
+            this.subscriptions.remove(peer);
+
+        final var peers = this.subscribers.get(identity);
+        if (peers == null)
+            return;
+        peers.remove(peer);
+        if (peers.isEmpty())
+            this.subscribers.remove(identity, peers);
+    }
+
+    /**
+     * Unsubscribe peer from all accounts, such as when it disconnected or restarted.
+     *
+     * @param peer Peer.
+     */
+    public synchronized void forget(@NonNull ProxyPeer peer) {
+        final var identities = this.subscriptions.get(peer);
+        if (identities == null)
+            return;
+        for (final var identity : List.copyOf(identities))
+            unsubscribe(peer, identity);
+    }
+
+    /**
+     * @return Count of accounts with subscribers.
+     */
+    public int subscribed() {
+        return this.subscribers.size();
+    }
+
+    @Override
+    public void balanceChanged(@NonNull Account account, Currency.@NonNull Storage storage) {
+        final var peers = this.subscribers.get(account.getIdentity());
+        if (peers == null || peers.isEmpty())
+            return;
+
+        final var table = this.table.get();
+        if (table.id(storage.getCurrency()) < 0)
+            return;
+
+        final var bytes = new ByteArrayOutputStream();
+        try {
+            final var out = new DataOutputStream(bytes);
+            ProxyCodec.writeHeader(out, ProxyOperation.BALANCE_UPDATE, 0);
+            ProxyCodec.writeIdentity(out, account.getIdentity());
+            ProxyCodec.writeCurrency(out, storage.getCurrency(), table);
+            ProxyCodec.writeBalance(out, storage, table);
+        } catch (IOException x) {
+            this.log.log(Level.WARNING, "proxy_push_malformed", "identity", account.getIdentity(), "error", x.getMessage());
+            return;
+        }
+
+        final var message = bytes.toByteArray();
+        for (final var peer : peers) {
+            if (!peer.push(message))
+                this.log.log(Level.WARNING, "proxy_push_failed", "identity", account.getIdentity(), "peer", peer);
+        }
+    }
+}
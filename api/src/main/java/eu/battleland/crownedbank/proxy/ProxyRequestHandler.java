@@ -0,0 +1,438 @@
+package eu.battleland.crownedbank.proxy;
+
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.helper.Bulkhead;
+import eu.battleland.crownedbank.helper.ExecutorProvider;
+import eu.battleland.crownedbank.helper.IdentityIndex;
+import eu.battleland.crownedbank.helper.OrderedExecutor;
+import eu.battleland.crownedbank.helper.SampledLog;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Handles proxy requests against API, independently of transport which carried them.
+ * <br>
+ * Requests run on executor of the handler, in order per account identity, and in parallel for different identities.
+ * Requests over capacity of its queues are answered with {@link ProxyOperation#BUSY_RESPONSE}.
+ * <br>
+ * Peers requesting accounts are subscribed to their balance changes, see {@link ProxyReplicator}.
+ */
+public class ProxyRequestHandler
+        implements ProxySocketServer.Handler {
+
+    private final CrownedBankAPI api;
+
+    private final ExecutorService executor;
+    private final OrderedExecutor orderedExecutor;
+    private final ProxyReplicator replicator
+            = new ProxyReplicator(this::table);
+    private final SampledLog log
+            = new SampledLog(TimeUnit.SECONDS.toMillis(10));
+
+    private volatile RevisedTable table;
+
+    /**
+     * @param api API Instance.
+     */
+    public ProxyRequestHandler(@NonNull CrownedBankAPI api) {
+        this.api = api;
+
+        final var config = CrownedBank.getConfig();
+        this.executor = ExecutorProvider.create(config.executorMode(), config.executorThreads());
+        this.orderedExecutor = new OrderedExecutor(this.executor,
+                config.endpointQueueDepth(), config.endpointMaxQueued());
+        this.api.registerBalanceListener(this.replicator);
+    }
+
+    /**
+     * Terminate executor of the handler, and stop replicating balances.
+     */
+    public void terminate() {
+        this.api.unregisterBalanceListener(this.replicator);
+        this.executor.shutdown();
+    }
+
+    /**
+     * @return Replicator of balances to peers.
+     */
+    public @NonNull ProxyReplicator replicator() {
+        return this.replicator;
+    }
+
+    /**
+     * @return Snapshot of request queue statistics.
+     */
+    public @NonNull OrderedExecutor.Stats stats() {
+        return this.orderedExecutor.stats();
+    }
+
+    /**
+     * Handle request message of unknown peer, which is not subscribed to balance changes.
+     *
+     * @param message Request message, starting with sub-channel.
+     * @return Future of response message, see {@link #handle(ProxyPeer, byte[])}.
+     */
+    public @Nullable CompletableFuture<byte[]> handle(final byte @NonNull [] message) {
+        return handle(null, message);
+    }
+
+    /**
+     * Handle request message. Entries of {@link ProxyOperation#BATCH_REQUEST} are handled concurrently,
+     * and answered together in one {@link ProxyOperation#BATCH_RESPONSE}, once all of them complete.
+     *
+     * @param peer    Peer, which sent the message. Null if it is not known.
+     * @param message Request message, starting with sub-channel.
+     * @return Future of response message, or null if message is not of {@link ProxyConstants#SUB_CHANNEL}.
+     * Completes with null, if message is a notice. Completes exceptionally, if request is malformed.
+     */
+    @Override
+    public @Nullable CompletableFuture<byte[]> handle(final @Nullable ProxyPeer peer, final byte @NonNull [] message) {
+        final var request = new DataInputStream(new ByteArrayInputStream(message));
+        try {
+            // read sub-channel
+            if (!ProxyConstants.SUB_CHANNEL.equals(request.readUTF()))
+                return null;
+            // read version, operation and request identifier
+            final var header = ProxyCodec.readHeader(request);
+            if (header.operation() != ProxyOperation.BATCH_REQUEST) {
+                return handle(peer, header, request).thenApply(entry -> {
+                    if (entry == null)
+                        return null;
+                    final var bytes = new ByteArrayOutputStream();
+                    try {
+                        final var out = new DataOutputStream(bytes);
+                        out.writeUTF(ProxyConstants.SUB_CHANNEL);
+                        out.write(entry);
+                    } catch (IOException x) {
+                        throw new CompletionException(x);
+                    }
+                    return bytes.toByteArray();
+                });
+            }
+
+            final var entries = ProxyCodec.readBatch(request);
+            final var responses = new ArrayList<CompletableFuture<byte[]>>(entries.size());
+            for (final var entry : entries) {
+                final var in = new DataInputStream(new ByteArrayInputStream(entry));
+                // malformed entry is left unanswered, without failing the rest of batch
+                responses.add(handle(peer, ProxyCodec.readHeader(in), in).exceptionally(x -> {
+                    this.log.log(Level.WARNING, "proxy_request_malformed", "error", x.getMessage());
+                    return null;
+                }));
+            }
+            return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+                final var bytes = new ByteArrayOutputStream();
+                try {
+                    ProxyCodec.writeBatch(new DataOutputStream(bytes), ProxyOperation.BATCH_RESPONSE,
+                            responses.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList());
+                } catch (IOException x) {
+                    throw new CompletionException(x);
+                }
+                return bytes.toByteArray();
+            });
+        } catch (IOException x) {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    @Override
+    public void disconnected(@NonNull ProxyPeer peer) {
+        this.replicator.forget(peer);
+    }
+
+    /**
+     * @return Future of response, without its sub-channel. Completes with null, if there is no response.
+     */
+    private CompletableFuture<byte[]> handle(final @Nullable ProxyPeer peer,
+                                             final ProxyCodec.Header header,
+                                             final DataInputStream in) {
+        final Request request;
+        try {
+            request = Request.read(header, in, table());
+        } catch (IOException x) {
+            return CompletableFuture.failedFuture(x);
+        }
+
+        return this.orderedExecutor.submit(request.key(), () -> process(peer, request))
+                .exceptionallyCompose(x -> {
+                    if (!(x instanceof RejectedExecutionException))
+                        return CompletableFuture.failedFuture(x);
+
+                    if (request.operation() == ProxyOperation.RELEASE_NOTICE) {
+                        this.log.log(Level.WARNING, "proxy_request_busy",
+                                "op", request.operation(), "identity", request.identity(), "reason", x.getMessage());
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return busy(request, x);
+                });
+    }
+
+    /**
+     * Answer request rejected by full queue, or by full bulkhead of remote, so that requester may retry it.
+     */
+    private CompletableFuture<byte[]> busy(final Request request, final Throwable x) {
+        this.log.log(Level.WARNING, "proxy_request_busy",
+                "op", request.operation(), "identity", request.identity(), "reason", x.getMessage());
+        return respond(ProxyOperation.BUSY_RESPONSE, request.requestId(), out -> {
+        });
+    }
+
+    /**
+     * Process request, without waiting for any remote. Peer is subscribed to accounts it requested,
+     * before they are read.
+     *
+     * @return Future of response, without its sub-channel. Completes with null, if there is no response.
+     */
+    private CompletableFuture<byte[]> process(final @Nullable ProxyPeer peer, final Request request) {
+        final var table = table();
+        SampledLog.trace("proxy_request", () -> new Object[]{
+                "op", request.operation(), "id", request.requestId(), "identity", request.identity()});
+
+        if (peer != null) {
+            switch (request.operation()) {
+                // server started over, and caches no accounts
+                case HANDSHAKE_REQUEST -> this.replicator.forget(peer);
+                case RELEASE_NOTICE -> this.replicator.unsubscribe(peer, request.identity());
+                case FETCH_REQUEST, WITHDRAW_REQUEST, DEPOSIT_REQUEST ->
+                        this.replicator.subscribe(peer, request.identity());
+                case TRANSFER_REQUEST -> {
+                    this.replicator.subscribe(peer, request.identity());
+                    this.replicator.subscribe(peer, request.receiver());
+                }
+                default -> {
+                }
+            }
+        }
+
+        final var currency = request.currency();
+        return switch (request.operation()) {
+            case RELEASE_NOTICE -> CompletableFuture.completedFuture(null);
+            case HANDSHAKE_REQUEST -> respond(request, table::write);
+            case FETCH_WEALTHY_REQUEST -> (currency == null
+                    ? CompletableFuture.<List<Standing>>failedFuture(new IllegalStateException("Unknown currency"))
+                    : this.api.retrieveWealthyAccounts(currency))
+                    .exceptionally(x -> {
+                        this.log.log(Level.WARNING, "proxy_fetch_wealthy_failed", "error", x.getMessage());
+                        return List.of();
+                    })
+                    .thenCompose(standings -> respond(request, out ->
+                            ProxyCodec.writeStandings(out, standings, table)));
+            case FETCH_STANDINGS_REQUEST -> (currency == null
+                    ? CompletableFuture.<List<Standing>>failedFuture(new IllegalStateException("Unknown currency"))
+                    : this.api.retrieveStandings(currency, request.after(), request.limit()))
+                    .exceptionally(x -> {
+                        this.log.log(Level.WARNING, "proxy_fetch_standings_failed", "error", x.getMessage());
+                        return List.of();
+                    })
+                    .thenCompose(standings -> respond(request, out ->
+                            ProxyCodec.writeStandings(out, standings, table)));
+            case FETCH_STANDING_REQUEST -> (currency == null
+                    ? CompletableFuture.<Standing>failedFuture(new IllegalStateException("Unknown currency"))
+                    : this.api.retrieveStanding(currency, request.identity()))
+                    .exceptionally(x -> {
+                        this.log.log(Level.WARNING, "proxy_fetch_standing_failed",
+                                "identity", request.identity(), "error", x.getMessage());
+                        return null;
+                    })
+                    .thenCompose(standing -> respond(request, out ->
+                            ProxyCodec.writeStanding(out, standing, table)));
+            case FETCH_REQUEST -> this.api.retrieveAccount(request.identity())
+                    .exceptionally(x -> {
+                        this.log.log(Level.WARNING, "proxy_fetch_failed",
+                                "identity", request.identity(), "error", x.getMessage());
+                        return null;
+                    })
+                    .thenCompose(account -> respond(request, out ->
+                            ProxyCodec.writeData(out, account != null ? account.getData() : null, table)));
+            case WITHDRAW_REQUEST, DEPOSIT_REQUEST -> account(request.identity(), currency)
+                    .thenCompose(account -> (request.operation() == ProxyOperation.WITHDRAW_REQUEST
+                            ? account.withdraw(currency, request.amount())
+                            : account.deposit(currency, request.amount()))
+                            .thenCompose(result -> respond(request, out -> {
+                                out.writeBoolean(Boolean.TRUE.equals(result));
+                                ProxyCodec.writeBalance(out, account.getData().storage(currency), table);
+                            })))
+                    .exceptionallyCompose(x -> {
+                        if (Bulkhead.isRejection(x))
+                            return busy(request, x);
+                        this.log.log(Level.WARNING, "proxy_transaction_failed",
+                                "op", request.operation(), "identity", request.identity(), "error", x.getMessage());
+                        // failed, balance unknown
+                        return respond(request, out -> {
+                            out.writeBoolean(false);
+                            ProxyCodec.writeBalance(out, null, table);
+                        });
+                    });
+            case TRANSFER_REQUEST -> account(request.identity(), currency)
+                    .thenCombine(this.api.retrieveAccount(request.receiver()), TransferParties::new)
+                    .thenCompose(parties -> parties.sender().pay(parties.receiver(), currency, request.amount())
+                            .thenCompose(result -> respond(request, out -> {
+                                out.writeBoolean(Boolean.TRUE.equals(result));
+                                ProxyCodec.writeBalance(out, parties.sender().getData().storage(currency), table);
+                                ProxyCodec.writeBalance(out, parties.receiver().getData().storage(currency), table);
+                            })))
+                    .exceptionallyCompose(x -> {
+                        if (Bulkhead.isRejection(x))
+                            return busy(request, x);
+                        this.log.log(Level.WARNING, "proxy_transfer_failed",
+                                "sender", request.identity(), "receiver", request.receiver(), "error", x.getMessage());
+                        // failed, balances unknown
+                        return respond(request, out -> {
+                            out.writeBoolean(false);
+                            ProxyCodec.writeBalance(out, null, table);
+                            ProxyCodec.writeBalance(out, null, table);
+                        });
+                    });
+            default -> CompletableFuture.failedFuture(new IOException(request.operation() + " is not a request"));
+        };
+    }
+
+    /**
+     * @return Future of account. Completes exceptionally, if currency is unknown.
+     */
+    private CompletableFuture<Account> account(final Account.Identity identity, final @Nullable Currency currency) {
+        if (currency == null)
+            return CompletableFuture.failedFuture(new IllegalStateException("Unknown currency"));
+        return this.api.retrieveAccount(identity);
+    }
+
+    private static CompletableFuture<byte[]> respond(final Request request, final Body body) {
+        return respond(request.operation().response(), request.requestId(), body);
+    }
+
+    /**
+     * @return Future of response, without its sub-channel.
+     */
+    private static CompletableFuture<byte[]> respond(final ProxyOperation operation,
+                                                     final long requestId,
+                                                     final Body body) {
+        final var bytes = new ByteArrayOutputStream();
+        try {
+            final var out = new DataOutputStream(bytes);
+            ProxyCodec.writeEntryHeader(out, operation, requestId);
+            body.write(out);
+        } catch (IOException x) {
+            return CompletableFuture.failedFuture(x);
+        }
+        return CompletableFuture.completedFuture(bytes.toByteArray());
+    }
+
+    /**
+     * @return Currency table of registered currencies, rebuilt when currencies change.
+     */
+    public ProxyCodec.CurrencyTable table() {
+        final var repository = this.api.currencyRepository();
+        var table = this.table;
+        if (table == null || table.revision() != repository.revision()) {
+            table = new RevisedTable(repository.revision(), ProxyCodec.CurrencyTable.of(repository,
+                    CrownedBank.getConfig().valueFractionalDigits()));
+            this.table = table;
+        }
+        return table.table();
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Request, read eagerly so that it may wait in queue.
+     *
+     * @param operation Operation.
+     * @param requestId Request identifier.
+     * @param identity  Identity of account, or null.
+     * @param receiver  Identity of receiving account, or null.
+     * @param currency  Currency, or null if not known.
+     * @param amount    Amount.
+     * @param after     Cursor of standings, or null.
+     * @param limit     Maximum count of standings.
+     */
+    private record Request(ProxyOperation operation,
+                           long requestId,
+                           Account.@Nullable Identity identity,
+                           Account.@Nullable Identity receiver,
+                           @Nullable Currency currency,
+                           float amount,
+                           @Nullable Standing after,
+                           int limit) {
+
+        private Request(ProxyOperation operation,
+                        long requestId,
+                        Account.@Nullable Identity identity,
+                        Account.@Nullable Identity receiver,
+                        @Nullable Currency currency,
+                        float amount) {
+            this(operation, requestId, identity, receiver, currency, amount, null, 0);
+        }
+
+        private static Request read(final ProxyCodec.Header header,
+                                    final DataInputStream in,
+                                    final ProxyCodec.CurrencyTable table) throws IOException {
+            final var op = header.operation();
+            return switch (op) {
+                case HANDSHAKE_REQUEST -> new Request(op, header.requestId(), null, null, null, 0);
+                case FETCH_WEALTHY_REQUEST -> new Request(op, header.requestId(), null, null,
+                        ProxyCodec.readCurrency(in, table), 0);
+                case FETCH_STANDINGS_REQUEST -> new Request(op, header.requestId(), null, null,
+                        ProxyCodec.readCurrency(in, table), 0,
+                        ProxyCodec.readStanding(in, table), ProxyCodec.readVarInt(in));
+                case FETCH_STANDING_REQUEST -> new Request(op, header.requestId(),
+                        ProxyCodec.readIdentity(in), null, ProxyCodec.readCurrency(in, table), 0);
+                case FETCH_REQUEST, RELEASE_NOTICE -> new Request(op, header.requestId(),
+                        ProxyCodec.readIdentity(in), null, null, 0);
+                case WITHDRAW_REQUEST, DEPOSIT_REQUEST -> new Request(op, header.requestId(),
+                        ProxyCodec.readIdentity(in), null,
+                        ProxyCodec.readCurrency(in, table), ProxyCodec.readAmount(in, table));
+                case TRANSFER_REQUEST -> new Request(op, header.requestId(),
+                        ProxyCodec.readIdentity(in), ProxyCodec.readIdentity(in),
+                        ProxyCodec.readCurrency(in, table), ProxyCodec.readAmount(in, table));
+                default -> throw new IOException(op + " is not a request");
+            };
+        }
+
+        /**
+         * @return Key ordering the request. Requests of one account run in order, transfers in order of sender.
+         */
+        private @Nullable Object key() {
+            final var identity = this.identity;
+            // standings are read only, and need no order
+            if (identity == null || this.operation == ProxyOperation.FETCH_STANDING_REQUEST)
+                return null;
+            if (identity.uuid() != null)
+                return identity.uuid();
+            return identity.name() != null ? IdentityIndex.normalize(identity.name()) : null;
+        }
+    }
+
+    private record TransferParties(Account sender, Account receiver) {
+    }
+
+    /**
+     * Currency table of repository revision.
+     *
+     * @param revision Revision of currency repository.
+     * @param table    Currency table.
+     */
+    private record RevisedTable(long revision, ProxyCodec.CurrencyTable table) {
+    }
+}
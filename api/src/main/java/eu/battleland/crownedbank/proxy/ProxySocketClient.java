@@ -0,0 +1,176 @@
+package eu.battleland.crownedbank.proxy;
+
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.abstracted.Controllable;
+import lombok.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Socket transport to proxy endpoint. Keeps one persistent, authenticated connection, which is re-established
+ * with exponential backoff whenever it is lost. Messages may be sent without waiting for previous responses.
+ */
+public class ProxySocketClient
+        implements Controllable {
+
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final InetSocketAddress address;
+    private final String token;
+    private final Consumer<byte[]> listener;
+
+    private final Object writeLock = new Object();
+
+    private volatile SocketChannel channel;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * @param address  Address of proxy endpoint.
+     * @param token    Shared token.
+     * @param listener Listener of received messages. Called from connection thread.
+     */
+    public ProxySocketClient(@NonNull InetSocketAddress address,
+                             @NonNull String token,
+                             @NonNull Consumer<byte[]> listener) {
+        this.address = address;
+        this.token = token;
+        this.listener = listener;
+    }
+
+    @Override
+    public void initialize() {
+        this.running = true;
+        this.thread = new Thread(this::loop, "CrownedBank Proxy Socket");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void terminate() {
+        this.running = false;
+        close(this.channel);
+        if (this.thread != null)
+            this.thread.interrupt();
+    }
+
+    /**
+     * @return Boolean true if connection is established and authenticated.
+     */
+    public boolean isConnected() {
+        return this.channel != null;
+    }
+
+    /**
+     * Send message.
+     *
+     * @param message Message.
+     * @return Boolean true if message was written, false if there's no connection.
+     */
+    public boolean send(final byte @NonNull [] message) {
+        final var channel = this.channel;
+        if (channel == null)
+            return false;
+        try {
+            write(channel, message);
+            return true;
+        } catch (IOException x) {
+            close(channel);
+            return false;
+        }
+    }
+
+    private void loop() {
+        var backoff = MIN_BACKOFF_MILLIS;
+        while (this.running) {
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open(this.address);
+                channel.socket().setTcpNoDelay(true);
+
+                // authenticate
+                final var authentication = new ByteArrayOutputStream();
+                ProxyCodec.writeAuthentication(new DataOutputStream(authentication), this.token);
+                write(channel, authentication.toByteArray());
+                if (!Arrays.equals(ProxyCodec.acknowledgement(), read(channel)))
+                    throw new IOException("Authentication was not acknowledged");
+
+                this.channel = channel;
+                backoff = MIN_BACKOFF_MILLIS;
+                CrownedBank.getLogger().info(String.format("Connected to proxy endpoint at %s.", this.address));
+
+                while (this.running) {
+                    final var message = read(channel);
+                    try {
+                        this.listener.accept(message);
+                    } catch (RuntimeException x) {
+                        CrownedBank.getLogger().severe(String.format("Couldn't handle proxy message: %s", x.getMessage()));
+                    }
+                }
+            } catch (IOException x) {
+                if (this.running)
+                    CrownedBank.getLogger().warning(String.format("Connection to proxy endpoint at %s failed: %s",
+                            this.address, x.getMessage()));
+            } finally {
+                this.channel = null;
+                close(channel);
+            }
+
+            if (!this.running)
+                return;
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException x) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    private void write(final SocketChannel channel, final byte[] message) throws IOException {
+        final var frame = ByteBuffer.allocate(Integer.BYTES + message.length);
+        frame.putInt(message.length).put(message).flip();
+        synchronized (this.writeLock) {
+            while (frame.hasRemaining())
+                channel.write(frame);
+        }
+    }
+
+    private static byte[] read(final SocketChannel channel) throws IOException {
+        final var header = ByteBuffer.allocate(Integer.BYTES);
+        fill(channel, header);
+        final var length = header.getInt(0);
+        if (length < 0 || length > ProxySocketServer.MAX_FRAME_LENGTH)
+            throw new IOException("Invalid frame length " + length);
+
+        final var frame = ByteBuffer.allocate(length);
+        fill(channel, frame);
+        return frame.array();
+    }
+
+    private static void fill(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Connection closed");
+        }
+    }
+
+    private static void close(final SocketChannel channel) {
+        if (channel == null)
+            return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
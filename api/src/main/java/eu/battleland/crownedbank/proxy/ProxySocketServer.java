@@ -0,0 +1,311 @@
+package eu.battleland.crownedbank.proxy;
+
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.abstracted.Controllable;
+import lombok.NonNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Socket transport of proxy endpoint. Servers connect directly, instead of relaying plugin messages through players.
+ * <br>
+ * Every frame is prefixed with its length. First frame of connection must authenticate it by shared token,
+ * other frames carry proxy messages. Requests are handled concurrently, responses are written as they complete,
+ * so that any number of requests may be in flight on one connection.
+ */
+public class ProxySocketServer
+        implements Controllable {
+
+    /**
+     * Maximum length of frame.
+     */
+    public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+    private final InetSocketAddress address;
+    private final byte[] token;
+    private final Handler handler;
+
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel channel;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * @param address Address to listen on.
+     * @param token   Shared token, which connections have to authenticate with.
+     * @param handler Handler of request messages.
+     */
+    public ProxySocketServer(@NonNull InetSocketAddress address,
+                             @NonNull String token,
+                             @NonNull Handler handler) {
+        if (token.isEmpty())
+            throw new IllegalStateException("Socket token must not be empty");
+        this.address = address;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.handler = handler;
+    }
+
+    @Override
+    public void initialize() throws IOException {
+        this.selector = Selector.open();
+        this.channel = ServerSocketChannel.open();
+        this.channel.bind(this.address);
+        this.channel.configureBlocking(false);
+        this.channel.register(this.selector, SelectionKey.OP_ACCEPT);
+
+        this.running = true;
+        this.thread = new Thread(this::loop, "CrownedBank Endpoint Socket");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void terminate() {
+        this.running = false;
+        if (this.selector == null)
+            return;
+        this.selector.wakeup();
+        try {
+            this.thread.join(1000);
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Port the server listens on.
+     */
+    public int port() {
+        return this.channel.socket().getLocalPort();
+    }
+
+    private void loop() {
+        try {
+            while (this.running) {
+                this.selector.select();
+
+                // connections with responses to write
+                Connection pending;
+                while ((pending = this.pendingWrites.poll()) != null) {
+                    if (pending.key.isValid())
+                        pending.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+
+                final var keys = this.selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    final var key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable())
+                            accept();
+                        else {
+                            final var connection = (Connection) key.attachment();
+                            if (key.isReadable())
+                                connection.read();
+                            if (key.isValid() && key.isWritable())
+                                connection.write();
+                        }
+                    } catch (IOException x) {
+                        if (key.attachment() instanceof Connection connection)
+                            connection.close();
+                    }
+                }
+            }
+        } catch (IOException x) {
+            CrownedBank.getLogger().severe(String.format("Endpoint socket failed: %s", x.getMessage()));
+        } finally {
+            try {
+                for (final var key : this.selector.keys()) {
+                    if (key.attachment() instanceof Connection connection)
+                        connection.close();
+                }
+                this.channel.close();
+                this.selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        final var client = this.channel.accept();
+        if (client == null)
+            return;
+        client.configureBlocking(false);
+        client.socket().setTcpNoDelay(true);
+        final var key = client.register(this.selector, SelectionKey.OP_READ);
+        key.attach(new Connection(client, key));
+    }
+
+    /**
+     * @param frame Authentication frame.
+     * @return Boolean true if frame carries matching token, compared in constant time.
+     */
+    private boolean authenticate(final byte[] frame) {
+        try {
+            final var token = ProxyCodec.readAuthentication(new DataInputStream(new ByteArrayInputStream(frame)));
+            return MessageDigest.isEqual(this.token, token.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException x) {
+            return false;
+        }
+    }
+
+    /**
+     * Connected server.
+     */
+    private final class Connection
+            implements ProxyPeer {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+
+        private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<>();
+        private ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+        private volatile boolean authenticated;
+        private volatile boolean closed;
+
+        private Connection(final SocketChannel channel, final SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(this.channel.socket().getRemoteSocketAddress());
+        }
+
+        private void read() throws IOException {
+            if (this.channel.read(this.readBuffer) < 0) {
+                close();
+                return;
+            }
+
+            this.readBuffer.flip();
+            while (this.readBuffer.remaining() >= Integer.BYTES) {
+                final var length = this.readBuffer.getInt(this.readBuffer.position());
+                if (length < 0 || length > MAX_FRAME_LENGTH)
+                    throw new IOException("Invalid frame length " + length);
+                if (this.readBuffer.remaining() < Integer.BYTES + length) {
+                    // grow buffer for frame larger than it
+                    if (this.readBuffer.capacity() < Integer.BYTES + length) {
+                        final var grown = ByteBuffer.allocate(Integer.BYTES + length);
+                        grown.put(this.readBuffer);
+                        this.readBuffer = grown;
+                        return;
+                    }
+                    break;
+                }
+
+                this.readBuffer.getInt();
+                final var frame = new byte[length];
+                this.readBuffer.get(frame);
+                receive(frame);
+            }
+            this.readBuffer.compact();
+        }
+
+        private void receive(final byte[] frame) throws IOException {
+            if (!this.authenticated) {
+                if (!authenticate(frame)) {
+                    CrownedBank.getLogger().warning(String.format("Endpoint socket rejected %s, invalid token.",
+                            this.channel.getRemoteAddress()));
+                    throw new IOException("Invalid token");
+                }
+                this.authenticated = true;
+                send(ProxyCodec.acknowledgement());
+                return;
+            }
+
+            final var response = handler.handle(this, frame);
+            if (response == null)
+                return;
+            response.whenComplete((message, x) -> {
+                if (x != null) {
+                    CrownedBank.getLogger().severe(String.format("Malformed proxy request: %s", x.getMessage()));
+                    return;
+                }
+                if (message != null)
+                    send(message);
+            });
+        }
+
+        @Override
+        public boolean push(final byte @NonNull [] message) {
+            if (this.closed || !this.authenticated)
+                return false;
+            send(message);
+            return true;
+        }
+
+        private void send(final byte[] message) {
+            final var frame = ByteBuffer.allocate(Integer.BYTES + message.length);
+            frame.putInt(message.length).put(message).flip();
+            this.writes.add(frame);
+
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        private void write() throws IOException {
+            ByteBuffer frame;
+            while ((frame = this.writes.peek()) != null) {
+                this.channel.write(frame);
+                if (frame.hasRemaining())
+                    return;
+                this.writes.poll();
+            }
+            this.key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void close() {
+            if (this.closed)
+                return;
+            this.closed = true;
+            handler.disconnected(this);
+
+            this.key.cancel();
+            try {
+                this.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Handler of messages received by socket server.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * @param peer    Connection, which message was received from.
+         * @param message Message.
+         * @return Future of response message, which may complete with null if there is no response.
+         * Null if message was not handled.
+         */
+        @Nullable CompletableFuture<byte[]> handle(@NonNull ProxyPeer peer, byte @NonNull [] message);
+
+        /**
+         * Called once connection closed.
+         *
+         * @param peer Connection.
+         */
+        default void disconnected(@NonNull ProxyPeer peer) {
+        }
+    }
+}
@@ -3,8 +3,10 @@ package eu.battleland.crownedbank.remote;
 import com.google.gson.JsonObject;
 import eu.battleland.crownedbank.abstracted.Controllable;
 import eu.battleland.crownedbank.abstracted.Identifiable;
+import eu.battleland.crownedbank.helper.Bulkhead;
 import eu.battleland.crownedbank.model.Account;
 import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
 import lombok.NonNull;
 import lombok.Setter;
 import org.jetbrains.annotations.Nullable;
@@ -47,13 +49,50 @@ public interface Remote
 
 
     /**
-     * Query accounts by currency.
+     * Query wealthiest accounts by currency.
      *
      * @param currency Currency.
-     * @return List of Accounts.
+     * @return List of standings, wealthiest first.
      * @throws IllegalStateException When exception occurs.
      */
-    CompletableFuture<List<Account>> fetchWealthyAccounts(@NonNull Currency currency);
+    CompletableFuture<List<Standing>> fetchWealthyAccounts(@NonNull Currency currency);
+
+    /**
+     * Query page of standings by currency, seeking past cursor instead of skipping rows.
+     * The default implementation pages through {@link #fetchWealthyAccounts(Currency)}.
+     *
+     * @param currency Currency.
+     * @param after    Standing, after which page starts. Null for first page.
+     * @param limit    Maximum count of standings.
+     * @return List of standings, in {@link Standing#ORDER}.
+     * @throws IllegalStateException When exception occurs.
+     */
+    default CompletableFuture<List<Standing>> fetchStandings(@NonNull Currency currency,
+                                                             @Nullable Standing after,
+                                                             int limit) {
+        return fetchWealthyAccounts(currency)
+                .thenApply(standings -> Standing.page(standings, after, limit));
+    }
+
+    /**
+     * Query standing of account by currency.
+     * The default implementation looks account up in {@link #fetchWealthyAccounts(Currency)}.
+     *
+     * @param currency Currency.
+     * @param identity Identity of account.
+     * @return Standing, or null if account has no balance of currency.
+     * @throws IllegalStateException When exception occurs.
+     */
+    default CompletableFuture<@Nullable Standing> fetchStanding(@NonNull Currency currency,
+                                                                @NonNull Account.Identity identity) {
+        return fetchWealthyAccounts(currency).thenApply(standings -> {
+            for (final var standing : standings) {
+                if (standing.identity().equals(identity))
+                    return standing;
+            }
+            return null;
+        });
+    }
 
     /**
      * Handle account withdraw.
@@ -81,6 +120,60 @@ public interface Remote
                                              final Currency.Storage currencyStorage,
                                              float amount);
 
+    /**
+     * Handle transfer between two accounts. Remotes should execute transfer in a single round trip,
+     * the default implementation withdraws from sender, deposits to receiver and refunds the sender if deposit fails.
+     *
+     * @param sender          Sender account.
+     * @param senderStorage   Currency storage of sender.
+     * @param receiver        Receiver account.
+     * @param receiverStorage Currency storage of receiver.
+     * @param amount          Amount to transfer.
+     * @return Boolean true if transfer was successful.
+     * @throws IllegalStateException When exception occurs.
+     */
+    default CompletableFuture<Boolean> handleTransfer(final Account sender,
+                                                      final Currency.Storage senderStorage,
+                                                      final Account receiver,
+                                                      final Currency.Storage receiverStorage,
+                                                      float amount) {
+        return handleWithdraw(sender, senderStorage, amount).thenCompose(withdrawn -> {
+            if (!withdrawn)
+                return CompletableFuture.completedFuture(false);
+
+            return handleDeposit(receiver, receiverStorage, amount)
+                    .handle((deposited, x) -> x == null && deposited)
+                    .thenCompose(deposited -> {
+                        if (deposited)
+                            return CompletableFuture.completedFuture(true);
+                        // refund sender
+                        return handleDeposit(sender, senderStorage, amount)
+                                .thenApply(refunded -> false);
+                    });
+        });
+    }
+
+
+    /**
+     * Whether transactions handled by this remote are persisted by the remote itself. Accounts are not marked dirty
+     * by such transactions, so that a stale cached account does not overwrite balances changed by other servers.
+     *
+     * @return Boolean true if remote persists its transactions.
+     */
+    default boolean persistsTransactions() {
+        return false;
+    }
+
+    /**
+     * Bulkhead isolating asynchronous tasks of this remote from other remotes.
+     * Tasks rejected by full bulkhead complete exceptionally with {@link Bulkhead.RejectedException}.
+     *
+     * @return Bulkhead, or null if remote does not run blocking tasks.
+     */
+    default @Nullable Bulkhead bulkhead() {
+        return null;
+    }
+
 
     /**
      * Remote factory.
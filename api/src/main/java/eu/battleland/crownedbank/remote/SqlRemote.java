@@ -4,15 +4,23 @@ import com.google.gson.JsonParser;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.helper.Bulkhead;
+import eu.battleland.crownedbank.helper.IdentityIndex;
 import eu.battleland.crownedbank.model.Account;
 import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
 import lombok.Getter;
 import lombok.NonNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
@@ -29,22 +37,129 @@ public class SqlRemote
 
     private String tablePrefix = "crownedbank";
 
+    /**
+     * Storage layout of account data.
+     */
+    @Getter
+    private Layout layout = Layout.JSON;
+    private boolean migrateLayout = false;
+
+    /**
+     * Whether withdrawals and deposits are executed as conditional delta statements in the database.
+     */
+    @Getter
+    private boolean atomicTransactions = false;
+
+    /**
+     * Whether account stores are deferred and flushed in batches.
+     */
+    @Getter
+    private boolean writeBehind = false;
+    private long flushIntervalMillis = 1000;
+    private int flushBatchSize = 128;
+    private long flushTimeoutMillis = 5000;
+
+    /**
+     * Bulkhead of queries, configured by {@code concurrency} and {@code queue_depth}.
+     * Concurrency defaults to {@code pool_size}.
+     */
+    private Bulkhead bulkhead;
+
+    private final IdentityIndex<Account> dirtyAccounts
+            = new IdentityIndex<>();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile ScheduledExecutorService flushScheduler;
+
     private String tableCommand = """
             create table if not exists `%s_data`
               ( `identity_name` VARCHAR(32) NOT NULL , `identity_uuid` VARCHAR(36) NOT NULL , `json_data` LONGTEXT
                NOT NULL , UNIQUE (`identity_name`), UNIQUE (`identity_uuid`));
             """;
     private String storeCommand = """
-            insert into `%s_data` (`identity_name`,`identity_uuid`,`json_data`) values('%s','%s','%s')
-            on duplicate key update json_data='%4$s'
+            insert into `%s_data` (`identity_name`,`identity_uuid`,`json_data`) values(?,?,?)
+            on duplicate key update json_data=values(`json_data`)
             """;
     private String fetchCommand = """
-            select `json_data` from `%s_data`
-            where `identity_name`='%s' OR `identity_uuid`='%s'
+            select `json_data` from `%1$s_data`
+            where `%2$s`=?
             """;
     private String fetchWealthyCommand = """
-            select `identity_name`, `identity_uuid`, `json_data`, JSON_EXTRACT(`json_data`, '$.%2$s') as worth
-            from `%1$s_data` order by worth desc limit %3$d
+            select * from (select `identity_name`, `identity_uuid`,
+              CAST(JSON_EXTRACT(`json_data`, '$.%2$s') AS DECIMAL(20,4)) as worth from `%1$s_data`) s
+            where worth is not null %3$s order by worth desc, `identity_uuid` desc limit ?
+            """;
+    private String fetchRankCommand = """
+            select s.`identity_name`, s.`identity_uuid`, s.worth,
+              (select count(*) from `%1$s_data` o
+               where CAST(JSON_EXTRACT(o.`json_data`, '$.%3$s') AS DECIMAL(20,4)) > s.worth
+                  or (CAST(JSON_EXTRACT(o.`json_data`, '$.%3$s') AS DECIMAL(20,4)) = s.worth
+                      and o.`identity_uuid` > s.`identity_uuid`)) + 1 as `rank`
+            from (select `identity_name`, `identity_uuid`,
+              CAST(JSON_EXTRACT(`json_data`, '$.%3$s') AS DECIMAL(20,4)) as worth from `%1$s_data` where `%2$s`=?) s
+            where s.worth is not null
+            """;
+
+    private String balanceTableCommand = """
+            create table if not exists `%s_balance`
+              ( `identity_name` VARCHAR(32) NOT NULL , `identity_uuid` VARCHAR(36) NOT NULL , `currency` VARCHAR(64) NOT NULL ,
+                `balance` DECIMAL(20,4) NOT NULL DEFAULT 0 , PRIMARY KEY (`identity_uuid`, `currency`),
+                INDEX `identity_name_index` (`identity_name`), INDEX `leaderboard_index` (`currency`, `balance`, `identity_uuid`));
+            """;
+    private String balanceStoreCommand = """
+            insert into `%s_balance` (`identity_name`,`identity_uuid`,`currency`,`balance`) values(?,?,?,?)
+            on duplicate key update identity_name=values(`identity_name`), balance=values(`balance`)
+            """;
+    /**
+     * Store command of atomic transactions, balances are changed only by delta statements.
+     */
+    private String balanceRegisterCommand = """
+            insert into `%s_balance` (`identity_name`,`identity_uuid`,`currency`,`balance`) values(?,?,?,?)
+            on duplicate key update identity_name=values(`identity_name`)
+            """;
+    private String balanceFetchCommand = """
+            select `currency`, `balance` from `%1$s_balance`
+            where `%2$s`=?
+            """;
+    private String balanceFetchWealthyCommand = """
+            select `identity_name`, `identity_uuid`, `balance` from `%1$s_balance`
+            where `currency`=? %2$s order by `balance` desc, `identity_uuid` desc limit ?
+            """;
+    private String balanceFetchRankCommand = """
+            select b.`identity_name`, b.`identity_uuid`, b.`balance`,
+              (select count(*) from `%1$s_balance` o where o.`currency`=b.`currency`
+                 and (o.`balance` > b.`balance`
+                   or (o.`balance` = b.`balance` and o.`identity_uuid` > b.`identity_uuid`))) + 1 as `rank`
+            from `%1$s_balance` b where b.`%2$s`=? and b.`currency`=?
+            """;
+    /**
+     * Condition of wealthy commands, seeking past cursor. Written out instead of row comparison,
+     * so that it is a range scan of leaderboard index.
+     */
+    private String seekCondition = """
+            and (%1$s < ? or (%1$s = ? and `identity_uuid` < ?))
+            """;
+    private String balanceWithdrawCommand = """
+            update `%1$s_balance` set `balance`=`balance`-? where `identity_uuid`=? and `currency`=? and `balance`>=?;
+            select `balance` from `%1$s_balance` where `identity_uuid`=? and `currency`=?
+            """;
+    private String balanceDepositCommand = """
+            insert into `%1$s_balance` (`identity_name`,`identity_uuid`,`currency`,`balance`) values(?,?,?,?)
+            on duplicate key update balance=balance+values(`balance`);
+            select `balance` from `%1$s_balance` where `identity_uuid`=? and `currency`=?
+            """;
+    private String balanceLockCommand = """
+            select `balance` from `%s_balance` where `identity_uuid`=? and `currency`=? for update
+            """;
+    private String balanceUpdateCommand = """
+            insert into `%s_balance` (`identity_name`,`identity_uuid`,`currency`,`balance`) values(?,?,?,?)
+            on duplicate key update balance=balance+values(`balance`)
+            """;
+    private String migrateSelectCommand = """
+            select `identity_name`, `identity_uuid`, `json_data` from `%s_data`
+            """;
+    private String migrateInsertCommand = """
+            insert ignore into `%s_balance` (`identity_name`,`identity_uuid`,`currency`,`balance`) values(?,?,?,?)
             """;
 
     public SqlRemote(@NonNull String identifier) {
@@ -61,6 +176,8 @@ public class SqlRemote
             try(final var connection = this.dataSource.getConnection();
                 final var statement = connection.createStatement()) {
                 statement.execute(String.format(tableCommand, tablePrefix));
+                if (this.layout == Layout.NORMALIZED)
+                    statement.execute(String.format(balanceTableCommand, tablePrefix));
 
                 CrownedBank.getLogger()
                         .info("Database connection established to '" + config.getJdbcUrl() + "' as '" + config.getUsername() + "'");
@@ -71,10 +188,60 @@ public class SqlRemote
         } catch (Throwable x) {
             CrownedBank.getLogger().severe("Couldn't establish database connection");
         }
+
+        // migrate json layout to normalized layout
+        if (this.layout == Layout.NORMALIZED && this.migrateLayout && this.dataSource != null) {
+            try {
+                final var migrated = migrate();
+                CrownedBank.getLogger().info(String.format("Migrated %d balances of remote '%s' to normalized layout.",
+                        migrated, this.identifier));
+            } catch (Exception x) {
+                CrownedBank.getLogger().severe(String.format("Couldn't migrate remote '%s' to normalized layout: %s",
+                        this.identifier, x));
+            }
+        }
+
+        // schedule write-behind flushes
+        if (this.writeBehind) {
+            this.flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final var thread = new Thread(runnable, "CrownedBank SQL Flush (" + this.identifier + ")");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flushScheduler.scheduleWithFixedDelay(this::flush,
+                    this.flushIntervalMillis, this.flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void terminate() {
+        // flush dirty accounts, but do not hang the shutdown
+        final var flushScheduler = this.flushScheduler;
+        if (flushScheduler != null) {
+            try {
+                final var flushed = flushScheduler.submit(this::flush);
+                flushScheduler.shutdown();
+                flushed.get(this.flushTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (Exception x) {
+                CrownedBank.getLogger().severe(String.format("Couldn't flush %d dirty accounts of remote '%s' in time.",
+                        this.dirtyAccounts.size(), this.identifier));
+            }
+
+            // data source must not be closed under running flush
+            flushScheduler.shutdownNow();
+            try {
+                if (!flushScheduler.awaitTermination(this.flushTimeoutMillis, TimeUnit.MILLISECONDS))
+                    CrownedBank.getLogger().severe(String.format("Flush of remote '%s' did not stop in time.",
+                            this.identifier));
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+            }
+            this.flushScheduler = null;
+        }
+
+        if (this.bulkhead != null)
+            this.bulkhead.terminate();
+
         try {
             if(this.dataSource != null)
                 this.dataSource.close();
@@ -121,93 +288,468 @@ public class SqlRemote
         if(data.has("table_prefix"))
             this.tablePrefix = data.getAsJsonPrimitive("table_prefix").getAsString();
 
+        // layout
+        if (data.has("layout")) {
+            final var layoutName = data.getAsJsonPrimitive("layout").getAsString();
+            try {
+                this.layout = Layout.valueOf(layoutName.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException x) {
+                throw new IllegalStateException("Unknown layout: " + layoutName);
+            }
+        }
+        if (data.has("migrate_layout"))
+            this.migrateLayout = data.getAsJsonPrimitive("migrate_layout").getAsBoolean();
+
+        // atomic transactions
+        if (data.has("atomic_transactions"))
+            this.atomicTransactions = data.getAsJsonPrimitive("atomic_transactions").getAsBoolean();
+        if (this.atomicTransactions) {
+            if (this.layout != Layout.NORMALIZED)
+                throw new IllegalStateException("Atomic transactions require the normalized layout.");
+            // delta statement and balance read are sent in one round trip
+            config.addDataSourceProperty("allowMultiQueries", "true");
+        }
+
+        // write-behind
+        if (data.has("write_behind"))
+            this.writeBehind = data.getAsJsonPrimitive("write_behind").getAsBoolean();
+        if (data.has("flush_interval_millis"))
+            this.flushIntervalMillis = data.getAsJsonPrimitive("flush_interval_millis").getAsLong();
+        if (data.has("flush_batch_size"))
+            this.flushBatchSize = Math.max(1, data.getAsJsonPrimitive("flush_batch_size").getAsInt());
+        if (data.has("flush_timeout_millis"))
+            this.flushTimeoutMillis = data.getAsJsonPrimitive("flush_timeout_millis").getAsLong();
+        if (this.writeBehind)
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+
+        // bulkhead
+        final var concurrency = data.has("concurrency")
+                ? data.getAsJsonPrimitive("concurrency").getAsInt()
+                : config.getMaximumPoolSize();
+        final var queueDepth = data.has("queue_depth")
+                ? data.getAsJsonPrimitive("queue_depth").getAsInt()
+                : 1024;
+        this.bulkhead = new Bulkhead(this.identifier, concurrency, queueDepth);
+
         return this;
     }
 
+    @Override
+    public boolean persistsTransactions() {
+        return this.atomicTransactions;
+    }
+
+    @Override
+    public @Nullable Bulkhead bulkhead() {
+        return this.bulkhead;
+    }
+
     @Override
     public @NonNull String identifier() {
         return this.identifier;
     }
 
+    /**
+     * Store account state in remote. When {@link #isWriteBehind()} is enabled, the account is only marked dirty
+     * and is written with the next batch flush. Repeated stores of the same identity are coalesced.
+     *
+     * @param account Account.
+     * @return Boolean true if successful, or if scheduled for write-behind.
+     */
     @Override
     public CompletableFuture<Boolean> storeAccount(@NonNull Account account) {
-        return CompletableFuture.supplyAsync(() -> {
-            final var identity = account.getIdentity();
+        final var flushScheduler = this.flushScheduler;
+        if (this.writeBehind && flushScheduler != null) {
+            this.dirtyAccounts.put(account.getIdentity(), account);
+            // schedule single flush of full batch
+            if (this.dirtyAccounts.size() >= this.flushBatchSize && this.flushScheduled.compareAndSet(false, true)) {
+                try {
+                    flushScheduler.execute(() -> {
+                        this.flushScheduled.set(false);
+                        flush();
+                    });
+                } catch (RejectedExecutionException x) {
+                    // terminating, account is flushed by terminate
+                    this.flushScheduled.set(false);
+                }
+            }
+            return CompletableFuture.completedFuture(true);
+        }
+
+        return this.bulkhead.supply(() -> {
             try (final var connection = this.dataSource.getConnection();
-                 final var statement = connection.createStatement()) {
-
-                final var json = Account.Data
-                        .encode(account.getData(), Predicate.isEqual(this));
-                return statement.execute(
-                        String.format(storeCommand,
-                                tablePrefix,
-                                identity.name(),
-                                identity.uuid().toString(),
-                                json
-                        ));
+                 final var statement = prepareStore(connection)) {
+                if (batchStore(statement, account) > 0)
+                    statement.executeBatch();
+                return true;
             } catch (Exception x) {
                 throw new IllegalStateException("Couldn't store account", x);
             }
         });
     }
 
+    /**
+     * Flush all dirty accounts in JDBC batches of {@code flush_batch_size}.
+     * Accounts that could not be written are marked dirty again, unless they were re-marked in the meantime.
+     *
+     * @return Count of flushed accounts.
+     */
+    public int flush() {
+        synchronized (this.flushLock) {
+            if (this.dirtyAccounts.isEmpty())
+                return 0;
+
+            // drain dirty accounts
+            final var batch = new ArrayList<Account>(this.dirtyAccounts.size());
+            for (final var account : this.dirtyAccounts.values()) {
+                if (this.dirtyAccounts.remove(account.getIdentity(), account))
+                    batch.add(account);
+            }
+
+            try (final var connection = this.dataSource.getConnection();
+                 final var statement = prepareStore(connection)) {
+                connection.setAutoCommit(false);
+                try {
+                    int pending = 0;
+                    for (final var account : batch) {
+                        pending += batchStore(statement, account);
+
+                        if (pending >= this.flushBatchSize) {
+                            statement.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0)
+                        statement.executeBatch();
+                    connection.commit();
+                } catch (Exception x) {
+                    connection.rollback();
+                    throw x;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return batch.size();
+            } catch (Exception x) {
+                batch.forEach(account -> this.dirtyAccounts.putIfAbsent(account.getIdentity(), account));
+                CrownedBank.getLogger().severe(String.format("Couldn't flush %d accounts to remote '%s': %s",
+                        batch.size(), this.identifier, x));
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Prepare store statement for current layout. With atomic transactions, existing balances are not overwritten,
+     * as the cached account may be stale.
+     *
+     * @param connection Connection.
+     * @return Statement.
+     */
+    private PreparedStatement prepareStore(final Connection connection) throws SQLException {
+        final String command;
+        if (this.layout != Layout.NORMALIZED)
+            command = storeCommand;
+        else
+            command = this.atomicTransactions ? balanceRegisterCommand : balanceStoreCommand;
+        return connection.prepareStatement(String.format(command, tablePrefix));
+    }
+
+    /**
+     * Add account to store statement batch.
+     *
+     * @param statement Statement prepared by {@link #prepareStore(Connection)}.
+     * @param account   Account.
+     * @return Count of rows added to batch.
+     */
+    private int batchStore(final PreparedStatement statement,
+                           final Account account) throws SQLException {
+        final var identity = account.getIdentity();
+
+        if (this.layout == Layout.NORMALIZED) {
+            int rows = 0;
+            for (final var storage : account.getData().storages()) {
+                if (storage.getCurrency().getRemote() != this)
+                    continue;
+
+                statement.setString(1, identity.name());
+                statement.setString(2, identity.uuid().toString());
+                statement.setString(3, storage.getCurrency().identifier());
+                statement.setBigDecimal(4, decimal(storage.amount()));
+                statement.addBatch();
+                rows++;
+            }
+            return rows;
+        }
+
+        final var json = Account.Data
+                .encode(account.getData(), Predicate.isEqual(this));
+        statement.setString(1, identity.name());
+        statement.setString(2, identity.uuid().toString());
+        statement.setString(3, json.toString());
+        statement.addBatch();
+        return 1;
+    }
+
+    /**
+     * Stream all rows of the json layout into the normalized layout. Balances already present in the normalized
+     * layout are kept, so the migration may be safely repeated.
+     *
+     * @return Count of migrated balances.
+     * @throws SQLException When exception occurs.
+     */
+    public long migrate() throws SQLException {
+        try (final var source = this.dataSource.getConnection();
+             final var target = this.dataSource.getConnection()) {
+            try (final var statement = target.createStatement()) {
+                statement.execute(String.format(balanceTableCommand, tablePrefix));
+            }
+
+            try (final var select = source.prepareStatement(String.format(migrateSelectCommand, tablePrefix),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                 final var insert = target.prepareStatement(String.format(migrateInsertCommand, tablePrefix))) {
+                // stream rows instead of buffering the whole table
+                select.setFetchSize(Integer.MIN_VALUE);
+                target.setAutoCommit(false);
+
+                long migrated = 0;
+                int pending = 0;
+                try (final var result = select.executeQuery()) {
+                    while (result.next()) {
+                        final var name = result.getString("identity_name");
+                        final var uuid = result.getString("identity_uuid");
+                        final var json = JsonParser
+                                .parseString(result.getString("json_data"))
+                                .getAsJsonObject();
+
+                        for (final var entry : json.entrySet()) {
+                            insert.setString(1, name);
+                            insert.setString(2, uuid);
+                            insert.setString(3, entry.getKey());
+                            insert.setBigDecimal(4, entry.getValue().getAsBigDecimal());
+                            insert.addBatch();
+                            migrated++;
+
+                            if (++pending >= this.flushBatchSize) {
+                                insert.executeBatch();
+                                target.commit();
+                                pending = 0;
+                            }
+                        }
+                    }
+                }
+                if (pending > 0)
+                    insert.executeBatch();
+                target.commit();
+                return migrated;
+            } finally {
+                target.setAutoCommit(true);
+            }
+        }
+    }
+
     @Override
     public CompletableFuture<Account.@Nullable Data> fetchAccount(@NonNull Account.Identity identity) {
-        return CompletableFuture.supplyAsync(() -> {
-            try (final var connection = this.dataSource.getConnection();
-                 final var statement = connection.createStatement();
-                 final var result = statement.executeQuery(
-                         String.format(fetchCommand,
-                                 tablePrefix,
-                                 identity.name(),
-                                 identity.uuid().toString()
-                         ))) {
-                if(result.next()) {
+        if (this.layout == Layout.NORMALIZED)
+            return fetchBalances(identity);
+
+        return this.bulkhead.supply(() -> {
+            try {
+                return fetchByIdentity(fetchCommand, identity, result -> {
+                    if (!result.next())
+                        return null;
                     final var json = JsonParser
                             .parseString(result.getString("json_data"))
                             .getAsJsonObject();
                     return Account.Data.decode(json, Predicate.isEqual(this));
-                } else
-                    return null;
+                });
+            } catch (Exception x) {
+                throw new IllegalStateException("Couldn't fetch account", x);
+            }
+        });
+    }
+
+    /**
+     * Fetch account data from normalized layout.
+     *
+     * @param identity Identity of account.
+     * @return Nullable account data.
+     */
+    private CompletableFuture<Account.@Nullable Data> fetchBalances(@NonNull Account.Identity identity) {
+        return this.bulkhead.supply(() -> {
+            try {
+                return fetchByIdentity(balanceFetchCommand, identity, result -> {
+                    Account.Data data = null;
+                    while (result.next()) {
+                        if (data == null)
+                            data = Account.Data.empty();
+
+                        final var currency = CrownedBank.getApi()
+                                .currencyRepository()
+                                .retrieve(result.getString("currency"));
+                        if (currency == null || currency.getRemote() != this)
+                            continue;
+                        data.put(currency.newStorage().change(result.getBigDecimal("balance").floatValue()));
+                    }
+                    return data;
+                });
             } catch (Exception x) {
                 throw new IllegalStateException("Couldn't fetch account", x);
             }
         });
     }
 
+    /**
+     * Execute fetch command looking up single identity column, so that the lookup uses single index.
+     * Account is looked up by uuid first, and by name when uuid is unknown or no account has the uuid.
+     *
+     * @param command  Command, formatted with table prefix and identity column.
+     * @param identity Identity of account.
+     * @param reader   Reader of result, returning null if account was not found.
+     * @return Nullable result of reader.
+     * @throws SQLException When exception occurs.
+     */
+    private <T> @Nullable T fetchByIdentity(final String command,
+                                            final Account.Identity identity,
+                                            final ResultReader<T> reader) throws SQLException {
+        try (final var connection = this.dataSource.getConnection()) {
+            if (identity.uuid() != null) {
+                try (final var statement = connection.prepareStatement(
+                        String.format(command, tablePrefix, "identity_uuid"))) {
+                    statement.setString(1, identity.uuid().toString());
+                    try (final var result = statement.executeQuery()) {
+                        final var value = reader.read(result);
+                        if (value != null)
+                            return value;
+                    }
+                }
+            }
+            if (identity.name() != null) {
+                try (final var statement = connection.prepareStatement(
+                        String.format(command, tablePrefix, "identity_name"))) {
+                    statement.setString(1, identity.name());
+                    try (final var result = statement.executeQuery()) {
+                        return reader.read(result);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<Standing>> fetchWealthyAccounts(@NonNull Currency currency) {
+        return fetchStandings(currency, null, CrownedBank.getConfig().wealthCheckAccountLimit());
+    }
+
+    /**
+     * Standings are paged by seeking past cursor on index of currency, balance and uuid, so that deep pages
+     * cost as much as first one. Json layout has no such index, and scans its table.
+     */
     @Override
-    public CompletableFuture<List<Account>> fetchWealthyAccounts(@NonNull Currency currency) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<List<Standing>> fetchStandings(@NonNull Currency currency,
+                                                            @Nullable Standing after,
+                                                            int limit) {
+        if (after != null && after.identity().uuid() == null)
+            return CompletableFuture.failedFuture(new IllegalStateException("Cursor has no uuid"));
+
+        final var normalized = this.layout == Layout.NORMALIZED;
+        final var seek = after == null
+                ? ""
+                : String.format(seekCondition, normalized ? "`balance`" : "worth");
+        final var command = normalized
+                ? String.format(balanceFetchWealthyCommand, tablePrefix, seek)
+                : String.format(fetchWealthyCommand, tablePrefix, currency.identifier(), seek);
+
+        return this.bulkhead.supply(() -> {
             try (final var connection = this.dataSource.getConnection();
-                 final var statement = connection.createStatement();
-                 final var result = statement.executeQuery(
-                         String.format(fetchWealthyCommand,
-                                 tablePrefix,
-                                 currency.identifier(),
-                                 CrownedBank.getConfig().wealthCheckAccountLimit()
-                         ))) {
-                final var list = new ArrayList<Account>();
-                if(result.getFetchSize() == 0)
-                    return list;
-
-                do {
-                    final var account = CrownedBank.GSON
-                            .fromJson(result.getString("json_data"), Account.class);
-                    list.add(account);
-                } while (result.next());
-
-                return list;
+                 final var statement = connection.prepareStatement(command)) {
+                int parameter = 1;
+                if (normalized)
+                    statement.setString(parameter++, currency.identifier());
+                if (after != null) {
+                    statement.setBigDecimal(parameter++, decimal(after.amount()));
+                    statement.setBigDecimal(parameter++, decimal(after.amount()));
+                    statement.setString(parameter++, after.identity().uuid().toString());
+                }
+                statement.setInt(parameter, limit);
+
+                // only the amount is read, json data is not decoded
+                try (final var result = statement.executeQuery()) {
+                    return readStandings(result, normalized ? "balance" : "worth",
+                            after != null ? after.rank() : 0);
+                }
             } catch (Exception x) {
                 throw new IllegalStateException("Couldn't fetch wealthy accounts", x);
             }
         });
     }
 
+    /**
+     * Rank is counted on index of currency, balance and uuid. Json layout has no such index, and scans its table.
+     */
+    @Override
+    public CompletableFuture<@Nullable Standing> fetchStanding(@NonNull Currency currency,
+                                                               @NonNull Account.Identity identity) {
+        final var normalized = this.layout == Layout.NORMALIZED;
+        final var column = identity.uuid() != null ? "identity_uuid" : "identity_name";
+        final var command = normalized
+                ? String.format(balanceFetchRankCommand, tablePrefix, column)
+                : String.format(fetchRankCommand, tablePrefix, column, currency.identifier());
+
+        return this.bulkhead.supply(() -> {
+            try (final var connection = this.dataSource.getConnection();
+                 final var statement = connection.prepareStatement(command)) {
+                statement.setString(1, identity.uuid() != null ? identity.uuid().toString() : identity.name());
+                if (normalized)
+                    statement.setString(2, currency.identifier());
+
+                try (final var result = statement.executeQuery()) {
+                    if (!result.next())
+                        return null;
+                    return new Standing(
+                            new Account.Identity(
+                                    UUID.fromString(result.getString("identity_uuid")),
+                                    result.getString("identity_name")),
+                            result.getBigDecimal(normalized ? "balance" : "worth").floatValue(),
+                            result.getInt("rank"));
+                }
+            } catch (Exception x) {
+                throw new IllegalStateException("Couldn't fetch standing", x);
+            }
+        });
+    }
+
+    /**
+     * Read standings, ranked in order of rows.
+     *
+     * @param result       Result of wealthy accounts query.
+     * @param amountColumn Column of amount.
+     * @param rank         Rank of cursor, after which rows are ranked.
+     * @return List of standings.
+     */
+    private static List<Standing> readStandings(final ResultSet result,
+                                                final String amountColumn,
+                                                final int rank) throws SQLException {
+        final var list = new ArrayList<Standing>();
+        while (result.next()) {
+            list.add(new Standing(
+                    new Account.Identity(
+                            UUID.fromString(result.getString("identity_uuid")),
+                            result.getString("identity_name")),
+                    result.getBigDecimal(amountColumn).floatValue(),
+                    rank + list.size() + 1));
+        }
+        return list;
+    }
+
     @Override
     public CompletableFuture<Boolean> handleWithdraw(final Account account,
                                                      final Currency.Storage currencyStorage,
                                                      final float amount) {
-        return CompletableFuture.supplyAsync(() -> {
+        if (this.atomicTransactions)
+            return handleDelta(true, account, currencyStorage, amount);
+
+        return this.bulkhead.supply(() -> {
             try {
                if(currencyStorage.withdraw(amount)) {
                    storeAccount(account);
@@ -222,7 +764,10 @@ public class SqlRemote
 
     @Override
     public CompletableFuture<Boolean> handleDeposit(Account account, Currency.Storage currencyStorage, float amount) {
-        return CompletableFuture.supplyAsync(() -> {
+        if (this.atomicTransactions)
+            return handleDelta(false, account, currencyStorage, amount);
+
+        return this.bulkhead.supply(() -> {
             try {
                 if(currencyStorage.deposit(amount)) {
                     storeAccount(account);
@@ -234,4 +779,214 @@ public class SqlRemote
             }
         });
     }
+
+    @Override
+    public CompletableFuture<Boolean> handleTransfer(final Account sender,
+                                                     final Currency.Storage senderStorage,
+                                                     final Account receiver,
+                                                     final Currency.Storage receiverStorage,
+                                                     final float amount) {
+        if (this.atomicTransactions)
+            return handleAtomicTransfer(sender, senderStorage, receiver, receiverStorage, amount);
+
+        return this.bulkhead.supply(() -> {
+            if (!senderStorage.withdraw(amount))
+                return false;
+            if (!receiverStorage.deposit(amount)) {
+                // refund sender
+                senderStorage.deposit(amount);
+                return false;
+            }
+
+            if (this.writeBehind && this.flushScheduler != null) {
+                storeAccount(sender);
+                storeAccount(receiver);
+                return true;
+            }
+
+            // store both accounts in one transaction
+            try (final var connection = this.dataSource.getConnection();
+                 final var statement = prepareStore(connection)) {
+                connection.setAutoCommit(false);
+                try {
+                    batchStore(statement, sender);
+                    batchStore(statement, receiver);
+                    statement.executeBatch();
+                    connection.commit();
+                } catch (Exception x) {
+                    connection.rollback();
+                    throw x;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return true;
+            } catch (Exception x) {
+                // revert local state
+                receiverStorage.withdraw(amount);
+                senderStorage.deposit(amount);
+                throw new IllegalStateException("Couldn't transfer", x);
+            }
+        });
+    }
+
+    /**
+     * Execute transfer in a single database transaction. Rows are locked in order of identity,
+     * so that concurrent opposite transfers can not deadlock.
+     *
+     * @param sender          Sender account.
+     * @param senderStorage   Currency storage of sender.
+     * @param receiver        Receiver account.
+     * @param receiverStorage Currency storage of receiver.
+     * @param amount          Amount to transfer.
+     * @return Boolean true if transfer was successful.
+     */
+    private CompletableFuture<Boolean> handleAtomicTransfer(final Account sender,
+                                                            final Currency.Storage senderStorage,
+                                                            final Account receiver,
+                                                            final Currency.Storage receiverStorage,
+                                                            final float amount) {
+        return this.bulkhead.supply(() -> {
+            final var currency = senderStorage.getCurrency().identifier();
+            final var senderUuid = sender.getIdentity().uuid().toString();
+            final var receiverUuid = receiver.getIdentity().uuid().toString();
+            final var value = decimal(amount);
+
+            try (final var connection = this.dataSource.getConnection();
+                 final var lock = connection.prepareStatement(String.format(balanceLockCommand, tablePrefix));
+                 final var update = connection.prepareStatement(String.format(balanceUpdateCommand, tablePrefix))) {
+                connection.setAutoCommit(false);
+                try {
+                    // lock rows in order
+                    final var balances = new HashMap<String, BigDecimal>();
+                    for (final var uuid : new TreeSet<>(List.of(senderUuid, receiverUuid))) {
+                        lock.setString(1, uuid);
+                        lock.setString(2, currency);
+                        try (final var result = lock.executeQuery()) {
+                            balances.put(uuid, result.next() ? result.getBigDecimal("balance") : BigDecimal.ZERO);
+                        }
+                    }
+
+                    final var senderBalance = balances.get(senderUuid);
+                    if (senderBalance.compareTo(value) < 0) {
+                        connection.rollback();
+                        senderStorage.change(senderBalance.floatValue());
+                        return false;
+                    }
+
+                    update.setString(1, sender.getIdentity().name());
+                    update.setString(2, senderUuid);
+                    update.setString(3, currency);
+                    update.setBigDecimal(4, value.negate());
+                    update.addBatch();
+                    update.setString(1, receiver.getIdentity().name());
+                    update.setString(2, receiverUuid);
+                    update.setString(3, currency);
+                    update.setBigDecimal(4, value);
+                    update.addBatch();
+                    update.executeBatch();
+                    connection.commit();
+
+                    // refresh local storages
+                    if (senderUuid.equals(receiverUuid)) {
+                        senderStorage.change(senderBalance.floatValue());
+                    } else {
+                        senderStorage.change(senderBalance.subtract(value).floatValue());
+                        receiverStorage.change(balances.get(receiverUuid).add(value).floatValue());
+                    }
+                    return true;
+                } catch (Exception x) {
+                    connection.rollback();
+                    throw x;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (Exception x) {
+                throw new IllegalStateException("Couldn't execute transfer", x);
+            }
+        });
+    }
+
+    /**
+     * Execute conditional delta statement, and refresh currency storage with the resulting balance.
+     * The affected row count decides whether the transaction was successful.
+     *
+     * @param withdraw        Boolean true to execute {@link #balanceWithdrawCommand}, false to execute {@link #balanceDepositCommand}.
+     * @param account         Account.
+     * @param currencyStorage Currency storage.
+     * @param amount          Amount.
+     * @return Boolean true if transaction was successful.
+     */
+    private CompletableFuture<Boolean> handleDelta(final boolean withdraw,
+                                                   final Account account,
+                                                   final Currency.Storage currencyStorage,
+                                                   final float amount) {
+        return this.bulkhead.supply(() -> {
+            final var identity = account.getIdentity();
+            final var currency = currencyStorage.getCurrency().identifier();
+            final var value = decimal(amount);
+            final var command = withdraw ? balanceWithdrawCommand : balanceDepositCommand;
+
+            try (final var connection = this.dataSource.getConnection();
+                 final var statement = connection.prepareStatement(String.format(command, tablePrefix))) {
+                if (withdraw) {
+                    statement.setBigDecimal(1, value);
+                    statement.setString(2, identity.uuid().toString());
+                    statement.setString(3, currency);
+                    statement.setBigDecimal(4, value);
+                } else {
+                    statement.setString(1, identity.name());
+                    statement.setString(2, identity.uuid().toString());
+                    statement.setString(3, currency);
+                    statement.setBigDecimal(4, value);
+                }
+                statement.setString(5, identity.uuid().toString());
+                statement.setString(6, currency);
+
+                statement.execute();
+                final var result = statement.getUpdateCount() > 0;
+
+                // refresh local storage from database
+                if (statement.getMoreResults()) {
+                    try (final var balance = statement.getResultSet()) {
+                        currencyStorage.change(balance.next()
+                                ? balance.getBigDecimal("balance").floatValue()
+                                : 0);
+                    }
+                }
+                return result;
+            } catch (Exception x) {
+                throw new IllegalStateException("Couldn't execute delta transaction", x);
+            }
+        });
+    }
+
+    /**
+     * @param value Value.
+     * @return Decimal of value, without binary floating point artifacts.
+     */
+    private static BigDecimal decimal(float value) {
+        return new BigDecimal(Float.toString(value));
+    }
+
+    /**
+     * Storage layout of account data.
+     */
+    public enum Layout {
+        /**
+         * One row per account, with all currencies in a json document.
+         */
+        JSON,
+        /**
+         * One row per account and currency, with an indexed numeric balance.
+         */
+        NORMALIZED
+    }
+
+    /**
+     * Reader of fetch result.
+     */
+    @FunctionalInterface
+    private interface ResultReader<T> {
+        @Nullable T read(ResultSet result) throws SQLException;
+    }
 }
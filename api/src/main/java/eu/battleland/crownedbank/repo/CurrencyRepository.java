@@ -4,21 +4,40 @@ import com.google.common.collect.ImmutableSet;
 import eu.battleland.crownedbank.abstracted.Repository;
 import eu.battleland.crownedbank.model.Currency;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Currency repository.
  */
 public class CurrencyRepository
     extends Repository<String, Currency> {
 
+    private final Map<String, Integer> indices
+            = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex
+            = new AtomicInteger();
+
     /**
-     * Register currency.
+     * Register currency, and assign it a dense index of this repository.
      * @param entry Currency.
      */
     @Override
     public void register(Currency entry) {
+        entry.assignIndex(this.index(entry));
         super.register(entry);
     }
 
+    /**
+     * Dense index of currency. Index is kept for currency identifier, even when currency is registered again.
+     * @param currency Currency.
+     * @return Index.
+     */
+    public int index(Currency currency) {
+        return this.indices.computeIfAbsent(currency.identifier(), (id) -> this.nextIndex.getAndIncrement());
+    }
+
     /**
      * Retrieve currency.
      * @param id Identifier.
@@ -0,0 +1,275 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.helper.TransactionHandler;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class AccountStorageTests {
+
+    private static CrownedBank.Config previousConfig;
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        }.initialize();
+
+        previousConfig = CrownedBank.getConfig();
+        CrownedBank.setConfig(previousConfig.toBuilder()
+                .accountCacheSize(100)
+                .build());
+    }
+
+    @AfterAll
+    public static void terminate() {
+        CrownedBank.setConfig(previousConfig);
+    }
+
+    private static Account account(final String name) {
+        return Account.builder()
+                .identity(new Account.Identity(UUID.randomUUID(), name))
+                .build();
+    }
+
+    @Test
+    public void testBounded() {
+        final var storage = new CrownedBankAPI.AccountStorage();
+        for (int i = 0; i < 1000; i++) {
+            final var account = account("account" + i);
+            storage.lock(account.getIdentity());
+            storage.put(account);
+        }
+        Assertions.assertTrue(storage.size() <= 100);
+    }
+
+    @Test
+    public void testRenamed() {
+        final var storage = new CrownedBankAPI.AccountStorage();
+        final var account = account("old");
+        final var uuid = account.getIdentity().uuid();
+        storage.put(account);
+
+        Assertions.assertSame(account, storage.get(new Account.Identity(null, "OLD")));
+        Assertions.assertSame(account, storage.get(new Account.Identity(uuid, "new")));
+        Assertions.assertEquals("new", account.getIdentity().name());
+
+        Assertions.assertEquals(1, storage.size());
+        Assertions.assertSame(account, storage.get(new Account.Identity(null, "new")));
+        Assertions.assertNull(storage.get(new Account.Identity(null, "old")));
+    }
+
+    @Test
+    public void testPinned() throws InterruptedException {
+        final var storage = new CrownedBankAPI.AccountStorage();
+        final var pinned = account("pinned");
+        storage.pin(pinned.getIdentity());
+        storage.put(pinned);
+
+        for (int i = 0; i < 1000; i++)
+            storage.put(account("account" + i));
+        Assertions.assertSame(pinned, storage.get(pinned.getIdentity()));
+
+        // unpinned account is tracked again, and evicted once idle
+        storage.unpin(pinned.getIdentity());
+        CrownedBank.setConfig(CrownedBank.getConfig().toBuilder()
+                .accountCacheIdleMillis(1)
+                .build());
+        try {
+            Thread.sleep(10);
+            storage.cleanUp();
+        } finally {
+            CrownedBank.setConfig(previousConfig.toBuilder()
+                    .accountCacheSize(100)
+                    .build());
+        }
+        Assertions.assertNull(storage.peek(pinned.getIdentity()));
+    }
+
+    @Test
+    public void testFrequencyKeptOnReload() {
+        final var storage = new CrownedBankAPI.AccountStorage();
+        final var popular = account("popular");
+        storage.put(popular);
+        for (int i = 0; i < 20; i++)
+            storage.get(popular.getIdentity());
+
+        // account is loaded again, as a new instance of the same identity
+        final var reloaded = Account.builder()
+                .identity(popular.getIdentity())
+                .build();
+        storage.put(reloaded);
+
+        for (int i = 0; i < 1000; i++)
+            storage.put(account("account" + i));
+        Assertions.assertSame(reloaded, storage.get(popular.getIdentity()));
+    }
+
+    @Test
+    public void testDirtyFlushed() {
+        final var remote = new TestRemote("test", 0);
+        final var currency = Currency.builder()
+                .identifier("flushed")
+                .format("%.2f")
+                .remote(remote)
+                .build();
+
+        final var storage = new CrownedBankAPI.AccountStorage();
+        final var dirty = account("dirty");
+        dirty.getData().storageOrCreate(currency).change(10);
+        dirty.setDirty(true);
+        storage.put(dirty);
+
+        for (int i = 0; i < 1000; i++)
+            storage.put(account("account" + i));
+
+        Assertions.assertEquals(1, remote.getStored().get());
+        Assertions.assertFalse(dirty.isDirty());
+        Assertions.assertNull(storage.get(dirty.getIdentity()));
+    }
+
+    @Test
+    public void testFailedFlushRetried() throws InterruptedException {
+        final var remote = new FailingRemote();
+        final var currency = Currency.builder()
+                .identifier("retried")
+                .format("%.2f")
+                .remote(remote)
+                .build();
+
+        final var storage = new CrownedBankAPI.AccountStorage();
+        final var dirty = account("retried");
+        dirty.getData().storageOrCreate(currency).change(10);
+        dirty.setDirty(true);
+        storage.put(dirty);
+
+        // remote is down, account is kept out of policy instead of being evicted again
+        remote.failing = true;
+        for (int i = 0; i < 1000; i++)
+            storage.put(account("account" + i));
+        Assertions.assertEquals(1, remote.attempts.get());
+        Assertions.assertSame(dirty, storage.peek(dirty.getIdentity()));
+        Assertions.assertTrue(dirty.isDirty());
+
+        for (int i = 0; i < 1000; i++)
+            storage.put(account("other" + i));
+        Assertions.assertTrue(remote.attempts.get() <= 2);
+
+        // stored by retry once remote is back
+        remote.failing = false;
+        final var deadline = System.currentTimeMillis() + 5000;
+        while (storage.peek(dirty.getIdentity()) != null && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        Assertions.assertNull(storage.peek(dirty.getIdentity()));
+        Assertions.assertEquals(1, remote.getStored().get());
+        Assertions.assertFalse(dirty.isDirty());
+    }
+
+    @Test
+    public void testAtomicNotOverwritten() {
+        final var remote = new AtomicRemote();
+        final var currency = Currency.builder()
+                .identifier("atomic")
+                .format("%.2f")
+                .remote(remote)
+                .build();
+        final var identity = new Account.Identity(UUID.randomUUID(), "atomic");
+        remote.balances.put(identity.uuid(), 100f);
+
+        // this server withdraws atomically
+        final var storage = new CrownedBankAPI.AccountStorage();
+        final var cached = Account.builder()
+                .identity(identity)
+                .withdrawHandler(TransactionHandler.remoteWithdrawRelay(remote))
+                .build();
+        cached.getData().storageOrCreate(currency).change(100);
+        storage.put(cached);
+        Assertions.assertTrue(cached.withdraw(currency, 10).join());
+        Assertions.assertFalse(cached.isDirty());
+
+        // another server withdraws atomically, cached account is now stale
+        final var other = Account.builder().identity(identity).build();
+        Assertions.assertTrue(remote.handleWithdraw(other, other.getData().storageOrCreate(currency), 30).join());
+
+        for (int i = 0; i < 1000; i++)
+            storage.put(account("account" + i));
+        Assertions.assertNull(storage.get(identity));
+
+        Assertions.assertEquals(0, remote.getStored().get());
+        Assertions.assertEquals(60f, remote.balances.get(identity.uuid()));
+    }
+
+    /**
+     * Remote failing to store accounts, while it is down.
+     */
+    private static class FailingRemote extends TestRemote {
+
+        private final AtomicInteger attempts = new AtomicInteger();
+        private volatile boolean failing;
+
+        private FailingRemote() {
+            super("failing", 0);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> storeAccount(Account account) {
+            this.attempts.incrementAndGet();
+            if (this.failing)
+                return CompletableFuture.failedFuture(new IllegalStateException("Remote is down"));
+            return super.storeAccount(account);
+        }
+    }
+
+    /**
+     * Remote executing transactions in its storage, and overwriting balances by stored accounts.
+     */
+    private static class AtomicRemote extends TestRemote {
+
+        private final Map<UUID, Float> balances = new ConcurrentHashMap<>();
+
+        private AtomicRemote() {
+            super("atomic", 0);
+        }
+
+        @Override
+        public boolean persistsTransactions() {
+            return true;
+        }
+
+        @Override
+        public CompletableFuture<Boolean> storeAccount(Account account) {
+            account.getData().storages().forEach(storage ->
+                    this.balances.put(account.getIdentity().uuid(), storage.amount()));
+            return super.storeAccount(account);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> handleWithdraw(Account account, Currency.Storage currencyStorage, float amount) {
+            final var balance = this.balances.merge(account.getIdentity().uuid(), -amount, Float::sum);
+            currencyStorage.change(balance);
+            return CompletableFuture.completedFuture(true);
+        }
+    }
+}
@@ -1,26 +1,41 @@
 package eu.battleland.crownedbank.tests;
 
+import eu.battleland.crownedbank.CrownedBank;
 import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.helper.ExecutorProvider;
 import eu.battleland.crownedbank.helper.Pair;
+import eu.battleland.crownedbank.helper.TransactionHandler;
 import eu.battleland.crownedbank.i18n.TranslationRegistry;
 import eu.battleland.crownedbank.model.Account;
 import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.repo.CurrencyRepository;
+import lombok.NonNull;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 
 public class AccountTests {
 
-    @Test
-    public void testThreadSafety() throws ExecutionException, InterruptedException {
+    private static CrownedBankAPI.Base api;
 
+    @BeforeAll
+    public static void initialize() {
         final var logger = Logger.getLogger("test");
-        new CrownedBankAPI.Base() {
+        api = new CrownedBankAPI.Base() {
             @Override
             protected Logger provideLogger() {
                 return logger;
@@ -30,8 +45,12 @@ public class AccountTests {
             public TranslationRegistry<?> translationRegistry() {
                 return null;
             }
-        }.initialize();
+        };
+        api.initialize();
+    }
 
+    @Test
+    public void testThreadSafety() throws ExecutionException, InterruptedException {
         final var identity = new Account.Identity(UUID.randomUUID(), "name");
 
         final Account account = Account.builder()
@@ -61,4 +80,211 @@ public class AccountTests {
         Assertions.assertEquals(5, accepted.get());
     }
 
+    @Test
+    public void testFixedPoint() {
+        final var currency = Currency.builder()
+                .identifier("cookies")
+                .format("%.2f")
+                .build();
+        final var storage = currency.newStorage();
+
+        for (int i = 0; i < 10; i++)
+            storage.deposit(0.1f);
+        Assertions.assertEquals(100, storage.minorAmount());
+        Assertions.assertEquals(1f, storage.amount());
+
+        Assertions.assertFalse(storage.withdraw(1.01f));
+        Assertions.assertTrue(storage.withdraw(1f));
+        Assertions.assertEquals(0, storage.minorAmount());
+    }
+
+    @Test
+    public void testCurrencyIndex() {
+        final var repository = new CurrencyRepository();
+        final var first = Currency.builder().identifier("first").format("%.2f").build();
+        final var second = Currency.builder().identifier("second").format("%.2f").build();
+        repository.register(first);
+        repository.register(second);
+        Assertions.assertEquals(0, first.index());
+        Assertions.assertEquals(1, second.index());
+
+        // registered again, index is kept for identifier
+        final var replaced = Currency.builder().identifier("first").format("%.2f").build();
+        repository.register(replaced);
+        Assertions.assertEquals(0, replaced.index());
+    }
+
+    @Test
+    public void testCurrencyContention() throws Exception {
+        final var coins = Currency.builder()
+                .identifier("coins")
+                .format("%.2f")
+                .build();
+        final var gems = Currency.builder()
+                .identifier("gems")
+                .format("%.2f")
+                .build();
+
+        // gems are handled by remote, which does not answer until released
+        final var release = new CountDownLatch(1);
+        final Account account = Account.builder()
+                .identity(new Account.Identity(UUID.randomUUID(), "contention"))
+                .withdrawHandler((storage, amount, accountRef) -> {
+                    if (storage.getCurrency().equals(gems)) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                    return storage.withdraw(amount);
+                })
+                .depositHandler((storage, amount, accountRef) -> storage.deposit(amount))
+                .build();
+        account.deposit(gems, 1).get();
+
+        final var gemsWithdraw = account.withdraw(gems, 1);
+        for (int i = 0; i < 100; i++)
+            Assertions.assertTrue(account.deposit(coins, 1).get(5, TimeUnit.SECONDS));
+
+        Assertions.assertFalse(gemsWithdraw.isDone());
+        Assertions.assertEquals(100, account.status(coins));
+        release.countDown();
+        Assertions.assertTrue(gemsWithdraw.get());
+    }
+
+    @Test
+    public void testParallelRetrieve() throws ExecutionException, InterruptedException {
+        // each remote answers only once both were asked
+        final var asked = new CountDownLatch(2);
+        final var first = new RendezvousRemote("first", asked);
+        final var second = new RendezvousRemote("second", asked);
+        api.currencyRepository().register(Currency.builder()
+                .identifier("first")
+                .format("%.2f")
+                .remote(first)
+                .build());
+
+        final var grouping = api.currenciesByRemotes();
+        Assertions.assertSame(grouping, api.currenciesByRemotes());
+
+        api.currencyRepository().register(Currency.builder()
+                .identifier("second")
+                .format("%.2f")
+                .remote(second)
+                .build());
+        Assertions.assertNotSame(grouping, api.currenciesByRemotes());
+        Assertions.assertEquals(2, api.currenciesByRemotes().size());
+
+        final var account = api.retrieveAccount(new Account.Identity(UUID.randomUUID(), "parallel")).get();
+
+        Assertions.assertNotNull(account);
+        Assertions.assertEquals(1, first.getFetched().get());
+        Assertions.assertEquals(1, second.getFetched().get());
+        Assertions.assertSame(account, api.retrieveAccount(account.getIdentity()).get());
+    }
+
+    /**
+     * Remote answering fetches only once all remotes sharing the latch were asked.
+     */
+    private static class RendezvousRemote extends TestRemote {
+        private final CountDownLatch asked;
+
+        private RendezvousRemote(String identifier, CountDownLatch asked) {
+            super(identifier, 0);
+            this.asked = asked;
+        }
+
+        @Override
+        public CompletableFuture<Account.Data> fetchAccount(@NonNull Account.Identity identity) {
+            getFetched().incrementAndGet();
+            this.asked.countDown();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    if (!this.asked.await(5, TimeUnit.SECONDS))
+                        throw new IllegalStateException("Remotes were not asked concurrently");
+                } catch (InterruptedException x) {
+                    throw new IllegalStateException(x);
+                }
+                return Account.Data.empty();
+            });
+        }
+    }
+
+    @Test
+    public void testNonBlockingRelay() {
+        final var remote = new PendingRemote();
+        final var currency = Currency.builder()
+                .identifier("relayed")
+                .format("%.2f")
+                .remote(remote)
+                .build();
+
+        final var account = Account.builder()
+                .identity(new Account.Identity(UUID.randomUUID(), "relay"))
+                .withdrawHandler(TransactionHandler.remoteWithdrawRelay(null))
+                .depositHandler(TransactionHandler.remoteDepositRelay(null))
+                .build();
+
+        // far more in-flight transactions, than there are pool threads, none answered yet
+        final var deposits = new ArrayList<CompletableFuture<Boolean>>();
+        for (int i = 0; i < 256; i++)
+            deposits.add(account.deposit(currency, 1));
+        Assertions.assertEquals(256, remote.pending.size());
+        Assertions.assertTrue(deposits.stream().noneMatch(CompletableFuture::isDone));
+
+        remote.pending.forEach(Runnable::run);
+        CompletableFuture.allOf(deposits.toArray(CompletableFuture[]::new)).join();
+        Assertions.assertTrue(deposits.stream().allMatch(CompletableFuture::join));
+        Assertions.assertEquals(256, account.status(currency));
+    }
+
+    /**
+     * Remote answering deposits only once they are run.
+     */
+    private static class PendingRemote extends TestRemote {
+        private final List<Runnable> pending = new CopyOnWriteArrayList<>();
+
+        private PendingRemote() {
+            super("relay", 0);
+        }
+
+        @Override
+        public CompletableFuture<Boolean> handleDeposit(Account account, Currency.Storage currencyStorage, float amount) {
+            final var future = new CompletableFuture<Boolean>();
+            this.pending.add(() -> future.complete(currencyStorage.deposit(amount)));
+            return future;
+        }
+    }
+
+    @Test
+    public void testExecutor() throws ExecutionException, InterruptedException {
+        final var currency = Currency.builder()
+                .identifier("executed")
+                .format("%.2f")
+                .build();
+        final var thread = new AtomicReference<Thread>();
+        final var account = Account.builder()
+                .identity(new Account.Identity(UUID.randomUUID(), "executor"))
+                .depositHandler((storage, amount, accountRef) -> {
+                    thread.set(Thread.currentThread());
+                    return storage.deposit(amount);
+                })
+                .build();
+
+        account.deposit(currency, 1).get();
+        Assertions.assertFalse(thread.get() instanceof ForkJoinWorkerThread);
+
+        final var previousConfig = CrownedBank.getConfig();
+        try {
+            CrownedBank.setConfig(previousConfig.toBuilder()
+                    .executorMode(ExecutorProvider.Mode.PLATFORM)
+                    .executorThreads(2)
+                    .build());
+            account.deposit(currency, 1).get();
+            Assertions.assertTrue(thread.get().getName().startsWith("CrownedBank Worker"));
+        } finally {
+            CrownedBank.setConfig(previousConfig);
+        }
+    }
+
 }
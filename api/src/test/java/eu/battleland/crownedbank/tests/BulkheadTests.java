@@ -0,0 +1,108 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.helper.Bulkhead;
+import eu.battleland.crownedbank.helper.TransactionHandler;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+public class BulkheadTests {
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        }.initialize();
+    }
+
+    @Test
+    public void testRejection() throws InterruptedException {
+        final var bulkhead = new Bulkhead("test", 2, 2);
+        final var release = new CountDownLatch(1);
+        final var started = new CountDownLatch(2);
+
+        final var tasks = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 4; i++) {
+            final var value = i;
+            tasks.add(bulkhead.supply(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+                return value;
+            }));
+        }
+        started.await();
+
+        final var rejected = bulkhead.supply(() -> -1);
+        final var x = Assertions.assertThrows(CompletionException.class, rejected::join);
+        Assertions.assertInstanceOf(Bulkhead.RejectedException.class, x.getCause());
+
+        var stats = bulkhead.stats();
+        Assertions.assertEquals(2, stats.active());
+        Assertions.assertEquals(2, stats.queued());
+        Assertions.assertEquals(1, stats.rejected());
+
+        release.countDown();
+        for (int i = 0; i < 4; i++)
+            Assertions.assertEquals(i, tasks.get(i).join());
+
+        // tasks complete their futures before releasing their slot
+        final var deadline = System.currentTimeMillis() + 1000;
+        while (bulkhead.stats().active() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+
+        stats = bulkhead.stats();
+        Assertions.assertEquals(0, stats.active());
+        Assertions.assertEquals(4, stats.completed());
+        Assertions.assertEquals(0, stats.queued());
+        bulkhead.terminate();
+    }
+
+    @Test
+    public void testRejectedTransaction() {
+        final var remote = new TestRemote("rejecting", 0) {
+            @Override
+            public CompletableFuture<Boolean> handleWithdraw(Account account, Currency.Storage currencyStorage, float amount) {
+                return CompletableFuture.failedFuture(new Bulkhead.RejectedException("rejecting"));
+            }
+        };
+        final var currency = Currency.builder()
+                .identifier("bulkhead_coins")
+                .format("%.2f")
+                .build();
+        final var account = Account.builder()
+                .identity(new Account.Identity(UUID.randomUUID(), "rejected"))
+                .withdrawHandler(new TransactionHandler.RemoteWithdrawTransactionRelay(remote))
+                .depositHandler(new TransactionHandler.RemoteDepositTransactionRelay(remote))
+                .build();
+        Assertions.assertTrue(account.deposit(currency, 10).join());
+
+        // rejection is not reported as declined withdraw
+        final var x = Assertions.assertThrows(CompletionException.class, () -> account.withdraw(currency, 5).join());
+        Assertions.assertInstanceOf(Bulkhead.RejectedException.class, x.getCause());
+        Assertions.assertTrue(Bulkhead.isRejection(x));
+        Assertions.assertEquals(10, account.getData().storage(currency).amount());
+    }
+}
@@ -1,6 +1,6 @@
 package eu.battleland.crownedbank.tests;
 
-import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.helper.IdentityIndex;
 import eu.battleland.crownedbank.model.Account;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -15,12 +15,26 @@ public class CommonTest {
             final var identity0 = new Account.Identity(UUID.randomUUID(), "name");
             final var identity1 = new Account.Identity(identity0.uuid(), "name2");
             Assertions.assertEquals(identity0, identity1);
+            Assertions.assertEquals(identity0.hashCode(), identity1.hashCode());
         }
         {
-            CrownedBank.setIdentityNameMajor(true);
             final var identity0 = new Account.Identity(UUID.randomUUID(), "name");
             final var identity1 = new Account.Identity(UUID.randomUUID(), "name");
-            Assertions.assertEquals(identity0, identity1);
+            Assertions.assertNotEquals(identity0, identity1);
+
+            // name-major lookup goes through index
+            final var nameMajor = new IdentityIndex<String>(true);
+            nameMajor.put(identity0, "value");
+            Assertions.assertEquals("value", nameMajor.get(identity1));
+
+            final var uuidMajor = new IdentityIndex<String>(false);
+            uuidMajor.put(identity0, "value");
+            Assertions.assertNull(uuidMajor.get(identity1));
+        }
+        {
+            final var identity = new Account.Identity(UUID.randomUUID(), null);
+            Assertions.assertEquals(identity.uuid().hashCode(), identity.hashCode());
+            Assertions.assertEquals(new Account.Identity(null, "name"), new Account.Identity(null, "name"));
         }
 
         {
@@ -0,0 +1,223 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Journal;
+import eu.battleland.crownedbank.model.LogBook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+public class JournalTests {
+
+    private static Currency currency;
+
+    private Path directory;
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        final var api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        api.initialize();
+
+        currency = Currency.builder().identifier("journal_coins").format("%.2f").build();
+        api.currencyRepository().register(currency);
+    }
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (final var files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSharedClosedOnTerminate() throws IOException {
+        final var previousConfig = CrownedBank.getConfig();
+        CrownedBank.setConfig(previousConfig.toBuilder()
+                .journalDirectory(this.directory.toString())
+                .build());
+        LogBook.closeShared();
+
+        final var logger = Logger.getLogger("test");
+        final var api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        try {
+            api.initialize();
+            final var logBook = LogBook.shared();
+            final var account = Account.builder()
+                    .identity(new Account.Identity(UUID.randomUUID(), "terminated"))
+                    .build();
+            api.executor().execute(() -> LogBook.logDeposit(account, currency, 5, LogBook.RecordResult.SUCCESS));
+
+            // records of queued tasks are journaled, and journal is closed
+            api.terminate();
+            Assertions.assertEquals(1, Journal.scan(this.directory, record -> {
+            }));
+            Assertions.assertNotSame(logBook, LogBook.shared());
+        } finally {
+            CrownedBank.setConfig(previousConfig);
+            LogBook.closeShared();
+        }
+    }
+
+    private static LogBook.Record deposit(final Account.Identity identity, final float amount) {
+        return new LogBook.Record(LogBook.Kind.DEPOSIT, System.currentTimeMillis(), identity, null,
+                currency.identifier(), amount, LogBook.RecordResult.SUCCESS, LogBook.RecordResult.NOT_EXECUTED);
+    }
+
+    @Test
+    public void testRecords() throws IOException {
+        final var sender = new Account.Identity(UUID.randomUUID(), "rZorks");
+        final var receiver = new Account.Identity(null, "Bob");
+        final var records = List.of(
+                new LogBook.Record(LogBook.Kind.WITHDRAW, 1000, sender, null,
+                        currency.identifier(), 1.5f, LogBook.RecordResult.FAILURE, LogBook.RecordResult.NOT_EXECUTED),
+                new LogBook.Record(LogBook.Kind.PAYMENT, 2000, sender, receiver,
+                        currency.identifier(), 12.5f, LogBook.RecordResult.SUCCESS, LogBook.RecordResult.ERROR),
+                new LogBook.Record(LogBook.Kind.DEPOSIT, 3000, new Account.Identity(UUID.randomUUID(), null), null,
+                        currency.identifier(), 7f, LogBook.RecordResult.SUCCESS, LogBook.RecordResult.NOT_EXECUTED));
+
+        try (final var journal = new Journal(this.directory, 1024 * 1024, 0)) {
+            for (final var record : records)
+                journal.append(record);
+        }
+
+        final var scanned = new ArrayList<LogBook.Record>();
+        Assertions.assertEquals(3, Journal.scan(this.directory, scanned::add));
+        Assertions.assertEquals(records, scanned);
+    }
+
+    @Test
+    public void testTruncation() throws IOException {
+        final var identity = new Account.Identity(null, "a".repeat(31) + "\u00e9");
+        try (final var journal = new Journal(this.directory, 1024 * 1024, 0)) {
+            journal.append(deposit(identity, 1));
+        }
+
+        final var scanned = new ArrayList<LogBook.Record>();
+        Journal.scan(this.directory, scanned::add);
+        // multi-byte character is not split
+        Assertions.assertEquals("a".repeat(31), scanned.get(0).account().name());
+    }
+
+    @Test
+    public void testRecovery() throws IOException {
+        final var identity = new Account.Identity(UUID.randomUUID(), "rZorks");
+        try (final var journal = new Journal(this.directory, 1024 * 1024, 0)) {
+            journal.append(deposit(identity, 1));
+            journal.append(deposit(identity, 2));
+        }
+        try (final var journal = new Journal(this.directory, 1024 * 1024, 0)) {
+            journal.append(deposit(identity, 3));
+        }
+
+        final var amounts = new ArrayList<Float>();
+        Journal.scan(this.directory, record -> amounts.add(record.amount()));
+        Assertions.assertEquals(List.of(1f, 2f, 3f), amounts);
+        Assertions.assertEquals(1, Journal.segments(this.directory).size());
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        final var identity = new Account.Identity(UUID.randomUUID(), "rZorks");
+        // header and three records per segment
+        try (final var journal = new Journal(this.directory, Journal.RECORD_SIZE * 4, 0)) {
+            for (int i = 0; i < 10; i++)
+                journal.append(deposit(identity, i));
+        }
+
+        Assertions.assertEquals(4, Journal.segments(this.directory).size());
+        final var amounts = new ArrayList<Float>();
+        Journal.scan(this.directory, record -> amounts.add(record.amount()));
+        for (int i = 0; i < 10; i++)
+            Assertions.assertEquals(i, amounts.get(i));
+    }
+
+    @Test
+    public void testRetention() throws IOException {
+        final var identity = new Account.Identity(UUID.randomUUID(), "rZorks");
+        try (final var journal = new Journal(this.directory, Journal.RECORD_SIZE * 4, 60_000)) {
+            for (int i = 0; i < 6; i++)
+                journal.append(deposit(identity, i));
+
+            // age first two segments
+            final var segments = Journal.segments(this.directory);
+            Assertions.assertEquals(2, segments.size());
+            for (final var segment : segments)
+                age(segment, System.currentTimeMillis() - 120_000);
+
+            journal.append(deposit(identity, 6));
+        }
+
+        // first segment was followed by expired segment
+        final var segments = Journal.segments(this.directory);
+        Assertions.assertEquals(2, segments.size());
+        final var amounts = new ArrayList<Float>();
+        Journal.scan(this.directory, record -> amounts.add(record.amount()));
+        Assertions.assertEquals(List.of(3f, 4f, 5f, 6f), amounts);
+    }
+
+    @Test
+    public void testLogBook() throws IOException {
+        final var identity = new Account.Identity(UUID.randomUUID(), "rZorks");
+        final var messages = new ArrayList<String>();
+        final var logBook = new LogBook(16, LogBook.Overflow.BLOCK, messages::add,
+                new Journal(this.directory, 1024 * 1024, 0));
+        for (int i = 0; i < 100; i++)
+            logBook.withdraw(identity, currency, i, LogBook.RecordResult.SUCCESS);
+        logBook.close();
+
+        final var scanned = new ArrayList<String>();
+        Assertions.assertEquals(100, Journal.scan(this.directory, record -> scanned.add(record.toString())));
+        Assertions.assertEquals(messages, scanned);
+    }
+
+    private static void age(final Path segment, final long created) throws IOException {
+        try (final var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final var header = channel.map(FileChannel.MapMode.READ_WRITE, 0, Journal.RECORD_SIZE);
+            header.putLong(8, created);
+            header.force();
+        }
+    }
+}
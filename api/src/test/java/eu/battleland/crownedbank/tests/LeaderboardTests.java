@@ -0,0 +1,205 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.helper.Leaderboard;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
+import lombok.NonNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class LeaderboardTests {
+
+    private static CrownedBankAPI.Base api;
+    private static Currency currency;
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        api.initialize();
+
+        currency = Currency.builder()
+                .identifier("ranked_coins")
+                .format("%.2f")
+                .remote(new TestRemote("ranked", 0))
+                .build();
+        api.currencyRepository().register(currency);
+    }
+
+    private static Standing standing(final String name, final float amount) {
+        return new Standing(identity(name), amount, 0);
+    }
+
+    private static List<String> names(final List<Standing> standings) {
+        final var names = new ArrayList<String>();
+        standings.forEach(standing -> names.add(standing.identity().name()));
+        return names;
+    }
+
+    private static Account.Identity identity(final String name) {
+        return new Account.Identity(UUID.nameUUIDFromBytes(name.getBytes()), name);
+    }
+
+    private static long minor(final float amount) {
+        return currency.newStorage().toMinor(amount);
+    }
+
+    @Test
+    public void testUpdates() {
+        final var leaderboard = new Leaderboard(currency, 3);
+        leaderboard.reconcile(() -> CompletableFuture.completedFuture(List.of(
+                standing("b", 20), standing("a", 30), standing("c", 10), standing("d", 5)))).join();
+        Assertions.assertEquals(List.of("a", "b", "c"), names(leaderboard.standings()));
+        Assertions.assertFalse(leaderboard.stale(System.currentTimeMillis(), 60_000));
+
+        // below full leaderboard
+        leaderboard.update(identity("e"), minor(7));
+        Assertions.assertEquals(List.of("a", "b", "c"), names(leaderboard.standings()));
+
+        // overtakes
+        leaderboard.update(identity("e"), minor(25));
+        Assertions.assertEquals(List.of("a", "e", "b"), names(leaderboard.standings()));
+        Assertions.assertEquals(25f, leaderboard.standings().get(1).amount());
+        Assertions.assertEquals(2, leaderboard.standings().get(1).rank());
+
+        // reorders
+        leaderboard.update(identity("a"), minor(21));
+        Assertions.assertEquals(List.of("e", "a", "b"), names(leaderboard.standings()));
+        Assertions.assertFalse(leaderboard.stale(System.currentTimeMillis(), 60_000));
+
+        // drops below accounts it does not know of
+        leaderboard.update(identity("e"), minor(1));
+        Assertions.assertEquals(List.of("a", "b", "e"), names(leaderboard.standings()));
+        Assertions.assertTrue(leaderboard.stale(System.currentTimeMillis(), 60_000));
+    }
+
+    @Test
+    public void testReconciliation() {
+        final var leaderboard = new Leaderboard(currency, 3);
+        final var fetch = new CompletableFuture<List<Standing>>();
+        final var reconciliation = leaderboard.reconcile(() -> fetch);
+        Assertions.assertSame(reconciliation, leaderboard.reconcile(() -> {
+            throw new IllegalStateException("Reconciled twice");
+        }));
+
+        // changed while remote is queried
+        leaderboard.update(identity("b"), minor(50));
+        fetch.complete(List.of(standing("a", 30), standing("b", 20)));
+        Assertions.assertEquals(List.of("b", "a"), names(reconciliation.join()));
+        Assertions.assertTrue(leaderboard.seeded());
+
+        // failed reconciliation does not block next one
+        final var failed = leaderboard.reconcile(() -> CompletableFuture.failedFuture(new IllegalStateException("Remote failed")));
+        Assertions.assertTrue(failed.isCompletedExceptionally());
+        Assertions.assertEquals(List.of("c", "b", "a"), names(leaderboard.reconcile(() -> CompletableFuture.completedFuture(List.of(
+                standing("a", 30), standing("b", 50), standing("c", 70)))).join()));
+    }
+
+    @Test
+    public void testPages() {
+        final var leaderboard = new Leaderboard(currency, 4);
+        leaderboard.reconcile(() -> CompletableFuture.completedFuture(List.of(
+                standing("a", 30), standing("b", 20), standing("c", 20), standing("d", 10)))).join();
+
+        // ties are ordered by identity, as remotes order them
+        final var standings = leaderboard.standings();
+        for (int i = 1; i < standings.size(); i++)
+            Assertions.assertTrue(standings.get(i).isAfter(standings.get(i - 1)));
+        Assertions.assertEquals(List.of(1, 2, 3, 4), standings.stream().map(Standing::rank).toList());
+
+        final var first = leaderboard.page(null, 2);
+        Assertions.assertNotNull(first);
+        Assertions.assertEquals(standings.subList(2, 4), leaderboard.page(first.get(1), 2));
+
+        // beyond full leaderboard, or unknown cursor
+        Assertions.assertNull(leaderboard.page(first.get(1), 3));
+        Assertions.assertNull(leaderboard.page(standing("e", 5), 1));
+        Assertions.assertEquals(standings.get(3), leaderboard.standing(identity("d")));
+        Assertions.assertNull(leaderboard.standing(identity("e")));
+    }
+
+    @Test
+    public void testStandings() {
+        final var fetches = new AtomicInteger();
+        final var all = new ArrayList<Standing>();
+        for (int i = 0; i < 50; i++)
+            all.add(new Standing(identity("s" + i), 1000 - i, i + 1));
+
+        final var shells = Currency.builder()
+                .identifier("ranked_shells")
+                .format("%.2f")
+                .remote(new TestRemote("ranked_shells", 0) {
+                    @Override
+                    public CompletableFuture<List<Standing>> fetchWealthyAccounts(@NonNull Currency currency) {
+                        fetches.incrementAndGet();
+                        return CompletableFuture.completedFuture(all);
+                    }
+                })
+                .build();
+        api.currencyRepository().register(shells);
+
+        // pages seek past their cursor
+        final var first = api.retrieveStandings(shells, null, 10).join();
+        Assertions.assertEquals(all.subList(0, 10), first);
+        final var second = api.retrieveStandings(shells, first.get(9), 10).join();
+        Assertions.assertEquals(all.subList(10, 20), second);
+        final var deep = api.retrieveStandings(shells, second.get(9), 10).join();
+        Assertions.assertEquals(all.subList(20, 30), deep);
+
+        // deep page is cached
+        final var fetched = fetches.get();
+        Assertions.assertEquals(deep, api.retrieveStandings(shells, second.get(9), 10).join());
+        Assertions.assertEquals(fetched, fetches.get());
+
+        Assertions.assertEquals(all.get(34), api.retrieveStanding(shells, identity("s34")).join());
+        Assertions.assertNull(api.retrieveStanding(shells, identity("nobody")).join());
+    }
+
+    @Test
+    public void testPerCurrency() {
+        final var fetches = new AtomicInteger();
+        final var gems = Currency.builder()
+                .identifier("ranked_gems")
+                .format("%.2f")
+                .remote(new TestRemote("ranked_gems", 0) {
+                    @Override
+                    public CompletableFuture<List<Standing>> fetchWealthyAccounts(@NonNull Currency currency) {
+                        fetches.incrementAndGet();
+                        return CompletableFuture.completedFuture(List.of(new Standing(identity("gem"), 3, 1)));
+                    }
+                })
+                .build();
+        api.currencyRepository().register(gems);
+
+        // coins do not hold back gems
+        Assertions.assertEquals(List.of(), api.retrieveWealthyAccounts(currency).join());
+        Assertions.assertEquals(List.of("gem"), names(api.retrieveWealthyAccounts(gems).join()));
+
+        // served from leaderboard, updated by transactions
+        final var account = api.account(identity("rich"));
+        api.balanceChanged(account, account.getData().storageOrCreate(gems).change(10));
+        Assertions.assertEquals(List.of("rich", "gem"), names(api.retrieveWealthyAccounts(gems).join()));
+        Assertions.assertEquals(1, fetches.get());
+    }
+}
@@ -0,0 +1,118 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.LogBook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+public class LogBookTests {
+
+    private static Currency currency;
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        final var api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        api.initialize();
+
+        currency = Currency.builder().identifier("logged_coins").format("%.2f").build();
+        api.currencyRepository().register(currency);
+    }
+
+    @Test
+    public void testConcurrentPublishing() throws InterruptedException {
+        final var logged = new AtomicInteger();
+        final var logBook = new LogBook(1024, LogBook.Overflow.BLOCK, message -> logged.incrementAndGet());
+
+        final var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final var identity = new Account.Identity(UUID.randomUUID(), "producer" + t);
+            final var thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++)
+                    logBook.deposit(identity, currency, i, LogBook.RecordResult.SUCCESS);
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (final var thread : threads)
+            thread.join();
+        logBook.flush();
+
+        final var stats = logBook.stats();
+        Assertions.assertEquals(80_000, stats.published());
+        Assertions.assertEquals(80_000, stats.consumed());
+        Assertions.assertEquals(0, stats.dropped());
+        Assertions.assertEquals(80_000, logged.get());
+        logBook.close();
+    }
+
+    @Test
+    public void testOverflow() throws InterruptedException {
+        final var consuming = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var logBook = new LogBook(4, LogBook.Overflow.DROP, message -> {
+            consuming.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        final var identity = new Account.Identity(UUID.randomUUID(), "rZorks");
+
+        // consumer is held by the first record
+        logBook.withdraw(identity, currency, 1, LogBook.RecordResult.SUCCESS);
+        consuming.await();
+        for (int i = 0; i < 10; i++)
+            logBook.withdraw(identity, currency, 1, LogBook.RecordResult.SUCCESS);
+
+        var stats = logBook.stats();
+        Assertions.assertEquals(5, stats.published());
+        Assertions.assertEquals(6, stats.dropped());
+
+        release.countDown();
+        logBook.close();
+        stats = logBook.stats();
+        Assertions.assertEquals(5, stats.consumed());
+
+        // closed log book drops records
+        Assertions.assertFalse(logBook.withdraw(identity, currency, 1, LogBook.RecordResult.SUCCESS));
+    }
+
+    @Test
+    public void testFormat() {
+        final List<String> messages = new ArrayList<>();
+        final var logBook = new LogBook(16, LogBook.Overflow.DROP, messages::add);
+        final var sender = new Account.Identity(UUID.randomUUID(), "rZorks");
+        final var receiver = new Account.Identity(null, "Bob");
+
+        logBook.payment(sender, receiver, currency, 12.5f, LogBook.RecordResult.SUCCESS, LogBook.RecordResult.FAILURE);
+        logBook.close();
+
+        Assertions.assertEquals(List.of(String.format("Payment from '%s' to '%s' of currency '%s' with value '%.2f'" +
+                        " was a %s from senders side, and %s from receivers side.",
+                sender, receiver, currency.identifier(), 12.5f,
+                LogBook.RecordResult.SUCCESS, LogBook.RecordResult.FAILURE)), messages);
+    }
+}
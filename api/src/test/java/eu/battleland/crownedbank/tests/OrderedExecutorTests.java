@@ -0,0 +1,119 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.helper.OrderedExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class OrderedExecutorTests {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void initialize() {
+        this.executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    public void terminate() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void testOrdering() {
+        final var ordered = new OrderedExecutor(this.executor, 1024, 4096);
+        final var order = Collections.synchronizedList(new ArrayList<Integer>());
+
+        final var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 200; i++) {
+            final var value = i;
+            // tasks complete asynchronously, later than they start
+            futures.add(ordered.submit("key", () -> CompletableFuture.supplyAsync(() -> {
+                order.add(value);
+                return value;
+            }, CompletableFuture.delayedExecutor(value % 3, TimeUnit.MILLISECONDS, this.executor))));
+        }
+        for (int i = 0; i < futures.size(); i++)
+            Assertions.assertEquals(i, futures.get(i).join());
+
+        for (int i = 0; i < order.size(); i++)
+            Assertions.assertEquals(i, order.get(i));
+
+        // lane is released after its last result completes
+        final var deadline = System.currentTimeMillis() + 1000;
+        while (ordered.stats().lanes() > 0 && System.currentTimeMillis() < deadline)
+            Thread.onSpinWait();
+        Assertions.assertEquals(0, ordered.stats().lanes());
+    }
+
+    @Test
+    public void testParallelism() {
+        final var ordered = new OrderedExecutor(this.executor, 16, 64);
+        final var blocked = new CompletableFuture<Void>();
+
+        // blocked key does not hold back other keys
+        final var first = ordered.submit("blocked", () -> blocked);
+        final var other = ordered.submit("other", () -> CompletableFuture.completedFuture(1));
+        final var unordered = ordered.submit(null, () -> CompletableFuture.completedFuture(2));
+        Assertions.assertEquals(1, other.join());
+        Assertions.assertEquals(2, unordered.join());
+        Assertions.assertFalse(first.isDone());
+
+        blocked.complete(null);
+        first.join();
+    }
+
+    @Test
+    public void testRejection() {
+        final var ordered = new OrderedExecutor(this.executor, 1, 2);
+        final var blocked = new CompletableFuture<Integer>();
+        final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+
+        futures.add(running(ordered, "a", () -> blocked));
+        futures.add(ordered.submit("a", () -> CompletableFuture.completedFuture(1)));
+
+        // lane is full
+        var x = Assertions.assertThrows(CompletionException.class,
+                ordered.submit("a", () -> CompletableFuture.completedFuture(-1))::join);
+        Assertions.assertInstanceOf(RejectedExecutionException.class, x.getCause());
+
+        futures.add(running(ordered, "b", () -> blocked));
+        futures.add(ordered.submit("b", () -> CompletableFuture.completedFuture(2)));
+
+        // executor is full
+        x = Assertions.assertThrows(CompletionException.class,
+                ordered.submit("c", () -> CompletableFuture.completedFuture(-1))::join);
+        Assertions.assertInstanceOf(RejectedExecutionException.class, x.getCause());
+        Assertions.assertEquals(2, ordered.stats().rejected());
+
+        blocked.complete(0);
+        Assertions.assertEquals(0, futures.get(0).join());
+        Assertions.assertEquals(1, futures.get(1).join());
+        Assertions.assertEquals(0, futures.get(2).join());
+        Assertions.assertEquals(2, futures.get(3).join());
+    }
+
+    /**
+     * Submit task and wait until it runs, so that it no longer waits in queue.
+     */
+    private static <T> CompletableFuture<T> running(final OrderedExecutor ordered, final Object key,
+                                                    final Supplier<CompletableFuture<T>> task) {
+        final var queued = ordered.stats().queued();
+        final var future = ordered.submit(key, task);
+        while (ordered.stats().queued() > queued)
+            Thread.onSpinWait();
+        return future;
+    }
+}
@@ -0,0 +1,198 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.proxy.ProxyBatcher;
+import eu.battleland.crownedbank.proxy.ProxyCodec;
+import eu.battleland.crownedbank.proxy.ProxyConstants;
+import eu.battleland.crownedbank.proxy.ProxyOperation;
+import eu.battleland.crownedbank.proxy.ProxyRequestHandler;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+public class ProxyBatchTests {
+
+    private static CrownedBankAPI.Base api;
+    private static Currency currency;
+    private static ProxyCodec.CurrencyTable table;
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        api.initialize();
+
+        currency = Currency.builder()
+                .identifier("batch_coins")
+                .format("%.2f")
+                .remote(new TestRemote("batch", 0))
+                .build();
+        api.currencyRepository().register(currency);
+        table = new ProxyRequestHandler(api).table();
+    }
+
+    /**
+     * Server and proxy connected in process. Counts messages sent by server.
+     */
+    private static final class Loopback {
+        private final ProxyRequestHandler handler = new ProxyRequestHandler(api);
+        private final Map<Long, CompletableFuture<DataInputStream>> responses = new ConcurrentHashMap<>();
+        private final AtomicLong requestIds = new AtomicLong();
+        private final AtomicInteger messages = new AtomicInteger();
+
+        private boolean send(final byte[] message) {
+            this.messages.incrementAndGet();
+            this.handler.handle(message).thenAccept(this::receive);
+            return true;
+        }
+
+        private void receive(final byte[] message) {
+            try {
+                final var in = new DataInputStream(new ByteArrayInputStream(message));
+                in.readUTF();
+                final var header = ProxyCodec.readHeader(in);
+                if (header.operation() != ProxyOperation.BATCH_RESPONSE) {
+                    this.responses.remove(header.requestId()).complete(in);
+                    return;
+                }
+                for (final var entry : ProxyCodec.readBatch(in)) {
+                    final var entryIn = new DataInputStream(new ByteArrayInputStream(entry));
+                    this.responses.remove(ProxyCodec.readHeader(entryIn).requestId()).complete(entryIn);
+                }
+            } catch (IOException x) {
+                throw new IllegalStateException(x);
+            }
+        }
+
+        private byte[] deposit(final Account.Identity identity, final float amount,
+                               final CompletableFuture<DataInputStream> response) throws IOException {
+            final var requestId = this.requestIds.incrementAndGet();
+            this.responses.put(requestId, response);
+
+            final var bytes = new ByteArrayOutputStream();
+            final var out = new DataOutputStream(bytes);
+            ProxyCodec.writeEntryHeader(out, ProxyOperation.DEPOSIT_REQUEST, requestId);
+            ProxyCodec.writeIdentity(out, identity);
+            ProxyCodec.writeCurrency(out, currency, table);
+            ProxyCodec.writeAmount(out, amount, table);
+            return bytes.toByteArray();
+        }
+
+        private byte[] single(final byte[] entry) throws IOException {
+            final var bytes = new ByteArrayOutputStream();
+            final var out = new DataOutputStream(bytes);
+            out.writeUTF(ProxyConstants.SUB_CHANNEL);
+            out.write(entry);
+            return bytes.toByteArray();
+        }
+    }
+
+    @Test
+    public void testBatched() throws Exception {
+        final var loopback = new Loopback();
+        final var batcher = new ProxyBatcher(ProxyBatcher.MAX_PLUGIN_MESSAGE_BYTES, loopback::send);
+        final var identity = new Account.Identity(UUID.randomUUID(), "batched");
+
+        // shop charging 30 items at once
+        final var responses = new ArrayList<CompletableFuture<DataInputStream>>();
+        for (int i = 0; i < 30; i++) {
+            final var response = new CompletableFuture<DataInputStream>();
+            batcher.enqueue(loopback.deposit(identity, 1, response), () -> response.completeExceptionally(new IllegalStateException()));
+            responses.add(response);
+        }
+        Assertions.assertEquals(1, batcher.flush());
+        Assertions.assertEquals(0, batcher.flush());
+
+        for (final var response : responses)
+            Assertions.assertTrue(response.get(5, TimeUnit.SECONDS).readBoolean());
+        Assertions.assertEquals(1, loopback.messages.get());
+        Assertions.assertEquals(30f, api.retrieveAccount(identity).get().status(currency));
+    }
+
+    @Test
+    public void testSplit() throws Exception {
+        final var sent = new ArrayList<byte[]>();
+        final var batcher = new ProxyBatcher(1024, message -> sent.add(message));
+        for (int i = 0; i < 10; i++)
+            batcher.enqueue(new byte[300], () -> {
+            });
+
+        Assertions.assertEquals(4, batcher.flush());
+        for (final var message : sent)
+            Assertions.assertTrue(message.length <= 1024);
+        Assertions.assertEquals(10, batcher.stats().sentEntries());
+
+        final var failed = new AtomicInteger();
+        final var failing = new ProxyBatcher(1024, message -> false);
+        failing.enqueue(new byte[10], failed::incrementAndGet);
+        failing.enqueue(new byte[10], failed::incrementAndGet);
+        failing.flush();
+        Assertions.assertEquals(2, failed.get());
+    }
+
+    @Test
+    public void testMessageCount() throws Exception {
+        final int ticks = 100;
+        final int operations = 30;
+
+        Assertions.assertEquals(ticks * operations, run(ticks, operations, false));
+        Assertions.assertEquals(ticks, run(ticks, operations, true));
+    }
+
+    /**
+     * Issue ticks of deposits, and wait for all responses.
+     *
+     * @return Count of messages sent by server.
+     */
+    private static int run(final int ticks, final int operations, final boolean batch) throws Exception {
+        final var loopback = new Loopback();
+        final var batcher = new ProxyBatcher(ProxyBatcher.MAX_PLUGIN_MESSAGE_BYTES, loopback::send);
+        final var identity = new Account.Identity(UUID.randomUUID(), batch ? "counted_batched" : "counted");
+
+        final List<CompletableFuture<?>> responses = new ArrayList<>();
+        for (int tick = 0; tick < ticks; tick++) {
+            for (int i = 0; i < operations; i++) {
+                final var response = new CompletableFuture<DataInputStream>();
+                responses.add(response);
+
+                final var entry = loopback.deposit(identity, 1, response);
+                if (batch)
+                    batcher.enqueue(entry, () -> response.completeExceptionally(new IllegalStateException()));
+                else
+                    loopback.send(loopback.single(entry));
+            }
+            batcher.flush();
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        return loopback.messages.get();
+    }
+}
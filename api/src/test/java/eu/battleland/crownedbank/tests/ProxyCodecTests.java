@@ -0,0 +1,225 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
+import eu.battleland.crownedbank.proxy.ProxyCodec;
+import eu.battleland.crownedbank.proxy.ProxyOperation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+public class ProxyCodecTests {
+
+    private static CrownedBankAPI.Base api;
+    private static Currency dollars;
+    private static Currency cookies;
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        api.initialize();
+
+        dollars = Currency.builder().identifier("codec_dollars").format("%.2f").build();
+        cookies = Currency.builder().identifier("codec_cookies").format("%.2f").build();
+        api.currencyRepository().register(dollars);
+        api.currencyRepository().register(cookies);
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(final Writer writer) throws IOException {
+        final var bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream decode(final byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private static ProxyCodec.CurrencyTable table() {
+        return ProxyCodec.CurrencyTable.of(api.currencyRepository(), CrownedBank.getConfig().valueFractionalDigits());
+    }
+
+    @Test
+    public void testVarInts() throws IOException {
+        final long[] values = {0, 1, -1, 63, -64, 64, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (final var value : values) {
+            final var bytes = encode(out -> ProxyCodec.writeVarLong(out, value));
+            Assertions.assertEquals(value, ProxyCodec.readVarLong(decode(bytes)));
+        }
+        Assertions.assertEquals(1, encode(out -> ProxyCodec.writeVarLong(out, -1)).length);
+
+        final int[] ints = {0, 1, 127, 128, 16384, Integer.MAX_VALUE, -1};
+        for (final var value : ints) {
+            final var bytes = encode(out -> ProxyCodec.writeVarInt(out, value));
+            Assertions.assertEquals(value, ProxyCodec.readVarInt(decode(bytes)));
+        }
+    }
+
+    @Test
+    public void testHeader() throws IOException {
+        final var bytes = encode(out -> ProxyCodec.writeHeader(out, ProxyOperation.TRANSFER_REQUEST, 42));
+        final var in = decode(bytes);
+        in.readUTF();
+        final var header = ProxyCodec.readHeader(in);
+        Assertions.assertEquals(ProxyOperation.TRANSFER_REQUEST, header.operation());
+        Assertions.assertEquals(42, header.requestId());
+
+        // unsupported version
+        bytes[bytes.length - 3] = (byte) (ProxyCodec.VERSION + 1);
+        final var unsupported = decode(bytes);
+        unsupported.readUTF();
+        Assertions.assertThrows(IOException.class, () -> ProxyCodec.readHeader(unsupported));
+    }
+
+    @Test
+    public void testIdentity() throws IOException {
+        final Account.Identity[] identities = {
+                new Account.Identity(UUID.randomUUID(), "rZorks"),
+                new Account.Identity(UUID.randomUUID(), null),
+                new Account.Identity(null, "\u013Dudov\u00EDt"),
+                new Account.Identity(null, null)
+        };
+        for (final var identity : identities) {
+            final var decoded = ProxyCodec.readIdentity(decode(encode(out -> ProxyCodec.writeIdentity(out, identity))));
+            Assertions.assertEquals(identity.uuid(), decoded.uuid());
+            Assertions.assertEquals(identity.name(), decoded.name());
+        }
+    }
+
+    @Test
+    public void testAmounts() throws IOException {
+        final var table = table();
+        final float[] amounts = {0, 1, -1, 0.25f, 1234.56f, 1_000_000f, -99.99f};
+        for (final var amount : amounts) {
+            final var decoded = ProxyCodec.readAmount(decode(encode(out -> ProxyCodec.writeAmount(out, amount, table))), table);
+            Assertions.assertEquals(amount, decoded, 1f / table.getScale());
+        }
+        Assertions.assertTrue(Float.isNaN(ProxyCodec.readAmount(
+                decode(encode(out -> ProxyCodec.writeAmount(out, Float.NaN, table))), table)));
+    }
+
+    @Test
+    public void testData() throws IOException {
+        final var proxy = table();
+        final var server = ProxyCodec.CurrencyTable.read(decode(encode(proxy::write)), api.currencyRepository());
+        Assertions.assertEquals(proxy.id(cookies), server.id(cookies));
+
+        final var data = Account.Data.empty();
+        data.put(dollars.newStorage().change(12.5f));
+        data.put(cookies.newStorage().change(300));
+
+        final var decoded = ProxyCodec.readData(decode(encode(out -> ProxyCodec.writeData(out, data, proxy))), server, currency -> true);
+        Assertions.assertNotNull(decoded);
+        Assertions.assertEquals(12.5f, decoded.storageOrCreate(dollars).amount());
+        Assertions.assertEquals(300f, decoded.storageOrCreate(cookies).amount());
+
+        // currencies not accepted are skipped
+        final var filtered = ProxyCodec.readData(decode(encode(out -> ProxyCodec.writeData(out, data, proxy))), server, cookies::equals);
+        Assertions.assertNotNull(filtered);
+        Assertions.assertNull(filtered.storage(dollars));
+
+        Assertions.assertNull(ProxyCodec.readData(decode(encode(out -> ProxyCodec.writeData(out, null, proxy))), server, currency -> true));
+    }
+
+    @Test
+    public void testBatchBounds() throws IOException {
+        final var entries = List.of(new byte[]{1, 2, 3}, new byte[0], new byte[]{4});
+        final var bytes = encode(out -> ProxyCodec.writeBatch(out, ProxyOperation.BATCH_REQUEST, entries));
+        final var in = decode(bytes);
+        in.readUTF();
+        ProxyCodec.readHeader(in);
+        final var decoded = ProxyCodec.readBatch(in);
+        Assertions.assertEquals(3, decoded.size());
+        Assertions.assertArrayEquals(entries.get(0), decoded.get(0));
+
+        // count beyond limit
+        Assertions.assertThrows(IOException.class, () -> ProxyCodec.readBatch(decode(encode(out ->
+                ProxyCodec.writeVarInt(out, ProxyCodec.MAX_ENTRIES + 1)))));
+        // entry longer than input is rejected before it is allocated
+        Assertions.assertThrows(IOException.class, () -> ProxyCodec.readBatch(decode(encode(out -> {
+            ProxyCodec.writeVarInt(out, 1);
+            ProxyCodec.writeVarInt(out, Integer.MAX_VALUE - 8);
+        }))));
+    }
+
+    @Test
+    public void testStandings() throws IOException {
+        final var table = table();
+        final var standings = new ArrayList<Standing>();
+        for (int i = 0; i < 100; i++)
+            standings.add(new Standing(new Account.Identity(UUID.randomUUID(), "player" + i), 100_000f - i * 12.5f, i + 1));
+
+        final var bytes = encode(out -> ProxyCodec.writeStandings(out, standings, table));
+        final var decoded = ProxyCodec.readStandings(decode(bytes), table);
+        Assertions.assertEquals(standings, decoded);
+
+        // leaderboard of 100 costs a few kilobytes
+        Assertions.assertTrue(bytes.length < 4096, String.format("%d bytes", bytes.length));
+
+        // single standing, or its absence
+        Assertions.assertEquals(standings.get(42), ProxyCodec.readStanding(
+                decode(encode(out -> ProxyCodec.writeStanding(out, standings.get(42), table))), table));
+        Assertions.assertNull(ProxyCodec.readStanding(decode(encode(out -> ProxyCodec.writeStanding(out, null, table))), table));
+
+        // count is bounded on both sides
+        final var oversized = new ArrayList<Standing>();
+        for (int i = 0; i < ProxyCodec.MAX_ENTRIES + 1; i++)
+            oversized.add(new Standing(new Account.Identity(UUID.randomUUID(), "player" + i), 1f, i + 1));
+        Assertions.assertEquals(ProxyCodec.MAX_ENTRIES, ProxyCodec.readStandings(
+                decode(encode(out -> ProxyCodec.writeStandings(out, oversized, table))), table).size());
+        Assertions.assertThrows(IOException.class, () -> ProxyCodec.readStandings(
+                decode(encode(out -> ProxyCodec.writeVarInt(out, Integer.MAX_VALUE))), table));
+    }
+
+    /**
+     * Compares size of messages against previous encoding, which carried JSON identities,
+     * currency identifiers and float amounts.
+     */
+    @Test
+    public void testCompact() throws IOException {
+        final var table = table();
+        final var identity = new Account.Identity(UUID.randomUUID(), "rZorks");
+
+        final var legacy = encode(out -> {
+            out.writeUTF(CrownedBank.GSON.toJson(identity));
+            out.writeUTF(cookies.identifier());
+            out.writeFloat(100.5f);
+        });
+        final var compact = encode(out -> {
+            ProxyCodec.writeIdentity(out, identity);
+            ProxyCodec.writeCurrency(out, cookies, table);
+            ProxyCodec.writeAmount(out, 100.5f, table);
+        });
+        Assertions.assertTrue(compact.length * 2 < legacy.length,
+                String.format("compact %d bytes, legacy %d bytes", compact.length, legacy.length));
+    }
+}
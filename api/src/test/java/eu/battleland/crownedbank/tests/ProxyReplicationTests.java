@@ -0,0 +1,180 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.proxy.ProxyCodec;
+import eu.battleland.crownedbank.proxy.ProxyOperation;
+import eu.battleland.crownedbank.proxy.ProxyPeer;
+import eu.battleland.crownedbank.proxy.ProxyRequestHandler;
+import lombok.NonNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+public class ProxyReplicationTests {
+
+    private static CrownedBankAPI.Base api;
+    private static Currency currency;
+    private static ProxyRequestHandler handler;
+    private static ProxyCodec.CurrencyTable table;
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        api.initialize();
+
+        currency = Currency.builder()
+                .identifier("replicated_coins")
+                .format("%.2f")
+                .remote(new TestRemote("replicated", 0))
+                .build();
+        api.currencyRepository().register(currency);
+
+        handler = new ProxyRequestHandler(api);
+        table = handler.table();
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Peer collecting messages pushed to it.
+     */
+    private static final class Peer
+            implements ProxyPeer {
+        private final List<byte[]> pushes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public boolean push(final byte @NonNull [] message) {
+            this.pushes.add(message);
+            return true;
+        }
+    }
+
+    private static byte[] message(final ProxyOperation operation, final long requestId,
+                                  final Writer body) throws IOException {
+        final var bytes = new ByteArrayOutputStream();
+        final var out = new DataOutputStream(bytes);
+        ProxyCodec.writeHeader(out, operation, requestId);
+        body.write(out);
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream stream(final byte[] message, final ProxyOperation expected) throws IOException {
+        final var in = new DataInputStream(new ByteArrayInputStream(message));
+        in.readUTF();
+        Assertions.assertEquals(expected, ProxyCodec.readHeader(in).operation());
+        return in;
+    }
+
+    private static byte[] deposit(final Peer peer, final Account.Identity identity, final float amount) throws IOException {
+        return handler.handle(peer, message(ProxyOperation.DEPOSIT_REQUEST, 2, out -> {
+            ProxyCodec.writeIdentity(out, identity);
+            ProxyCodec.writeCurrency(out, currency, table);
+            ProxyCodec.writeAmount(out, amount, table);
+        })).join();
+    }
+
+    @Test
+    public void testPush() throws IOException {
+        final var identity = new Account.Identity(UUID.randomUUID(), "replicated");
+        final var subscriber = new Peer();
+        final var other = new Peer();
+
+        // subscriber caches account
+        final var fetched = ProxyCodec.readData(stream(handler.handle(subscriber, message(ProxyOperation.FETCH_REQUEST, 1,
+                out -> ProxyCodec.writeIdentity(out, identity))).join(), ProxyOperation.FETCH_RESPONSE), table, c -> true);
+        Assertions.assertNotNull(fetched);
+        final var storage = fetched.storageOrCreate(currency);
+
+        // other server changes balance
+        final var response = stream(deposit(other, identity, 5), ProxyOperation.DEPOSIT_RESPONSE);
+        Assertions.assertTrue(response.readBoolean());
+        final var responded = ProxyCodec.readBalance(response, table);
+
+        Assertions.assertEquals(1, subscriber.pushes.size());
+        final var push = stream(subscriber.pushes.get(0), ProxyOperation.BALANCE_UPDATE);
+        Assertions.assertEquals(identity, ProxyCodec.readIdentity(push));
+        Assertions.assertEquals(currency, ProxyCodec.readCurrency(push, table));
+        final var pushed = ProxyCodec.readBalance(push, table);
+        Assertions.assertEquals(5f, pushed.amount());
+        Assertions.assertTrue(responded.version() > pushed.version());
+
+        // applied in place, older balance does not regress it
+        Assertions.assertTrue(pushed.replicate(storage));
+        Assertions.assertEquals(5f, storage.amount());
+        Assertions.assertFalse(new ProxyCodec.Balance(1, pushed.version() - 1).replicate(storage));
+        Assertions.assertFalse(pushed.replicate(storage));
+        Assertions.assertEquals(5f, storage.amount());
+
+        // released account is no longer pushed
+        Assertions.assertNull(handler.handle(subscriber, message(ProxyOperation.RELEASE_NOTICE, 0,
+                out -> ProxyCodec.writeIdentity(out, identity))).join());
+        deposit(other, identity, 5);
+        Assertions.assertEquals(1, subscriber.pushes.size());
+        Assertions.assertEquals(2, other.pushes.size());
+
+        // disconnected peer is no longer pushed
+        handler.disconnected(other);
+        deposit(null, identity, 5);
+        Assertions.assertEquals(2, other.pushes.size());
+        Assertions.assertEquals(0, handler.replicator().subscribed());
+    }
+
+    @Test
+    public void testSnapshotVersions() {
+        final var storage = currency.newStorage().change(10);
+        final var first = storage.snapshot();
+        storage.deposit(5);
+        final var second = storage.snapshot();
+
+        Assertions.assertTrue(second.version() > first.version());
+        Assertions.assertEquals(storage.toMinor(15), second.amount());
+
+        final var replica = currency.newStorage();
+        Assertions.assertTrue(replica.replicate(second.amount(), second.version()));
+        Assertions.assertFalse(replica.replicate(first.amount(), first.version()));
+        Assertions.assertEquals(15f, replica.amount());
+    }
+
+    @Test
+    public void testImplausibleVersion() {
+        final var storage = currency.newStorage().change(10);
+        final var replica = currency.newStorage();
+
+        // forged version far ahead would pin balance
+        final var forged = new ProxyCodec.Balance(1_000_000f, Long.MAX_VALUE - 1);
+        Assertions.assertFalse(forged.plausible(replica));
+        Assertions.assertFalse(forged.replicate(replica));
+
+        final var snapshot = storage.snapshot();
+        Assertions.assertTrue(new ProxyCodec.Balance(10f, snapshot.version()).replicate(replica));
+        Assertions.assertFalse(new ProxyCodec.Balance(1_000_000f,
+                snapshot.version() + ProxyCodec.Balance.MAX_VERSION_LEAD * 2).replicate(replica));
+        Assertions.assertEquals(10f, replica.amount());
+    }
+}
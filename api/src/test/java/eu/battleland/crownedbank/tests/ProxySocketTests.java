@@ -0,0 +1,201 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.proxy.ProxyCodec;
+import eu.battleland.crownedbank.proxy.ProxyOperation;
+import eu.battleland.crownedbank.proxy.ProxyRequestHandler;
+import eu.battleland.crownedbank.proxy.ProxySocketClient;
+import eu.battleland.crownedbank.proxy.ProxySocketServer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class ProxySocketTests {
+
+    private static CrownedBankAPI.Base api;
+    private static Currency currency;
+
+    @BeforeAll
+    public static void initialize() {
+        final var logger = Logger.getLogger("test");
+        api = new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        };
+        api.initialize();
+
+        currency = Currency.builder()
+                .identifier("socket_coins")
+                .format("%.2f")
+                .remote(new TestRemote("socket", 0))
+                .build();
+        api.currencyRepository().register(currency);
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Client correlating responses by request identifier, and collecting pushed balance updates.
+     */
+    private static final class Client {
+        private final Map<Long, CompletableFuture<DataInputStream>> responses = new ConcurrentHashMap<>();
+        private final List<DataInputStream> pushes = new CopyOnWriteArrayList<>();
+        private final Semaphore pushed = new Semaphore(0);
+        private final ProxySocketClient socket;
+
+        private Client(final int port, final String token) {
+            this.socket = new ProxySocketClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), token, message -> {
+                try {
+                    final var in = new DataInputStream(new ByteArrayInputStream(message));
+                    in.readUTF();
+                    final var header = ProxyCodec.readHeader(in);
+                    if (header.operation() == ProxyOperation.BALANCE_UPDATE) {
+                        this.pushes.add(in);
+                        this.pushed.release();
+                        return;
+                    }
+
+                    // response to request that is no longer pending
+                    final var response = this.responses.remove(header.requestId());
+                    if (response != null)
+                        response.complete(in);
+                } catch (IOException x) {
+                    throw new IllegalStateException(x);
+                }
+            });
+            this.socket.initialize();
+        }
+
+        private CompletableFuture<DataInputStream> request(final ProxyOperation operation, final long requestId,
+                                                           final Writer body) throws IOException {
+            final var future = new CompletableFuture<DataInputStream>();
+            this.responses.put(requestId, future);
+
+            final var bytes = new ByteArrayOutputStream();
+            final var out = new DataOutputStream(bytes);
+            ProxyCodec.writeHeader(out, operation, requestId);
+            body.write(out);
+            Assertions.assertTrue(this.socket.send(bytes.toByteArray()));
+            return future.orTimeout(5, TimeUnit.SECONDS);
+        }
+
+        private boolean awaitConnected() throws InterruptedException {
+            for (int i = 0; i < 100 && !this.socket.isConnected(); i++)
+                Thread.sleep(50);
+            return this.socket.isConnected();
+        }
+    }
+
+    private static ProxySocketServer server(final int port) throws IOException {
+        final var server = new ProxySocketServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                "secret", new ProxyRequestHandler(api)::handle);
+        server.initialize();
+        return server;
+    }
+
+    @Test
+    public void testPipelined() throws Exception {
+        final var server = server(0);
+        final var client = new Client(server.port(), "secret");
+        try {
+            Assertions.assertTrue(client.awaitConnected());
+
+            final var table = ProxyCodec.CurrencyTable.read(
+                    client.request(ProxyOperation.HANDSHAKE_REQUEST, 1, out -> {
+                    }).get(), api.currencyRepository());
+
+            // requests in flight at once, on one connection
+            final var identity = new Account.Identity(UUID.randomUUID(), "pipelined");
+            final var deposits = new ArrayList<CompletableFuture<DataInputStream>>();
+            for (int i = 0; i < 50; i++) {
+                deposits.add(client.request(ProxyOperation.DEPOSIT_REQUEST, 100 + i, out -> {
+                    ProxyCodec.writeIdentity(out, identity);
+                    ProxyCodec.writeCurrency(out, currency, table);
+                    ProxyCodec.writeAmount(out, 2, table);
+                }));
+            }
+            for (final var deposit : deposits)
+                Assertions.assertTrue(deposit.get().readBoolean());
+
+            // client requesting account is subscribed to its balance changes
+            Assertions.assertTrue(client.pushed.tryAcquire(50, 5, TimeUnit.SECONDS));
+            Assertions.assertEquals(50, client.pushes.size());
+            for (final var push : client.pushes)
+                Assertions.assertEquals(identity, ProxyCodec.readIdentity(push));
+
+            final var data = ProxyCodec.readData(client.request(ProxyOperation.FETCH_REQUEST, 2, out -> {
+                ProxyCodec.writeIdentity(out, identity);
+            }).get(), table, currency -> true);
+            Assertions.assertNotNull(data);
+            Assertions.assertEquals(100f, data.storageOrCreate(currency).amount());
+        } finally {
+            client.socket.terminate();
+            server.terminate();
+        }
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        final var server = server(0);
+        final var client = new Client(server.port(), "wrong");
+        try {
+            Assertions.assertFalse(client.awaitConnected());
+        } finally {
+            client.socket.terminate();
+            server.terminate();
+        }
+    }
+
+    @Test
+    public void testReconnect() throws Exception {
+        var server = server(0);
+        final var port = server.port();
+        final var client = new Client(port, "secret");
+        try {
+            Assertions.assertTrue(client.awaitConnected());
+
+            server.terminate();
+            for (int i = 0; i < 100 && client.socket.isConnected(); i++)
+                Thread.sleep(50);
+            Assertions.assertFalse(client.socket.isConnected());
+
+            server = server(port);
+            Assertions.assertTrue(client.awaitConnected());
+            Assertions.assertNotNull(client.request(ProxyOperation.HANDSHAKE_REQUEST, 1, out -> {
+            }).get());
+        } finally {
+            client.socket.terminate();
+            server.terminate();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package eu.battleland.crownedbank.tests;
+
+import com.google.gson.JsonObject;
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
+import eu.battleland.crownedbank.remote.Remote;
+import eu.battleland.crownedbank.remote.SqlRemote;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+public class SqlRemoteTests {
+
+    private static final TestDriver driver = new TestDriver();
+
+    @BeforeAll
+    public static void initialize() throws SQLException {
+        final var logger = Logger.getLogger("test");
+        new CrownedBankAPI.Base() {
+            @Override
+            protected Logger provideLogger() {
+                return logger;
+            }
+
+            @Override
+            public TranslationRegistry<?> translationRegistry() {
+                return null;
+            }
+        }.initialize();
+
+        DriverManager.registerDriver(driver);
+    }
+
+    @AfterAll
+    public static void terminate() throws SQLException {
+        DriverManager.deregisterDriver(driver);
+    }
+
+    @BeforeEach
+    public void reset() {
+        driver.getBatches().clear();
+        driver.getCommands().clear();
+        driver.setFailing(false);
+    }
+
+    private static SqlRemote writeBehind() {
+        return remote("json", true);
+    }
+
+    private static SqlRemote remote(final String layout, final boolean writeBehind) {
+        final var parameters = new JsonObject();
+        parameters.addProperty("jdbc_url", TestDriver.URL);
+        parameters.addProperty("username", "test");
+        parameters.addProperty("password", "test");
+        parameters.addProperty("pool_size", 2);
+        parameters.addProperty("layout", layout);
+        parameters.addProperty("write_behind", writeBehind);
+        parameters.addProperty("flush_interval_millis", 60_000);
+        parameters.addProperty("flush_batch_size", 4);
+
+        final var remote = new SqlRemote("sql");
+        remote.configure(new Remote.Profile("sql", parameters));
+        remote.initialize();
+        return remote;
+    }
+
+    private static Account account(final String name) {
+        return Account.builder()
+                .identity(new Account.Identity(UUID.randomUUID(), name))
+                .build();
+    }
+
+    @Test
+    public void testStandingCommands() {
+        final var currency = Currency.builder()
+                .identifier("ranked")
+                .format("%.2f")
+                .build();
+        final var identity = new Account.Identity(UUID.randomUUID(), "ranked");
+        final var cursor = new Standing(identity, 10f, 1);
+
+        for (final var layout : List.of("json", "normalized")) {
+            final var remote = remote(layout, false);
+            driver.getCommands().clear();
+            Assertions.assertEquals(List.of(), remote.fetchStandings(currency, cursor, 10).join());
+            Assertions.assertNull(remote.fetchStanding(currency, identity).join());
+            remote.terminate();
+
+            // seek and rank are written out, so that they are range scans of leaderboard index
+            final var commands = String.join("\n", driver.getCommands());
+            Assertions.assertFalse(commands.contains(", `identity_uuid`) <"), commands);
+            Assertions.assertFalse(commands.contains(") > ("), commands);
+            final var seek = driver.getCommands().stream()
+                    .filter(command -> command.contains("limit ?"))
+                    .findFirst().orElseThrow();
+            final var column = layout.equals("normalized") ? "`balance`" : "worth";
+            Assertions.assertTrue(seek.contains(String.format(
+                    "and (%1$s < ? or (%1$s = ? and `identity_uuid` < ?))", column)), seek);
+        }
+
+        final var rank = driver.getCommands().stream()
+                .filter(command -> command.contains("as `rank`"))
+                .findFirst().orElseThrow();
+        Assertions.assertTrue(rank.contains("(o.`balance` > b.`balance`\n"), rank);
+        Assertions.assertTrue(rank.contains("or (o.`balance` = b.`balance` and o.`identity_uuid` > b.`identity_uuid`)"), rank);
+    }
+
+    @Test
+    public void testCoalesced() {
+        final var remote = writeBehind();
+        final var account = account("coalesced");
+        Assertions.assertTrue(remote.storeAccount(account).join());
+        Assertions.assertTrue(remote.storeAccount(account).join());
+        Assertions.assertTrue(remote.storeAccount(account("other")).join());
+        Assertions.assertEquals(0, driver.rows());
+
+        Assertions.assertEquals(2, remote.flush());
+        Assertions.assertEquals(List.of(2), driver.getBatches());
+        remote.terminate();
+    }
+
+    @Test
+    public void testFullBatch() throws InterruptedException {
+        final var remote = writeBehind();
+        for (int i = 0; i < 4; i++)
+            remote.storeAccount(account("account" + i));
+
+        // full batch is flushed without waiting for interval
+        final var deadline = System.currentTimeMillis() + 1000;
+        while (driver.rows() < 4 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        Assertions.assertEquals(4, driver.rows());
+        remote.terminate();
+    }
+
+    @Test
+    public void testFlushedOnTerminate() {
+        final var remote = writeBehind();
+        remote.storeAccount(account("first"));
+        remote.storeAccount(account("second"));
+
+        remote.terminate();
+        Assertions.assertEquals(2, driver.rows());
+    }
+
+    @Test
+    public void testFailureRequeued() {
+        final var remote = writeBehind();
+        remote.storeAccount(account("first"));
+        remote.storeAccount(account("second"));
+
+        driver.setFailing(true);
+        Assertions.assertEquals(0, remote.flush());
+        Assertions.assertEquals(0, driver.rows());
+
+        driver.setFailing(false);
+        Assertions.assertEquals(2, remote.flush());
+        Assertions.assertEquals(2, driver.rows());
+        remote.terminate();
+    }
+}
@@ -0,0 +1,146 @@
+package eu.battleland.crownedbank.tests;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * JDBC driver without database, recording rows of executed batches.
+ */
+public class TestDriver implements Driver {
+
+    public static final String URL = "jdbc:crownedbank-test:";
+
+    /**
+     * Count of rows of every executed batch.
+     */
+    @Getter
+    private final List<Integer> batches = new CopyOnWriteArrayList<>();
+
+    /**
+     * Commands of all prepared statements.
+     */
+    @Getter
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+
+    /**
+     * Whether executed batches fail.
+     */
+    @Setter
+    private volatile boolean failing;
+
+    /**
+     * @return Count of rows of all executed batches.
+     */
+    public int rows() {
+        return this.batches.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+        if (!acceptsURL(url))
+            return null;
+
+        final var connection = new Connection[1];
+        connection[0] = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "prepareStatement" -> {
+                        this.commands.add((String) args[0]);
+                        yield statement(connection[0]);
+                    }
+                    case "createStatement" -> statement(connection[0]);
+                    case "isValid", "getAutoCommit" -> true;
+                    case "getTransactionIsolation" -> Connection.TRANSACTION_READ_COMMITTED;
+                    case "toString" -> "TestConnection";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> defaultValue(method.getReturnType());
+                });
+        return connection[0];
+    }
+
+    private Statement statement(final Connection connection) {
+        final var pending = new int[1];
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "addBatch" -> {
+                        pending[0]++;
+                        yield null;
+                    }
+                    case "executeBatch" -> {
+                        final var rows = pending[0];
+                        pending[0] = 0;
+                        if (this.failing)
+                            throw new SQLException("Failing");
+                        this.batches.add(rows);
+                        yield new int[rows];
+                    }
+                    case "executeQuery" -> emptyResult();
+                    case "getConnection" -> connection;
+                    case "toString" -> "TestStatement";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> defaultValue(method.getReturnType());
+                });
+    }
+
+    private ResultSet emptyResult() {
+        return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "toString" -> "TestResultSet";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> defaultValue(method.getReturnType());
+                });
+    }
+
+    private static Object defaultValue(final Class<?> type) {
+        if (type == void.class || !type.isPrimitive())
+            return null;
+        return Array.get(Array.newInstance(type, 1), 0);
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
@@ -0,0 +1,82 @@
+package eu.battleland.crownedbank.tests;
+
+import eu.battleland.crownedbank.model.Account;
+import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
+import eu.battleland.crownedbank.remote.Remote;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory remote, answering after fixed delay.
+ */
+public class TestRemote implements Remote {
+
+    private final String identifier;
+    private final long delayMillis;
+
+    @Getter
+    private final AtomicInteger stored = new AtomicInteger();
+    @Getter
+    private final AtomicInteger fetched = new AtomicInteger();
+
+    public TestRemote(String identifier, long delayMillis) {
+        this.identifier = identifier;
+        this.delayMillis = delayMillis;
+    }
+
+    private <T> CompletableFuture<T> delayed(T value) {
+        return CompletableFuture.supplyAsync(() -> value,
+                CompletableFuture.delayedExecutor(this.delayMillis, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public Remote configure(@NonNull Profile profile) {
+        return this;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> storeAccount(@NonNull Account account) {
+        this.stored.incrementAndGet();
+        return this.delayMillis > 0 ? delayed(true) : CompletableFuture.completedFuture(true);
+    }
+
+    @Override
+    public CompletableFuture<Account.Data> fetchAccount(@NonNull Account.Identity identity) {
+        this.fetched.incrementAndGet();
+        return delayed(Account.Data.empty());
+    }
+
+    @Override
+    public CompletableFuture<List<Standing>> fetchWealthyAccounts(@NonNull Currency currency) {
+        return delayed(List.of());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> handleWithdraw(Account account, Currency.Storage currencyStorage, float amount) {
+        return delayed(currencyStorage.withdraw(amount));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> handleDeposit(Account account, Currency.Storage currencyStorage, float amount) {
+        return delayed(currencyStorage.deposit(amount));
+    }
+
+    @Override
+    public @NonNull String identifier() {
+        return this.identifier;
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public void terminate() {
+    }
+}
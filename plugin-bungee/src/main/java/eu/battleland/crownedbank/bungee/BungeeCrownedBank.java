@@ -1,11 +1,15 @@
 package eu.battleland.crownedbank.bungee;
 
 import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.bungee.helper.PlayerIdentity;
 import eu.battleland.crownedbank.i18n.TranslationRegistry;
 import eu.battleland.crownedbank.remote.SqlRemote;
 import lombok.Getter;
 import lombok.experimental.Accessors;
+import net.md_5.bungee.api.event.PlayerDisconnectEvent;
+import net.md_5.bungee.api.event.PostLoginEvent;
 import net.md_5.bungee.api.plugin.Listener;
+import net.md_5.bungee.event.EventHandler;
 
 import java.util.logging.Logger;
 
@@ -30,6 +34,26 @@ public class BungeeCrownedBank
         }
     }
 
+    /**
+     * Pin account of connecting player, so that it stays cached while player is online.
+     *
+     * @param event Event.
+     */
+    @EventHandler
+    public void onLogin(final PostLoginEvent event) {
+        this.accountStorage().pin(PlayerIdentity.of(event.getPlayer()));
+    }
+
+    /**
+     * Unpin account of disconnecting player.
+     *
+     * @param event Event.
+     */
+    @EventHandler
+    public void onDisconnect(final PlayerDisconnectEvent event) {
+        this.accountStorage().unpin(PlayerIdentity.of(event.getPlayer()));
+    }
+
     @Override
     protected Logger provideLogger() {
         return pluginInstance.getLogger();
@@ -52,6 +52,8 @@ public class BungeePlugin
 
         // initialize api
         this.api.initialize();
+        this.getProxy().getPluginManager()
+                .registerListener(this, this.api);
 
         // initialize configuration
         try {
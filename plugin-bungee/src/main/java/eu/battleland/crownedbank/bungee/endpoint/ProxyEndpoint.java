@@ -1,26 +1,35 @@
 package eu.battleland.crownedbank.bungee.endpoint;
 
-import com.google.common.io.ByteStreams;
 import eu.battleland.crownedbank.CrownedBank;
 import eu.battleland.crownedbank.abstracted.Controllable;
 import eu.battleland.crownedbank.bungee.BungeePlugin;
-import eu.battleland.crownedbank.model.Account;
-import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.helper.SampledLog;
 import eu.battleland.crownedbank.proxy.ProxyConstants;
-import eu.battleland.crownedbank.proxy.ProxyOperation;
+import eu.battleland.crownedbank.proxy.ProxyPeer;
+import eu.battleland.crownedbank.proxy.ProxyRequestHandler;
+import eu.battleland.crownedbank.proxy.ProxySocketServer;
 import lombok.NonNull;
+import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.Server;
 import net.md_5.bungee.api.event.PluginMessageEvent;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 
-import java.util.concurrent.CompletableFuture;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 public class ProxyEndpoint
         implements Listener, Controllable {
 
     private final BungeePlugin plugin;
 
+    private final SampledLog log
+            = new SampledLog(TimeUnit.SECONDS.toMillis(10));
+
+    private ProxyRequestHandler handler;
+    private ProxySocketServer socketServer;
+
     /**
      * Constructor.
      *
@@ -32,173 +41,84 @@ public class ProxyEndpoint
 
     @Override
     public void initialize() {
+        this.handler = new ProxyRequestHandler(this.plugin.getApi());
+
         this.plugin.getProxy().registerChannel(ProxyConstants.CHANNEL);
         this.plugin.getProxy().getPluginManager()
                 .registerListener(this.plugin, this);
+
+        // socket transport, if configured
+        final var config = CrownedBank.getConfig();
+        if (config.endpointSocketPort() > 0) {
+            try {
+                this.socketServer = new ProxySocketServer(
+                        new InetSocketAddress(config.endpointSocketHost(), config.endpointSocketPort()),
+                        config.endpointSocketToken(),
+                        this.handler);
+                this.socketServer.initialize();
+                this.plugin.getLogger().info(String.format("Listening for servers on %s:%d",
+                        config.endpointSocketHost(), config.endpointSocketPort()));
+            } catch (Exception x) {
+                this.socketServer = null;
+                this.plugin.getLogger().severe("Couldn't initialize endpoint socket");
+                x.printStackTrace();
+            }
+        }
     }
 
     @Override
     public void terminate() {
         this.plugin.getProxy().unregisterChannel(ProxyConstants.CHANNEL);
+        if (this.socketServer != null)
+            this.socketServer.terminate();
+        if (this.handler != null)
+            this.handler.terminate();
     }
 
 
     @EventHandler
     public void on(final PluginMessageEvent event) {
-        if (!(event.getSender() instanceof Server requestee))
-            return;
-
         // channel check
         if (!event.getTag().equals(ProxyConstants.CHANNEL))
             return;
 
-        final var request
-                = ByteStreams.newDataInput(event.getData());
-        final var response
-                = ByteStreams.newDataOutput();
+        // channel is never relayed, players must not reach servers through it
+        event.setCancelled(true);
+        if (!(event.getSender() instanceof Server requestee))
+            return;
 
-        // read sub-channel
-        final var sub = request.readUTF();
-        if (!ProxyConstants.SUB_CHANNEL.equals(sub))
+        final var response = this.handler.handle(new ServerPeer(requestee.getInfo()), event.getData());
+        if (response == null)
             return;
 
-        try {
-            CompletableFuture.runAsync(() -> {
-                // read operation
-                final var op = ProxyOperation
-                        .values()[request.readByte()];
-
-                // start building response
-                {
-                    // write subchannel
-                    response.writeUTF(ProxyConstants.SUB_CHANNEL);
-                }
-
-                if (op == ProxyOperation.FETCH_WEALTHY_REQUEST) {
-                    this.plugin.getLogger().info("Fetch wealthy accounts request");
-
-                    // write operation
-                    response.writeByte(ProxyOperation.FETCH_WEALTHY_RESPONSE.ordinal());
-
-                    try {
-                        final Currency currency = plugin
-                                .getApi()
-                                .currencyRepository()
-                                .retrieve(request.readUTF());
-
-                        final var accounts = plugin.getApi()
-                                .retrieveWealthyAccounts(currency).get(); // fetch dummy accounts
-
-                        response.writeInt(accounts.size());
-                        accounts.forEach(account -> {
-                            response.writeUTF(CrownedBank.GSON.toJson(account));
-                        });
-                    } catch (Exception x) {
-                        response.writeInt(0);
-                    }
-
-                    this.plugin.getLogger().info("Responded to fetch wealthy accounts request.");
-                } else {
-                    // read identity
-                    final var identity = CrownedBank.GSON.fromJson(
-                            request.readUTF(), Account.Identity.class
-                    );
-
-                    switch (op) {
-                        case FETCH_REQUEST -> {
-                            this.plugin.getLogger().info(String.format("Fetch request for '%s'.", identity));
-
-                            // write operation
-                            response.writeByte(ProxyOperation.FETCH_RESPONSE.ordinal());
-                            // write identity
-                            response.writeUTF(CrownedBank.GSON.toJson(identity));
-
-                            Account account;
-                            try {
-                                account = plugin.getApi().retrieveAccount(identity).get(); // fetch account
-                            } catch (Exception x) {
-                                this.plugin.getLogger().info(String.format("Couldn't fetch account for '%s'.", identity));
-                                x.printStackTrace();
-
-                                account = null;
-                            }
-
-                            if (account != null) {
-                                final var json = Account.Data.encode(account.getData(), (t) -> true);
-                                response.writeUTF(json.toString());
-                            }
-                            else
-                                response.writeUTF("null");
-
-                            this.plugin.getLogger().info(String.format("Responded to fetch request for '%s'.", identity));
-                        }
-                        case WITHDRAW_REQUEST -> {
-                            this.plugin.getLogger().info(String.format("Withdraw request for '%s'.", identity));
-
-                            // write operation
-                            response.writeByte(ProxyOperation.WITHDRAW_RESPONSE.ordinal());
-                            // write identity
-                            response.writeUTF(CrownedBank.GSON.toJson(identity));
-
-                            try {
-                                final Currency currency = plugin
-                                        .getApi()
-                                        .currencyRepository()
-                                        .retrieve(request.readUTF());
-                                if (currency == null)
-                                    throw new Exception("Unknown currency");
-                                float amount = request.readFloat();
-
-                                final var account = plugin.getApi().retrieveAccount(identity).get();
-                                {
-                                    final var result = account.withdraw(currency, amount).get();
-                                    response.writeBoolean(result);
-                                    response.writeFloat(account.status(currency));
-                                }
-                            } catch (Exception x) {
-                                this.plugin.getLogger().warning(String.format("Couldn't withdraw from account '%s'.", identity));
-                                x.printStackTrace();
-                            }
-                        }
-                        case DEPOSIT_REQUEST -> {
-                            this.plugin.getLogger().info(String.format("Deposit request for '%s'.", identity));
-
-                            // write operation
-                            response.writeByte(ProxyOperation.DEPOSIT_RESPONSE.ordinal());
-                            // write identity
-                            response.writeUTF(CrownedBank.GSON.toJson(identity));
-
-                            try {
-                                final Currency currency = plugin
-                                        .getApi()
-                                        .currencyRepository()
-                                        .retrieve(request.readUTF());
-                                if (currency == null)
-                                    throw new Exception("Unknown currency");
-                                float amount = request.readFloat();
-
-                                final var account = plugin.getApi().retrieveAccount(identity).get();
-                                {
-                                    final var result = account.deposit(currency, amount).get();
-                                    response.writeBoolean(result);
-                                    response.writeFloat(account.status(currency));
-                                }
-                            } catch (Exception x) {
-                                this.plugin.getLogger().warning(String.format("Couldn't deposit to account '%s'.", identity));
-                                x.printStackTrace();
-                            }
-                        }
-                    }
-                }
-
-                // send response
-                requestee.sendData(ProxyConstants.CHANNEL, response.toByteArray());
-            });
-
-            event.setCancelled(true);
-        } catch (Exception x) {
-            this.plugin.getLogger().severe("Malformed proxy request");
-            x.printStackTrace();
+        response.whenComplete((message, x) -> {
+            if (x != null) {
+                this.log.log(Level.WARNING, "proxy_request_malformed",
+                        "server", requestee.getInfo().getName(), "error", x.getMessage());
+                return;
+            }
+            // send response, if any
+            if (message != null)
+                requestee.sendData(ProxyConstants.CHANNEL, message);
+        });
+    }
+
+    /**
+     * Server connected through plugin messages. Messages are pushed through any player connected to it.
+     *
+     * @param server Server.
+     */
+    private record ServerPeer(ServerInfo server)
+            implements ProxyPeer {
+
+        @Override
+        public boolean push(final byte @NonNull [] message) {
+            return this.server.sendData(ProxyConstants.CHANNEL, message, false);
+        }
+
+        @Override
+        public String toString() {
+            return this.server.getName();
         }
     }
 }
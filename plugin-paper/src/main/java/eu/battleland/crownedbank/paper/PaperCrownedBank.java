@@ -1,6 +1,7 @@
 package eu.battleland.crownedbank.paper;
 
 import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.paper.helper.PlayerIdentity;
 import eu.battleland.crownedbank.paper.i18n.KyoriTranslationRegistry;
 import eu.battleland.crownedbank.i18n.TranslationRegistry;
 import eu.battleland.crownedbank.paper.remote.ProxyRemote;
@@ -10,7 +11,10 @@ import lombok.NonNull;
 import lombok.experimental.Accessors;
 import lombok.extern.log4j.Log4j2;
 import net.kyori.adventure.text.Component;
+import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 import java.util.logging.Logger;
 
@@ -65,6 +69,26 @@ public class PaperCrownedBank
     }
 
 
+    /**
+     * Pin account of joining player, so that it stays cached while player is online.
+     *
+     * @param event Event.
+     */
+    @EventHandler
+    public void onJoin(final PlayerJoinEvent event) {
+        this.accountStorage().pin(PlayerIdentity.of(event.getPlayer()));
+    }
+
+    /**
+     * Unpin account of quitting player.
+     *
+     * @param event Event.
+     */
+    @EventHandler
+    public void onQuit(final PlayerQuitEvent event) {
+        this.accountStorage().unpin(PlayerIdentity.of(event.getPlayer()));
+    }
+
     @Override
     protected Logger provideLogger() {
         return pluginInstance.getLogger();
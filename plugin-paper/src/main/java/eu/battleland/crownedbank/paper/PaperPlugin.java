@@ -8,6 +8,7 @@ import cloud.commandframework.execution.AsynchronousCommandExecutionCoordinator;
 import cloud.commandframework.paper.PaperCommandManager;
 import eu.battleland.crownedbank.CrownedBankAPI;
 import eu.battleland.crownedbank.config.ConfigBuilder;
+import eu.battleland.crownedbank.helper.Bulkhead;
 import eu.battleland.crownedbank.model.Currency;
 import eu.battleland.crownedbank.paper.bridge.PlaceholderExpansion;
 import eu.battleland.crownedbank.paper.bridge.VaultExpansion;
@@ -92,6 +93,7 @@ public class PaperPlugin
         }
 
         this.api.initialize();
+        Bukkit.getPluginManager().registerEvents(this.api, this);
 
         this.commands();
         this.expansions();
@@ -199,6 +201,30 @@ public class PaperPlugin
                     }));
         }
 
+        // remotes command
+        {
+            this.commandManager.command(admin.literal("remotes")
+                    .handler(ctx -> {
+                        this.api.remoteRepository().all().forEach(remote -> {
+                            final var bulkhead = remote.bulkhead();
+                            if (bulkhead == null) {
+                                ctx.getSender().sendMessage(Component.text(String.format("%s: no bulkhead", remote.identifier()))
+                                        .color(NamedTextColor.GRAY));
+                                return;
+                            }
+
+                            final var stats = bulkhead.stats();
+                            ctx.getSender().sendMessage(Component.text(String.format(
+                                    "%s: active %d/%d, queued %d/%d, rejected %d, completed %d, queue wait avg %d ms, max %d ms",
+                                    remote.identifier(),
+                                    stats.active(), stats.concurrency(),
+                                    stats.queued(), stats.queueDepth(),
+                                    stats.rejected(), stats.completed(),
+                                    stats.averageWaitMillis(), stats.maximumWaitMillis())).color(NamedTextColor.GREEN));
+                        });
+                    }));
+        }
+
         // reload command
         {
             this.commandManager.command(admin.literal("reload")
@@ -228,8 +254,12 @@ public class PaperPlugin
                     }
 
                     api.retrieveAccount(PlayerIdentity.of(target)).thenAccept((account -> {
-                        account.withdraw(currency, currencyAmount).thenAccept((result) -> {
-                            if (result == null) {
+                        account.withdraw(currency, currencyAmount).whenComplete((result, x) -> {
+                            if (x != null && Bulkhead.isRejection(x)) {
+                                sender.sendMessage(Component.text("Bank is busy, try again later.").color(NamedTextColor.RED));
+                                return;
+                            }
+                            if (x != null || result == null) {
                                 sender.sendMessage(Component.text("Internal exception.").color(NamedTextColor.RED));
                                 return;
                             }
@@ -263,8 +293,12 @@ public class PaperPlugin
                     }
 
                     api.retrieveAccount(PlayerIdentity.of(target)).thenAccept((account -> {
-                        account.deposit(currency, currencyAmount).thenAccept((result) -> {
-                            if (result == null) {
+                        account.deposit(currency, currencyAmount).whenComplete((result, x) -> {
+                            if (x != null && Bulkhead.isRejection(x)) {
+                                sender.sendMessage(Component.text("Bank is busy, try again later.").color(NamedTextColor.RED));
+                                return;
+                            }
+                            if (x != null || result == null) {
                                 sender.sendMessage(Component.text("Internal exception.").color(NamedTextColor.RED));
                                 return;
                             }
@@ -372,8 +406,8 @@ public class PaperPlugin
                                 final var senderAccount = senderAccountFuture.get();
                                 final var targetAccount = targetAccountFuture.get();
 
-                                senderAccount.pay(targetAccount, currency, amount).thenAcceptAsync((result) -> {
-                                    if (result) {
+                                senderAccount.pay(targetAccount, currency, amount).whenCompleteAsync((result, x) -> {
+                                    if (x == null && result) {
                                         sender.sendMessage(Component.translatable("pay.success.sent",
                                                         target.name(),
                                                         Currency.prettyCurrencyAmountComponent(currency, amount)
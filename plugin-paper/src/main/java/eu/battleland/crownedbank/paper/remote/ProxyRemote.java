@@ -1,15 +1,20 @@
 package eu.battleland.crownedbank.paper.remote;
 
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
 import com.google.common.io.ByteStreams;
-import com.google.gson.JsonParser;
 import eu.battleland.crownedbank.CrownedBank;
-import eu.battleland.crownedbank.helper.Pair;
+import eu.battleland.crownedbank.helper.Bulkhead;
 import eu.battleland.crownedbank.model.Account;
 import eu.battleland.crownedbank.model.Currency;
+import eu.battleland.crownedbank.model.Standing;
 import eu.battleland.crownedbank.paper.PaperPlugin;
 import eu.battleland.crownedbank.paper.PaperCrownedBank;
+import eu.battleland.crownedbank.proxy.ProxyBatcher;
+import eu.battleland.crownedbank.proxy.ProxyCodec;
 import eu.battleland.crownedbank.proxy.ProxyConstants;
 import eu.battleland.crownedbank.proxy.ProxyOperation;
+import eu.battleland.crownedbank.proxy.ProxySocketClient;
 import eu.battleland.crownedbank.remote.Remote;
 import lombok.Getter;
 import lombok.NonNull;
@@ -17,17 +22,22 @@ import lombok.extern.log4j.Log4j2;
 import net.minecraft.network.protocol.game.ClientGamePacketListener;
 import org.bukkit.Bukkit;
 import org.bukkit.event.Listener;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Log4j2
 public class ProxyRemote
@@ -37,14 +47,18 @@ public class ProxyRemote
 
     private final PaperPlugin plugin;
 
-    private final Map<Account.Identity, CompletableFuture<Pair<Boolean, Float>>> withdrawFutures
-            = new ConcurrentHashMap<>();
-    private final Map<Account.Identity, CompletableFuture<Pair<Boolean, Float>>> depositFutures
+    /**
+     * Requests in flight, by request identifier.
+     */
+    private final Map<Long, PendingRequest> requests
             = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds
+            = new AtomicLong();
 
-    private final Map<Account.Identity, CompletableFuture<Account.Data>> fetchFutures
-            = new ConcurrentHashMap<>();
-    private CompletableFuture<List<Account>> fetchWealthyFuture;
+    /**
+     * Currency table negotiated with proxy, or null if not negotiated yet.
+     */
+    private volatile CompletableFuture<ProxyCodec.CurrencyTable> table;
 
     @Getter
     private boolean acceptConfiguration = true;
@@ -52,6 +66,27 @@ public class ProxyRemote
     private InetAddress toleratedAddress
             = InetAddress.getLoopbackAddress();
 
+    /**
+     * Address of proxy endpoint socket, or null if messages are relayed through players only.
+     */
+    @Getter
+    private InetSocketAddress socketAddress;
+    private String socketToken;
+    private ProxySocketClient socketClient;
+
+    /**
+     * Batch requests issued during one tick, or send each of them right away.
+     */
+    @Getter
+    private boolean batch = true;
+    private volatile ProxyBatcher batcher;
+    private BukkitTask batchTask;
+
+    /**
+     * Notifies proxy of accounts no longer cached, so that it stops pushing their balances.
+     */
+    private final Consumer<Account> releaseListener = this::release;
+
 
     public ProxyRemote(@NonNull PaperPlugin plugin,
                        @NonNull String identifier) {
@@ -69,105 +104,41 @@ public class ProxyRemote
         Bukkit.getServer().getMessenger().registerIncomingPluginChannel(this.plugin, ProxyConstants.CHANNEL, (channel, player, message) -> {
             if (!channel.equals(ProxyConstants.CHANNEL))
                 return;
-            final var stream
-                    = ByteStreams.newDataInput(message);
-            try {
-                // read sub-channel
-                final var sub = stream.readUTF();
-                if (!ProxyConstants.SUB_CHANNEL.equals(sub))
-                    return;
-
-                // read operation
-                final var op = ProxyOperation
-                        .values()[stream.readByte()];
-
-                if (op == ProxyOperation.FETCH_WEALTHY_RESPONSE) {
-                    if (fetchWealthyFuture == null) {
-                        log.warn("Fetch wealthy response received, but not expected.");
-                        return;
-                    }
+            receive(message, false);
+        });
 
-                    int count = stream.readInt();
-                    final List<Account> accounts = new ArrayList<>(count);
+        // Flush batched requests at the end of every tick
+        if (this.batch) {
+            this.batcher = new ProxyBatcher(ProxyBatcher.MAX_PLUGIN_MESSAGE_BYTES, this::send);
+            this.batchTask = Bukkit.getScheduler().runTaskTimer(this.plugin, this.batcher::flush, 1, 1);
+        }
 
-                    for (int i = 0; i < count; i++) {
-                        accounts.add(CrownedBank.GSON.fromJson(stream.readUTF(), Account.class));
-                    }
-                    fetchWealthyFuture.complete(accounts);
-                    fetchWealthyFuture = null;
-
-                    log.debug("Fetched wealthy accounts");
-                } else {
-
-                    // read account identity
-                    final var identity = CrownedBank.GSON
-                            .fromJson(stream.readUTF(), Account.Identity.class);
-
-                    switch (op) {
-                        case FETCH_RESPONSE -> {
-                            final var future
-                                    = this.fetchFutures.remove(identity);
-                            if (future == null) {
-                                log.warn("Fetch response for '{}' received, but not expected.", identity);
-                                return;
-                            }
-
-                            final var response = stream.readUTF();
-
-                            if (response.length() == 0 || response.equals("null")) {
-                                future.complete(null);
-                                log.error("Fetched null account '{}'", identity);
-                            } else {
-                                final var json = JsonParser.parseString(response)
-                                        .getAsJsonObject();
-                                final var account
-                                        = Account.Data.decode(json, Predicate.isEqual(this));
-
-                                future.complete(account);
-                                log.debug("Fetched account for '{}'", identity);
-                            }
-                        }
-                        case WITHDRAW_RESPONSE -> {
-                            final var withdrawFuture = this.withdrawFutures.remove(identity);
-                            final var data = Pair.of(
-                                    stream.readBoolean(),
-                                    stream.readFloat()
-                            );
-                            if (withdrawFuture == null) {
-                                log.warn("Withdraw response for '{}' received but not expected. ({};{})",
-                                        identity, data.getFirst(), data.getSecond()
-                                );
-                                return;
-                            }
-                            withdrawFuture.complete(data);
-                            log.debug("Withdraw from account '{}' completed.", identity);
-                        }
-                        case DEPOSIT_RESPONSE -> {
-                            final var depositFuture = this.depositFutures.remove(identity);
-                            final var data = Pair.of(
-                                    stream.readBoolean(),
-                                    stream.readFloat()
-                            );
-                            if (depositFuture == null) {
-                                log.warn("Deposit response for '{}' received but not expected. ({};{})",
-                                        identity, data.getFirst(), data.getSecond()
-                                );
-                                return;
-                            }
-                            depositFuture.complete(data);
-                            log.debug("Deposit to account '{}' completed.", identity);
-                        }
-                    }
-                }
-            } catch (Exception x) {
-                log.error("Malformed proxy response", x);
-            }
-        });
+        // Connect socket transport, if configured
+        if (this.socketAddress != null) {
+            this.socketClient = new ProxySocketClient(this.socketAddress, this.socketToken,
+                    message -> receive(message, true));
+            this.socketClient.initialize();
+        }
+
+        this.plugin.getApi().accountStorage().registerRemovalListener(this.releaseListener);
     }
 
     @Override
     public void terminate() {
-
+        this.plugin.getApi().accountStorage().unregisterRemovalListener(this.releaseListener);
+        if (this.batchTask != null)
+            this.batchTask.cancel();
+        if (this.batcher != null)
+            this.batcher.flush();
+        this.batcher = null;
+        if (this.socketClient != null)
+            this.socketClient.terminate();
+
+        // fail requests left in flight
+        this.requests.values().forEach(request -> request.future()
+                .completeExceptionally(new IllegalStateException("Remote terminated")));
+        this.requests.clear();
+        this.table = null;
     }
 
     public static Factory factory() {
@@ -204,6 +175,25 @@ public class ProxyRemote
             }
         }
 
+        if (profile.parameters()
+                .has("batch")) {
+            this.batch = profile.parameters()
+                    .getAsJsonPrimitive("batch")
+                    .getAsBoolean();
+        }
+        if (profile.parameters()
+                .has("socket_port")) {
+            final var host = profile.parameters().has("socket_host")
+                    ? profile.parameters().getAsJsonPrimitive("socket_host").getAsString()
+                    : "127.0.0.1";
+            this.socketAddress = new InetSocketAddress(host, profile.parameters()
+                    .getAsJsonPrimitive("socket_port")
+                    .getAsInt());
+            this.socketToken = profile.parameters()
+                    .getAsJsonPrimitive("socket_token")
+                    .getAsString();
+        }
+
        return this;
     }
 
@@ -220,85 +210,76 @@ public class ProxyRemote
 
     @Override
     public CompletableFuture<Account.@Nullable Data> fetchAccount(@NonNull Account.Identity identity) {
-        final var future = new CompletableFuture<Account.Data>();
-        this.fetchFutures.put(identity, future);
-
         // request account from proxy
-        {
-            final var data = ByteStreams.newDataOutput();
-            data.writeUTF(ProxyConstants.SUB_CHANNEL);
-            data.writeByte(ProxyOperation.FETCH_REQUEST.ordinal());
-
-            // identity
-            data.writeUTF(CrownedBank.GSON.toJson(identity));
-
-            Bukkit.getServer().getOnlinePlayers().stream().findFirst().ifPresentOrElse((player) -> {
-                player.sendPluginMessage(this.plugin, ProxyConstants.CHANNEL, data.toByteArray());
-            }, () -> {
-                log.error("There's nobody online. I can't send message through to proxy.");
-            });
-        }
-        return future;
+        return request(ProxyOperation.FETCH_REQUEST, CrownedBank.getConfig().remoteTimeoutMillis(), (table, data) -> {
+            ProxyCodec.writeIdentity(data, identity);
+        }, (table, stream) -> {
+            final var result = ProxyCodec.readData(stream, table, currency -> currency.getRemote() == this);
+            if (result == null) {
+                log.error("Fetched null account '{}'", identity);
+                return null;
+            }
+            log.debug("Fetched account for '{}'", identity);
+            return result;
+        });
     }
 
     @Override
-    public CompletableFuture<List<Account>> fetchWealthyAccounts(@NonNull Currency currency) {
-        final var future = new CompletableFuture<List<Account>>();
-        this.fetchWealthyFuture = future;
+    public CompletableFuture<List<Standing>> fetchWealthyAccounts(@NonNull Currency currency) {
+        // request wealthy accounts from proxy
+        return request(ProxyOperation.FETCH_WEALTHY_REQUEST, TimeUnit.SECONDS.toMillis(10), (table, data) -> {
+            ProxyCodec.writeCurrency(data, currency, table);
+        }, (table, stream) -> {
+            final var standings = ProxyCodec.readStandings(stream, table);
+            log.debug("Fetched wealthy accounts of '{}'", currency.identifier());
+            return standings;
+        });
+    }
 
-        // request account from proxy
-        {
-            final var data = ByteStreams.newDataOutput();
-            data.writeUTF(ProxyConstants.SUB_CHANNEL);
-            data.writeByte(ProxyOperation.FETCH_WEALTHY_REQUEST.ordinal());
-
-            // currency identifier
-            data.writeUTF(currency.identifier());
-
-            Bukkit.getServer().getOnlinePlayers().stream().findFirst().ifPresentOrElse((player) -> {
-                player.sendPluginMessage(this.plugin, ProxyConstants.CHANNEL, data.toByteArray());
-            }, () -> {
-                log.error("There's nobody online. I can't send message through to proxy.");
-            });
-        }
+    @Override
+    public CompletableFuture<List<Standing>> fetchStandings(@NonNull Currency currency,
+                                                            @Nullable Standing after,
+                                                            int limit) {
+        // request page of standings from proxy
+        return request(ProxyOperation.FETCH_STANDINGS_REQUEST, CrownedBank.getConfig().remoteTimeoutMillis(), (table, data) -> {
+            ProxyCodec.writeCurrency(data, currency, table);
+            ProxyCodec.writeStanding(data, after, table);
+            ProxyCodec.writeVarInt(data, limit);
+        }, (table, stream) -> {
+            final var standings = ProxyCodec.readStandings(stream, table);
+            log.debug("Fetched standings of '{}' after '{}'", currency.identifier(), after);
+            return standings;
+        });
+    }
 
-        return future.orTimeout(10, TimeUnit.SECONDS);
+    @Override
+    public CompletableFuture<@Nullable Standing> fetchStanding(@NonNull Currency currency,
+                                                               @NonNull Account.Identity identity) {
+        // request standing of account from proxy
+        return request(ProxyOperation.FETCH_STANDING_REQUEST, CrownedBank.getConfig().remoteTimeoutMillis(), (table, data) -> {
+            ProxyCodec.writeIdentity(data, identity);
+            ProxyCodec.writeCurrency(data, currency, table);
+        }, (table, stream) -> {
+            final var standing = ProxyCodec.readStanding(stream, table);
+            log.debug("Fetched standing of '{}' in '{}'", identity, currency.identifier());
+            return standing;
+        });
     }
 
     @Override
     public CompletableFuture<Boolean> handleWithdraw(final Account account,
                                                      final Currency.Storage currencyStorage,
                                                      final float amount) {
-        final var future = new CompletableFuture<Pair<Boolean, Float>>();
-        this.withdrawFutures.put(account.getIdentity(), future);
-
         // request withdraw from account
-        {
-            final var data = ByteStreams.newDataOutput();
-            data.writeUTF(ProxyConstants.SUB_CHANNEL);
-            data.writeByte(ProxyOperation.WITHDRAW_REQUEST.ordinal());
-
-            // identity
-            data.writeUTF(CrownedBank.GSON.toJson(account.getIdentity()));
-            // currency identifier
-            data.writeUTF(currencyStorage.getCurrency().identifier());
-            // amount
-            data.writeFloat(amount);
-
-            Bukkit.getServer().getOnlinePlayers().stream().findFirst().ifPresentOrElse((player) -> {
-                player.sendPluginMessage(this.plugin, ProxyConstants.CHANNEL, data.toByteArray());
-            }, () -> {
-                log.error("There's nobody online. I can't send message through to proxy.");
-            });
-        }
-
-        // when proxy responds, handle it
-        return future.thenApply((data) -> {
-            final var result = data.getFirst();
-            if (result == null)
-                return false;
-
-            currencyStorage.change(data.getSecond());
+        return request(ProxyOperation.WITHDRAW_REQUEST, CrownedBank.getConfig().remoteTimeoutMillis(), (table, data) -> {
+            ProxyCodec.writeIdentity(data, account.getIdentity());
+            ProxyCodec.writeCurrency(data, currencyStorage.getCurrency(), table);
+            ProxyCodec.writeAmount(data, amount, table);
+        }, (table, stream) -> {
+            // when proxy responds, handle it
+            final var result = stream.readBoolean();
+            ProxyCodec.readBalance(stream, table).replicate(currencyStorage);
+            log.debug("Withdraw from account '{}' completed.", account.getIdentity());
             return result;
         });
     }
@@ -308,37 +289,313 @@ public class ProxyRemote
     public CompletableFuture<Boolean> handleDeposit(final Account account,
                                                     final Currency.Storage currencyStorage,
                                                     final float amount) {
-        final var future = new CompletableFuture<Pair<Boolean, Float>>();
-        this.depositFutures.put(account.getIdentity(), future);
-
-        // request deposit from account
-        {
-            final var data = ByteStreams.newDataOutput();
-            data.writeUTF(ProxyConstants.SUB_CHANNEL);
-            data.writeByte(ProxyOperation.DEPOSIT_REQUEST.ordinal());
-
-            // identity
-            data.writeUTF(CrownedBank.GSON.toJson(account.getIdentity()));
-            // currency identifier
-            data.writeUTF(currencyStorage.getCurrency().identifier());
-            // amount
-            data.writeFloat(amount);
-
-            Bukkit.getServer().getOnlinePlayers().stream().findFirst().ifPresentOrElse((player) -> {
-                player.sendPluginMessage(this.plugin, ProxyConstants.CHANNEL, data.toByteArray());
-            }, () -> {
-                log.error("There's nobody online. I can't send message through to proxy.");
+        // request deposit to account
+        return request(ProxyOperation.DEPOSIT_REQUEST, CrownedBank.getConfig().remoteTimeoutMillis(), (table, data) -> {
+            ProxyCodec.writeIdentity(data, account.getIdentity());
+            ProxyCodec.writeCurrency(data, currencyStorage.getCurrency(), table);
+            ProxyCodec.writeAmount(data, amount, table);
+        }, (table, stream) -> {
+            // when proxy responds, handle it
+            final var result = stream.readBoolean();
+            ProxyCodec.readBalance(stream, table).replicate(currencyStorage);
+            log.debug("Deposit to account '{}' completed.", account.getIdentity());
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> handleTransfer(final Account sender,
+                                                     final Currency.Storage senderStorage,
+                                                     final Account receiver,
+                                                     final Currency.Storage receiverStorage,
+                                                     final float amount) {
+        // request transfer between accounts
+        return request(ProxyOperation.TRANSFER_REQUEST, CrownedBank.getConfig().remoteTimeoutMillis(), (table, data) -> {
+            ProxyCodec.writeIdentity(data, sender.getIdentity());
+            ProxyCodec.writeIdentity(data, receiver.getIdentity());
+            ProxyCodec.writeCurrency(data, senderStorage.getCurrency(), table);
+            ProxyCodec.writeAmount(data, amount, table);
+        }, (table, stream) -> {
+            // when proxy responds, handle it
+            final var result = stream.readBoolean();
+            ProxyCodec.readBalance(stream, table).replicate(senderStorage);
+            ProxyCodec.readBalance(stream, table).replicate(receiverStorage);
+            log.debug("Transfer from account '{}' completed.", sender.getIdentity());
+            return result;
+        });
+    }
+
+    /**
+     * Send request to proxy, once currency table is negotiated.
+     *
+     * @param operation     Request operation.
+     * @param timeoutMillis Timeout of request.
+     * @param body          Writer of request body.
+     * @param reader        Reader of response body.
+     * @return Future of response.
+     */
+    private <T> CompletableFuture<T> request(final ProxyOperation operation,
+                                             final long timeoutMillis,
+                                             final BodyWriter body,
+                                             final BodyReader<T> reader) {
+        return table().thenCompose(table -> request(operation, timeoutMillis, (data) -> body.write(table, data))
+                .thenApply(stream -> {
+                    try {
+                        return reader.read(table, stream);
+                    } catch (IOException x) {
+                        throw new CompletionException(x);
+                    }
+                }));
+    }
+
+    /**
+     * @return Future of currency table negotiated with proxy. Handshake is repeated, if it failed.
+     */
+    private CompletableFuture<ProxyCodec.CurrencyTable> table() {
+        var table = this.table;
+        if (table != null && !table.isCompletedExceptionally())
+            return table;
+
+        synchronized (this) {
+            table = this.table;
+            if (table == null || table.isCompletedExceptionally()) {
+                table = request(ProxyOperation.HANDSHAKE_REQUEST, CrownedBank.getConfig().remoteTimeoutMillis(), (data) -> {
+                }).thenApply(stream -> {
+                    try {
+                        final var result = ProxyCodec.CurrencyTable.read(stream, this.plugin.getApi().currencyRepository());
+                        log.info("Negotiated currencies with proxy.");
+                        return result;
+                    } catch (IOException x) {
+                        throw new CompletionException(x);
+                    }
+                });
+                this.table = table;
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Send request to proxy. Request is identified by unique identifier, which proxy echoes in its response.
+     * Request is forgotten once it completes, or once it times out.
+     *
+     * @param operation     Request operation.
+     * @param timeoutMillis Timeout of request.
+     * @param body          Writer of request body.
+     * @return Future of response body.
+     */
+    private CompletableFuture<ByteArrayDataInput> request(final ProxyOperation operation,
+                                                          final long timeoutMillis,
+                                                          final RawBodyWriter body) {
+        final var requestId = this.requestIds.incrementAndGet();
+        final var future = new CompletableFuture<ByteArrayDataInput>();
+        this.requests.put(requestId, new PendingRequest(operation.response(), future));
+        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((stream, x) -> this.requests.remove(requestId));
+
+        final var data = ByteStreams.newDataOutput();
+        try {
+            ProxyCodec.writeEntryHeader(data, operation, requestId);
+            body.write(data);
+        } catch (IOException x) {
+            future.completeExceptionally(x);
+            return future;
+        }
+
+        final Runnable failure = () -> future.completeExceptionally(
+                new IllegalStateException("Proxy is not reachable, nobody is online to relay request"));
+        final var batcher = this.batcher;
+        if (batcher != null) {
+            // sent at the end of tick, together with other requests
+            batcher.enqueue(data.toByteArray(), failure);
+            return future;
+        }
+
+        final var message = ByteStreams.newDataOutput();
+        message.writeUTF(ProxyConstants.SUB_CHANNEL);
+        message.write(data.toByteArray());
+        if (!send(message.toByteArray()))
+            failure.run();
+        return future;
+    }
+
+    /**
+     * Receive message from proxy, through any transport.
+     *
+     * @param message Message.
+     * @param socket  Whether message was received through socket transport.
+     */
+    private void receive(final byte[] message, final boolean socket) {
+        final var stream
+                = ByteStreams.newDataInput(message);
+        try {
+            // read sub-channel
+            final var sub = stream.readUTF();
+            if (!ProxyConstants.SUB_CHANNEL.equals(sub))
+                return;
+
+            // read version, operation and request identifier
+            final var header = ProxyCodec.readHeader(stream);
+            if (header.operation() != ProxyOperation.BATCH_RESPONSE) {
+                receive(header, stream, socket);
+                return;
+            }
+
+            // responses to batched requests
+            for (final var entry : ProxyCodec.readBatch(stream)) {
+                final var entryStream = ByteStreams.newDataInput(entry);
+                receive(ProxyCodec.readHeader(entryStream), entryStream, socket);
+            }
+        } catch (Exception x) {
+            log.error("Malformed proxy response", x);
+        }
+    }
+
+    /**
+     * Complete request with its response.
+     *
+     * @param header Header of response.
+     * @param stream Body of response.
+     * @param socket Whether response was received through socket transport.
+     */
+    private void receive(final ProxyCodec.Header header, final ByteArrayDataInput stream, final boolean socket) {
+        final var op = header.operation();
+        final var requestId = header.requestId();
+
+        // pushed by proxy, not a response
+        if (op == ProxyOperation.BALANCE_UPDATE) {
+            // with socket transport configured, proxy connection is the authenticated socket
+            if (!socket && this.socketAddress != null) {
+                log.warn("Balance update received outside of proxy socket, ignoring.");
+                return;
+            }
+            try {
+                update(stream);
+            } catch (IOException x) {
+                log.error("Malformed balance update", x);
+            }
+            return;
+        }
+
+        final var request = this.requests.remove(requestId);
+        if (request == null) {
+            log.warn("{} #{} received, but not expected.", op, requestId);
+            return;
+        }
+        if (op == ProxyOperation.BUSY_RESPONSE) {
+            request.future().completeExceptionally(new Bulkhead.RejectedException("proxy"));
+            return;
+        }
+        if (request.response() != op) {
+            request.future().completeExceptionally(new IllegalStateException(
+                    String.format("Expected %s, received %s", request.response(), op)));
+            return;
+        }
+        request.future().complete(stream);
+    }
+
+    /**
+     * Apply balance pushed by proxy to cached account, unless account holds newer balance.
+     * Accounts which are not cached are ignored, they are fetched with their current balance.
+     *
+     * @param stream Body of {@link ProxyOperation#BALANCE_UPDATE}.
+     */
+    private void update(final ByteArrayDataInput stream) throws IOException {
+        final var table = this.table;
+        if (table == null || !table.isDone() || table.isCompletedExceptionally())
+            return;
+
+        final var identity = ProxyCodec.readIdentity(stream);
+        final var currency = ProxyCodec.readCurrency(stream, table.join());
+        final var balance = ProxyCodec.readBalance(stream, table.join());
+        if (currency == null || currency.getRemote() != this)
+            return;
+
+        final var account = this.plugin.getApi().accountStorage().peek(identity);
+        if (account == null)
+            return;
+        final var storage = account.getData().storageOrCreate(currency);
+        if (!balance.plausible(storage)) {
+            log.warn("Balance update of '{}' with implausible version {}, ignoring.", identity, balance.version());
+            return;
+        }
+        if (balance.replicate(storage))
+            this.plugin.getApi().balanceChanged(account, storage);
+    }
+
+    /**
+     * Notify proxy, that account is no longer cached.
+     *
+     * @param account Account.
+     */
+    private void release(final Account account) {
+        if (this.table == null)
+            return;
+
+        final var data = ByteStreams.newDataOutput();
+        try {
+            ProxyCodec.writeEntryHeader(data, ProxyOperation.RELEASE_NOTICE, 0);
+            ProxyCodec.writeIdentity(data, account.getIdentity());
+        } catch (IOException x) {
+            log.error("Couldn't encode release of '{}'", account.getIdentity(), x);
+            return;
+        }
+
+        final var batcher = this.batcher;
+        if (batcher != null) {
+            batcher.enqueue(data.toByteArray(), () -> {
             });
+            return;
         }
 
-        // when proxy responds, handle it
-        return future.thenApply((data) -> {
-            final var result = data.getFirst();
-            if (result == null)
-                return false;
+        final var message = ByteStreams.newDataOutput();
+        message.writeUTF(ProxyConstants.SUB_CHANNEL);
+        message.write(data.toByteArray());
+        send(message.toByteArray());
+    }
 
-            currencyStorage.change(data.getSecond());
-            return result;
-        });
+    /**
+     * Send message to proxy through socket, if connected. Otherwise, through any online player.
+     *
+     * @param message Message.
+     * @return Boolean true if message was sent.
+     */
+    private boolean send(final byte[] message) {
+        final var socketClient = this.socketClient;
+        if (socketClient != null && socketClient.send(message))
+            return true;
+
+        final var player = Bukkit.getServer().getOnlinePlayers().stream().findFirst();
+        if (player.isEmpty()) {
+            log.error("There's nobody online. I can't send message through to proxy.");
+            return false;
+        }
+        player.get().sendPluginMessage(this.plugin, ProxyConstants.CHANNEL, message);
+        return true;
+    }
+
+    /**
+     * Request in flight.
+     *
+     * @param response Expected response operation.
+     * @param future   Future of response body.
+     */
+    private record PendingRequest(ProxyOperation response,
+                                  CompletableFuture<ByteArrayDataInput> future) {
+    }
+
+    @FunctionalInterface
+    private interface RawBodyWriter {
+        void write(ByteArrayDataOutput data) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(ProxyCodec.CurrencyTable table, ByteArrayDataOutput data) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(ProxyCodec.CurrencyTable table, ByteArrayDataInput stream) throws IOException;
     }
 }
@@ -0,0 +1,64 @@
+package eu.battleland.crownedbank.velocity;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import eu.battleland.crownedbank.CrownedBankAPI;
+import eu.battleland.crownedbank.i18n.TranslationRegistry;
+import eu.battleland.crownedbank.remote.SqlRemote;
+import eu.battleland.crownedbank.velocity.helper.PlayerIdentity;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+
+import java.util.logging.Logger;
+
+@Accessors(fluent = true)
+public class VelocityCrownedBank
+        extends CrownedBankAPI.Base {
+
+    @Getter
+    private static VelocityPlugin pluginInstance;
+
+    @Getter
+    private final TranslationRegistry<String> translationRegistry = null;
+
+    public VelocityCrownedBank(VelocityPlugin plugin) {
+        pluginInstance = plugin;
+
+        // register remote factories
+        {
+            this.remoteFactoryRepository()
+                    .register(SqlRemote.factory());
+        }
+    }
+
+    /**
+     * Pin account of connecting player, so that it stays cached while player is online.
+     *
+     * @param event Event.
+     */
+    @Subscribe
+    public void onLogin(final PostLoginEvent event) {
+        this.accountStorage().pin(PlayerIdentity.of(event.getPlayer()));
+    }
+
+    /**
+     * Unpin account of disconnecting player.
+     *
+     * @param event Event.
+     */
+    @Subscribe
+    public void onDisconnect(final DisconnectEvent event) {
+        this.accountStorage().unpin(PlayerIdentity.of(event.getPlayer()));
+    }
+
+    @Override
+    protected Logger provideLogger() {
+        return pluginInstance.getLogger();
+    }
+
+    @Override
+    public void initialize() {
+        super.initialize();
+    }
+}
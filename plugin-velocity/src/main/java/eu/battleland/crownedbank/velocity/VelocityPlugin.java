@@ -0,0 +1,108 @@
+package eu.battleland.crownedbank.velocity;
+
+import com.google.inject.Inject;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.plugin.Plugin;
+import com.velocitypowered.api.plugin.annotation.DataDirectory;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import eu.battleland.crownedbank.config.ConfigBuilder;
+import eu.battleland.crownedbank.velocity.endpoint.ProxyEndpoint;
+import lombok.Getter;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+@Plugin(id = "crownedbank",
+        name = "CrownedBankVelocity",
+        version = "1.0-dev",
+        description = "CrownedBank Velocity implementation",
+        authors = {"rgnt.xyz"})
+public class VelocityPlugin {
+
+    /**
+     * Plugin Instance.
+     */
+    @Getter
+    private static VelocityPlugin instance;
+
+    @Getter
+    private final ProxyServer proxy;
+
+    @Getter
+    private final Logger logger
+            = Logger.getLogger("CrownedBank");
+
+    @Getter
+    private final ProxyEndpoint endpoint;
+
+    /**
+     * API Instance.
+     */
+    @Getter
+    private final VelocityCrownedBank api;
+
+    /**
+     * Config Instance.
+     */
+    @Getter
+    private final ConfigBuilder configuration;
+
+    private ScheduledTask cleanUpTask;
+
+    @Inject
+    public VelocityPlugin(final ProxyServer proxy,
+                          final @DataDirectory Path dataDirectory) {
+        instance = this;
+        this.proxy = proxy;
+        this.api = new VelocityCrownedBank(this);
+        this.configuration = new ConfigBuilder(this.api, dataDirectory.resolve("config.json").toFile()) {
+            @Override
+            public InputStream provide() {
+                return VelocityPlugin.class.getClassLoader().getResourceAsStream("resources/config.json");
+            }
+        };
+        this.endpoint = new ProxyEndpoint(this);
+    }
+
+    @Subscribe
+    public void onInitialize(final ProxyInitializeEvent event) {
+
+        // initialize api
+        this.api.initialize();
+        this.proxy.getEventManager()
+                .register(this, this.api);
+
+        // initialize configuration
+        try {
+            configuration.initialize();
+            this.logger.info("Initialized global configuration");
+        } catch (Exception e) {
+            this.logger.severe("Couldn't initialize global configuration");
+            e.printStackTrace();
+        }
+
+        // initialize endpoint
+        this.endpoint.initialize();
+
+        // evict idle accounts, off proxy threads
+        this.cleanUpTask = this.proxy.getScheduler()
+                .buildTask(this, () -> this.api.accountStorage().cleanUp())
+                .repeat(1, TimeUnit.MINUTES)
+                .schedule();
+    }
+
+    @Subscribe
+    public void onShutdown(final ProxyShutdownEvent event) {
+        if (this.cleanUpTask != null)
+            this.cleanUpTask.cancel();
+
+        // terminate endpoint
+        this.endpoint.terminate();
+        this.api.terminate();
+    }
+}
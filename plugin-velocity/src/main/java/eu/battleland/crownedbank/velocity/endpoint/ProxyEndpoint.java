@@ -0,0 +1,139 @@
+package eu.battleland.crownedbank.velocity.endpoint;
+
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import eu.battleland.crownedbank.CrownedBank;
+import eu.battleland.crownedbank.abstracted.Controllable;
+import eu.battleland.crownedbank.helper.SampledLog;
+import eu.battleland.crownedbank.proxy.ProxyConstants;
+import eu.battleland.crownedbank.proxy.ProxyPeer;
+import eu.battleland.crownedbank.proxy.ProxyRequestHandler;
+import eu.battleland.crownedbank.proxy.ProxySocketServer;
+import eu.battleland.crownedbank.velocity.VelocityPlugin;
+import lombok.NonNull;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Proxy endpoint of Velocity. Requests are decoded on event thread, and handled on executor of
+ * {@link ProxyRequestHandler}, responses are sent once they complete. No proxy thread waits on remotes.
+ */
+public class ProxyEndpoint
+        implements Controllable {
+
+    /**
+     * Channel of servers.
+     */
+    private static final ChannelIdentifier CHANNEL
+            = MinecraftChannelIdentifier.from(ProxyConstants.CHANNEL);
+
+    private final VelocityPlugin plugin;
+
+    private final SampledLog log
+            = new SampledLog(TimeUnit.SECONDS.toMillis(10));
+
+    private ProxyRequestHandler handler;
+    private ProxySocketServer socketServer;
+
+    /**
+     * Constructor.
+     *
+     * @param plugin Plugin Instance.
+     */
+    public ProxyEndpoint(@NonNull VelocityPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void initialize() {
+        this.handler = new ProxyRequestHandler(this.plugin.getApi());
+
+        final var proxy = this.plugin.getProxy();
+        proxy.getChannelRegistrar().register(CHANNEL);
+        proxy.getEventManager().register(this.plugin, this);
+
+        // socket transport, if configured
+        final var config = CrownedBank.getConfig();
+        if (config.endpointSocketPort() > 0) {
+            try {
+                this.socketServer = new ProxySocketServer(
+                        new InetSocketAddress(config.endpointSocketHost(), config.endpointSocketPort()),
+                        config.endpointSocketToken(),
+                        this.handler);
+                this.socketServer.initialize();
+                this.plugin.getLogger().info(String.format("Listening for servers on %s:%d",
+                        config.endpointSocketHost(), config.endpointSocketPort()));
+            } catch (Exception x) {
+                this.socketServer = null;
+                this.plugin.getLogger().severe("Couldn't initialize endpoint socket");
+                x.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void terminate() {
+        final var proxy = this.plugin.getProxy();
+        proxy.getChannelRegistrar().unregister(CHANNEL);
+        proxy.getEventManager().unregisterListener(this.plugin, this);
+        if (this.socketServer != null)
+            this.socketServer.terminate();
+        if (this.handler != null)
+            this.handler.terminate();
+    }
+
+
+    @Subscribe(order = PostOrder.FIRST)
+    public void on(final PluginMessageEvent event) {
+        // channel check
+        final var channel = event.getIdentifier();
+        if (!channel.equals(CHANNEL))
+            return;
+
+        // channel is never relayed, players must not reach servers through it
+        event.setResult(PluginMessageEvent.ForwardResult.handled());
+        if (!(event.getSource() instanceof ServerConnection requestee))
+            return;
+
+        final var response = this.handler.handle(new ServerPeer(requestee.getServer()), event.getData());
+        if (response == null)
+            return;
+
+        response.whenComplete((message, x) -> {
+            if (x != null) {
+                this.log.log(Level.WARNING, "proxy_request_malformed",
+                        "server", requestee.getServerInfo().getName(), "error", x.getMessage());
+                return;
+            }
+            // send response, if any
+            if (message != null)
+                requestee.sendPluginMessage(channel, message);
+        });
+    }
+
+    /**
+     * Server connected through plugin messages. Messages are pushed through any player connected to it.
+     *
+     * @param server Server.
+     */
+    private record ServerPeer(RegisteredServer server)
+            implements ProxyPeer {
+
+        @Override
+        public boolean push(final byte @NonNull [] message) {
+            return this.server.sendPluginMessage(CHANNEL, message);
+        }
+
+        @Override
+        public String toString() {
+            return this.server.getServerInfo().getName();
+        }
+    }
+}
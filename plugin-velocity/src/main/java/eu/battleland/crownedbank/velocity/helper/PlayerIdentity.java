@@ -0,0 +1,21 @@
+package eu.battleland.crownedbank.velocity.helper;
+
+import com.velocitypowered.api.proxy.Player;
+import eu.battleland.crownedbank.model.Account;
+import lombok.NonNull;
+
+/**
+ * Helper class
+ */
+public class PlayerIdentity {
+
+    /**
+     * Get player identity.
+     * @param player Player.
+     * @return Identity.
+     */
+    public static @NonNull Account.Identity of(final @NonNull Player player) {
+        return new Account.Identity(player.getUniqueId(), player.getUsername());
+    }
+
+}